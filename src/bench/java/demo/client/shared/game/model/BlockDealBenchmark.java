@@ -0,0 +1,81 @@
+package demo.client.shared.game.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of dealing new blocks to a {@link BoardModel board}, with each type of
+ * {@link PieceSequencer}.
+ * 
+ * A sequencer keeps every block it has generated, so the sequencer and board are replaced after
+ * every {@link #GAME_LENGTH} blocks, as they would be by a new game. The cost of replacing them is
+ * included, spread over the blocks of each game.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockDealBenchmark {
+
+  /** The number of blocks dealt in each simulated game. */
+  private static final int GAME_LENGTH = 4096;
+  /** The row at which each block is settled, well clear of the top of the board. */
+  private static final int SETTLE_ROW = BoardModel.ROW_NUM / 2;
+  /** The rows a settled block may cover. */
+  private static final int SETTLE_MASK = 0xF << (SETTLE_ROW - 1);
+
+  @Param({ "" + PieceSequencer.RANDOM, "" + PieceSequencer.BAG })
+  public int pieceType;
+
+  private BoardModel board;
+  private PieceSequencer pieces;
+  private int index;
+
+  @Setup
+  public void setUp() {
+    pieces = PieceSequencer.create(pieceType, BoardFixtures.SEED);
+    board = new BoardModel(pieces, BoardFixtures.SEED);
+    index = 0;
+  }
+
+  /**
+   * Settle the active block and deal the next one, as happens each time a block lands. The settled
+   * squares are then removed, so that the board never fills up.
+   */
+  @Benchmark
+  public BlockModel initNextBlock() throws BlockOverflow {
+    if (++index == GAME_LENGTH) {
+      setUp();
+    }
+    board.setActiveBlock(board.getActiveBlock(), SETTLE_ROW, BoardModel.COL_NUM / 2);
+    board.initNextBlock();
+    board.removeRows(SETTLE_MASK);
+
+    return board.getNextBlock();
+  }
+
+  /**
+   * Generate the sequence of blocks alone, without touching a board.
+   */
+  @Benchmark
+  public int pieceAt() {
+    if (index == GAME_LENGTH) {
+      setUp();
+    }
+
+    return pieces.pieceAt(index++);
+  }
+}
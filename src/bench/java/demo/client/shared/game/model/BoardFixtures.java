@@ -0,0 +1,96 @@
+package demo.client.shared.game.model;
+
+/**
+ * Boards in the states seen during real games, for benchmarking {@link BoardModel} operations.
+ * Fixtures are generated from a fixed seed, so every run measures the same boards.
+ */
+public final class BoardFixtures {
+
+  /**
+   * How much of a fixture board is covered by settled squares.
+   */
+  public enum Fill {
+    /** The start of a game. */
+    EMPTY(0),
+    /** An early game, with a few ragged rows at the bottom. */
+    LOW(4),
+    /** A game in progress, with the bottom half of the board filled. */
+    HALF(BoardModel.ROW_NUM / 2),
+    /** A game close to being lost. */
+    HIGH(BoardModel.ROW_NUM - 3);
+
+    private final int rows;
+
+    private Fill(int rows) {
+      this.rows = rows;
+    }
+  }
+
+  /** The seed of every fixture, so that runs are comparable. */
+  static final int SEED = 0x5EED;
+
+  /** The codes of the squares in fixture rows, as left by settled blocks. */
+  private static final int[] CODES = new int[] { LBlockModel.CODE, ReverseLBlockModel.CODE, TBlockModel.CODE,
+      SBlockModel.CODE, ZBlockModel.CODE, LongBlockModel.CODE, SquareBlockModel.CODE };
+
+  private BoardFixtures() {
+  }
+
+  /**
+   * Create a board whose bottom rows are mostly, but never completely, filled. Higher rows are more
+   * ragged than lower ones, as in a real game.
+   * 
+   * @param fill
+   *          How much of the board to fill.
+   * @return A new board, with its active block at its starting position.
+   */
+  static BoardModel create(Fill fill) {
+    BoardModel board = new BoardModel(SEED);
+    int state = SEED;
+    for (int i = 0; i < fill.rows; i++) {
+      int row = BoardModel.ROW_NUM - 1 - i;
+      // Roughly one gap per row at the bottom, rising to about half the row at the top of the fill.
+      int gaps = 1 + i * (BoardModel.COL_NUM / 2) / Math.max(1, fill.rows);
+      state = next(state);
+      int gap = (state >>> 1) % BoardModel.COL_NUM;
+      for (int j = 0; j < BoardModel.COL_NUM; j++) {
+        state = next(state);
+        boolean empty = j == gap || (state >>> 1) % BoardModel.COL_NUM < gaps - 1;
+        board.setTile(row, j, empty ? BoardModel.NO_TILE : CODES[(state >>> 8) % CODES.length]);
+      }
+    }
+
+    return board;
+  }
+
+  /**
+   * Create a board with full rows waiting to be cleared, interleaved with incomplete rows.
+   * 
+   * @param fill
+   *          How much of the board to fill. {@link Fill#EMPTY} is treated as {@link Fill#LOW}.
+   * @param fullRows
+   *          The number of full rows, at most the number of rows filled.
+   * @return A new board, with full rows at every other row from the bottom.
+   */
+  static BoardModel createWithFullRows(Fill fill, int fullRows) {
+    BoardModel board = create(fill.rows > 0 ? fill : Fill.LOW);
+    for (int i = 0; i < fullRows; i++) {
+      int row = BoardModel.ROW_NUM - 1 - 2 * i;
+      for (int j = 0; j < BoardModel.COL_NUM; j++) {
+        if (board.getTile(row, j) == BoardModel.NO_TILE) {
+          board.setTile(row, j, CODES[j % CODES.length]);
+        }
+      }
+    }
+
+    return board;
+  }
+
+  private static int next(int state) {
+    state ^= state << 13;
+    state ^= state >>> 17;
+    state ^= state << 5;
+
+    return state;
+  }
+}
@@ -0,0 +1,141 @@
+package demo.client.shared.game.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks of the {@link BoardModel} operations run on every step of a simulation, on boards at
+ * each stage of a game.
+ * 
+ * Operations that would wear away the fixture (clearing and adding rows) are run on a fresh copy of
+ * it, so their cost includes that of {@link #copy()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardModelBenchmark {
+
+  @Param({ "EMPTY", "LOW", "HALF", "HIGH" })
+  public BoardFixtures.Fill fill;
+
+  /** Never modified. */
+  private BoardModel template;
+  /** Never modified. */
+  private BoardModel withFullRows;
+  /** Only its active block is moved. */
+  private BoardModel board;
+  private BoardSnapshot previous;
+  private int direction = 1;
+  private final CountingVisitor visitor = new CountingVisitor();
+
+  private static class CountingVisitor implements SquareVisitor {
+    private int count;
+
+    @Override
+    public void visit(int row, int col, int code) {
+      count += code;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    template = BoardFixtures.create(fill);
+    withFullRows = BoardFixtures.createWithFullRows(fill, 2);
+    board = new BoardModel(template);
+    previous = board.snapshot(null);
+  }
+
+  @Benchmark
+  public boolean moveActiveBlock() {
+    // Shuffle from side to side, so that the block stays clear of the walls.
+    board.setPendingColMove(direction);
+    direction = -direction;
+
+    return board.moveActiveBlock(true);
+  }
+
+  @Benchmark
+  public int rotateActiveBlock() {
+    board.rotateActiveBlock();
+
+    return board.getActiveBlock().getOrientation();
+  }
+
+  @Benchmark
+  public int getDropDistance() {
+    return board.getDropDistance();
+  }
+
+  @Benchmark
+  public int numFullRows() {
+    return withFullRows.numFullRows();
+  }
+
+  @Benchmark
+  public BoardModel copy() {
+    return new BoardModel(withFullRows);
+  }
+
+  @Benchmark
+  public BoardModel clearFullRows() {
+    BoardModel copy = new BoardModel(withFullRows);
+    copy.clearFullRows();
+
+    return copy;
+  }
+
+  @Benchmark
+  public BoardModel addRows() {
+    BoardModel copy = new BoardModel(template);
+    copy.setRowsToAdd(2);
+    copy.addRows();
+
+    return copy;
+  }
+
+  @Benchmark
+  public void getAllSquares(Blackhole blackhole) {
+    blackhole.consume(template.getAllSquares());
+  }
+
+  @Benchmark
+  public void getNonFullRows(Blackhole blackhole) {
+    blackhole.consume(withFullRows.getNonFullRows());
+  }
+
+  @Benchmark
+  public int visitAllSquares() {
+    template.visitAllSquares(visitor);
+
+    return visitor.count;
+  }
+
+  @Benchmark
+  public int visitNonFullRows() {
+    withFullRows.visitNonFullRows(visitor);
+
+    return visitor.count;
+  }
+
+  @Benchmark
+  public BoardSnapshot snapshot() {
+    previous = board.snapshot(previous);
+
+    return previous;
+  }
+}
@@ -0,0 +1,75 @@
+package demo.server.load;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.errai.bus.client.api.messaging.Message;
+
+import demo.client.shared.message.Command;
+
+/**
+ * A {@link Message} from a simulated client to the server, as the bus would deliver it after
+ * unmarshalling. Only the subject, command and value can be read from it.
+ */
+class InboundMessage implements InvocationHandler {
+
+  /** The subject of the server's message callback. */
+  static final String SUBJECT = "Relay";
+
+  private final Map<String, Object> parts = new HashMap<String, Object>();
+
+  private InboundMessage(Command command, Object value) {
+    parts.put("ToSubject", SUBJECT);
+    parts.put("CommandType", command.name());
+    parts.put("Value", value);
+  }
+
+  /**
+   * Create a message for the server.
+   * 
+   * @param command
+   *          The command of the message.
+   * @param value
+   *          The value of the message.
+   * @return A message which reads as though it had been sent by a client.
+   */
+  static Message create(Command command, Object value) {
+    return (Message) Proxy.newProxyInstance(Message.class.getClassLoader(), new Class<?>[] { Message.class },
+            new InboundMessage(command, value));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) {
+    String name = method.getName();
+    if (method.getDeclaringClass() == Object.class) {
+      return RecordingMessageBus.invokeObjectMethod(proxy, method, args);
+    }
+    else if (name.equals("getSubject")) {
+      return parts.get("ToSubject");
+    }
+    else if (name.equals("getCommandType")) {
+      return parts.get("CommandType");
+    }
+    else if (name.equals("getValue")) {
+      return parts.get("Value");
+    }
+    else if (name.equals("get") && args != null && args.length == 2) {
+      return parts.get(String.valueOf(args[1]));
+    }
+    else if (name.equals("hasPart") && args != null && args.length == 1) {
+      return parts.containsKey(String.valueOf(args[0]));
+    }
+    else if (name.equals("getParts")) {
+      return parts;
+    }
+    else if (method.getReturnType() == Message.class) {
+      return proxy;
+    }
+    else {
+      return RecordingMessageBus.defaultValue(method.getReturnType());
+    }
+  }
+}
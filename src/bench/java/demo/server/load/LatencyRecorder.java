@@ -0,0 +1,93 @@
+package demo.server.load;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the latency of each command sent to the server, from the moment it was sent to the moment
+ * its effect was seen by a client, and summarizes them as percentiles.
+ * 
+ * This class is thread safe.
+ */
+class LatencyRecorder {
+
+  /**
+   * The latencies recorded for one command, in nanoseconds.
+   */
+  static class Samples {
+    private long[] values = new long[1024];
+    private int size;
+
+    private synchronized void add(long nanos) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = nanos;
+    }
+
+    /**
+     * Get the recorded latencies in ascending order.
+     * 
+     * @return A sorted copy of the latencies recorded so far.
+     */
+    synchronized long[] sorted() {
+      long[] copy = Arrays.copyOf(values, size);
+      Arrays.sort(copy);
+
+      return copy;
+    }
+  }
+
+  private final ConcurrentMap<String, Samples> samples = new ConcurrentHashMap<String, Samples>();
+
+  /**
+   * Record the latency of a command.
+   * 
+   * @param command
+   *          The command, or another label for what was measured.
+   * @param nanos
+   *          The latency, in nanoseconds.
+   */
+  void record(String command, long nanos) {
+    Samples forCommand = samples.get(command);
+    if (forCommand == null) {
+      samples.putIfAbsent(command, new Samples());
+      forCommand = samples.get(command);
+    }
+    forCommand.add(nanos);
+  }
+
+  /**
+   * Forget every latency recorded so far.
+   */
+  void reset() {
+    samples.clear();
+  }
+
+  /**
+   * Get the latencies recorded so far.
+   * 
+   * @return A map of commands to their latencies, sorted by command.
+   */
+  Map<String, Samples> getSamples() {
+    return new TreeMap<String, Samples>(samples);
+  }
+
+  /**
+   * Get a percentile of some sorted latencies, by the nearest-rank method.
+   * 
+   * @param sorted
+   *          Latencies in ascending order. Must not be empty.
+   * @param percent
+   *          The percentile, between 0 and 100.
+   * @return The smallest latency which is at least as large as the given percentage of latencies.
+   */
+  static long percentile(long[] sorted, double percent) {
+    int rank = (int) Math.ceil(percent / 100 * sorted.length);
+
+    return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+  }
+}
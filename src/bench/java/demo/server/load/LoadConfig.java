@@ -0,0 +1,135 @@
+package demo.server.load;
+
+import demo.client.shared.meta.GameRoom;
+
+/**
+ * The options of a {@link LoadHarness} run, parsed from {@code key=value} arguments.
+ * 
+ * <ul>
+ * <li>{@code players}: the number of simulated players (default 64).</li>
+ * <li>{@code rooms}: the number of game rooms they are split between (default 16).</li>
+ * <li>{@code moveRate}: the inputs each player makes per second (default 40, as the client's game
+ * loop).</li>
+ * <li>{@code churn}: the chance per second that a player leaves their game (default 0.01).</li>
+ * <li>{@code lobbyTime}: the seconds a player who has left spends in the lobby before rejoining
+ * (default 2).</li>
+ * <li>{@code keepAlive}: the seconds between a player's keep alives (default 5).</li>
+ * <li>{@code threads}: the number of threads driving the players (default 2).</li>
+ * <li>{@code warmup}: the seconds to run before measuring (default 5).</li>
+ * <li>{@code duration}: the seconds to measure for (default 30).</li>
+ * <li>{@code seed}: the seed of the players' random inputs (default 1).</li>
+ * <li>{@code bytes}: whether to marshal every message to measure its size (default true).</li>
+ * </ul>
+ * 
+ * Keys containing a dot are set as system properties before the server is created, so that the
+ * server's own options (such as {@code blockdrop.frameTick}) can be varied too.
+ */
+class LoadConfig {
+
+  int players = 64;
+  int rooms = 16;
+  double moveRate = 40;
+  double churn = 0.01;
+  double lobbyTime = 2;
+  double keepAlive = 5;
+  int threads = 2;
+  double warmup = 5;
+  double duration = 30;
+  long seed = 1;
+  boolean bytes = true;
+
+  /**
+   * Parse options. Each argument may hold several options, separated by whitespace.
+   * 
+   * @param args
+   *          The {@code key=value} options.
+   * @return The parsed options, with defaults for those not given.
+   * @throws IllegalArgumentException
+   *           If an option is unknown or malformed, or the options are inconsistent.
+   */
+  static LoadConfig parse(String[] args) {
+    LoadConfig config = new LoadConfig();
+    for (String arg : args) {
+      for (String option : arg.trim().split("\\s+")) {
+        if (option.length() > 0) {
+          config.set(option);
+        }
+      }
+    }
+    config.validate();
+
+    return config;
+  }
+
+  private void set(String option) {
+    int split = option.indexOf('=');
+    if (split <= 0) {
+      throw new IllegalArgumentException("Expected key=value but found " + option);
+    }
+    String key = option.substring(0, split);
+    String value = option.substring(split + 1);
+
+    try {
+      if (key.indexOf('.') >= 0) {
+        System.setProperty(key, value);
+      }
+      else if (key.equals("players")) {
+        players = Integer.parseInt(value);
+      }
+      else if (key.equals("rooms")) {
+        rooms = Integer.parseInt(value);
+      }
+      else if (key.equals("moveRate")) {
+        moveRate = Double.parseDouble(value);
+      }
+      else if (key.equals("churn")) {
+        churn = Double.parseDouble(value);
+      }
+      else if (key.equals("lobbyTime")) {
+        lobbyTime = Double.parseDouble(value);
+      }
+      else if (key.equals("keepAlive")) {
+        keepAlive = Double.parseDouble(value);
+      }
+      else if (key.equals("threads")) {
+        threads = Integer.parseInt(value);
+      }
+      else if (key.equals("warmup")) {
+        warmup = Double.parseDouble(value);
+      }
+      else if (key.equals("duration")) {
+        duration = Double.parseDouble(value);
+      }
+      else if (key.equals("seed")) {
+        seed = Long.parseLong(value);
+      }
+      else if (key.equals("bytes")) {
+        bytes = Boolean.parseBoolean(value);
+      }
+      else {
+        throw new IllegalArgumentException("Unknown option " + key);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Malformed option " + option, e);
+    }
+  }
+
+  private void validate() {
+    if (rooms < 1 || players < rooms) {
+      throw new IllegalArgumentException("Need at least one room, and a player for each room");
+    }
+    if ((players + rooms - 1) / rooms > GameRoom.MAX_PLAYERS) {
+      throw new IllegalArgumentException("At most " + GameRoom.MAX_PLAYERS + " players fit in a room");
+    }
+    if (moveRate <= 0 || threads < 1 || duration <= 0 || churn < 0) {
+      throw new IllegalArgumentException("moveRate, threads and duration must be positive, churn non-negative");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "players=" + players + " rooms=" + rooms + " moveRate=" + moveRate + " churn=" + churn + " lobbyTime="
+            + lobbyTime + " keepAlive=" + keepAlive + " threads=" + threads + " warmup=" + warmup + " duration="
+            + duration + " seed=" + seed + " bytes=" + bytes;
+  }
+}
@@ -0,0 +1,443 @@
+package demo.server.load;
+
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.errai.bus.client.api.messaging.Message;
+
+import demo.client.shared.lobby.Invitation;
+import demo.client.shared.lobby.LobbyDelta;
+import demo.client.shared.lobby.LobbyUpdate;
+import demo.client.shared.lobby.RegisterRequest;
+import demo.client.shared.message.Command;
+import demo.client.shared.message.CorrectionEvent;
+import demo.client.shared.message.GameFrame;
+import demo.client.shared.message.InputEvent;
+import demo.client.shared.meta.GameRoom;
+import demo.client.shared.meta.Player;
+import demo.server.LobbyServer;
+import demo.server.metrics.MetricsRegistry;
+
+/**
+ * Drives a {@link LobbyServer} in this JVM with {@link SimulatedPlayer simulated players}, and reports
+ * how it copes.
+ * 
+ * The server is wired by hand, as the container would wire it, but with a
+ * {@link RecordingMessageBus bus} and {@link RecordingEvent events} that record everything the server
+ * sends instead of delivering it over the network. Players register, host and join games, send their
+ * inputs, keep themselves alive, and leave and rejoin games, all through the server's public entry
+ * points. They never send {@link Command#MOVE_UPDATE moves} or {@link Command#UPDATE_SCORE scores},
+ * which the server now ignores in favour of replaying inputs.
+ * 
+ * Run with {@code key=value} options, described by {@link LoadConfig}. After a warm up, the harness
+ * measures for a fixed time and then prints:
+ * <ul>
+ * <li>the throughput of the relay: inputs sent and relayed, and the frames and updates sent;</li>
+ * <li>the latency percentiles of each command, from sending it to seeing its effect arrive at a
+ * client (or, for commands handled synchronously, to the call returning);</li>
+ * <li>the number and size of messages sent to and from the server, by command;</li>
+ * <li>the server's own {@link MetricsRegistry metrics}.</li>
+ * </ul>
+ */
+public class LoadHarness implements RecordingMessageBus.Receiver {
+
+  /** The key under which registrations are recorded. */
+  static final String REGISTRATION = "Event<" + RegisterRequest.class.getSimpleName() + ">";
+  /** The key under which invitations are recorded. */
+  static final String INVITATION = "Event<" + Invitation.class.getSimpleName() + ">";
+
+  private static final String CLIENT_SUBJECT = "Client";
+  private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final LoadConfig config;
+  private final TrafficRecorder inbound;
+  private final TrafficRecorder outbound;
+  private final LatencyRecorder latencies = new LatencyRecorder();
+  private final MetricsRegistry metrics = new MetricsRegistry();
+  private LobbyServer server;
+
+  private final List<SimulatedRoom> rooms = new ArrayList<SimulatedRoom>();
+  /** The simulated players, by id. */
+  private final Map<Integer, SimulatedPlayer> players = new ConcurrentHashMap<Integer, SimulatedPlayer>();
+
+  private final AtomicLong inputsSent = new AtomicLong();
+  private final AtomicLong inputsRelayed = new AtomicLong();
+  private final AtomicLong batchesRelayed = new AtomicLong();
+  private final AtomicLong updatesSent = new AtomicLong();
+  private final AtomicLong corrections = new AtomicLong();
+  private final AtomicLong restarts = new AtomicLong();
+  private final AtomicLong joinTimeouts = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final AtomicReference<RuntimeException> firstError = new AtomicReference<RuntimeException>();
+
+  /**
+   * Create a LoadHarness.
+   * 
+   * @param config
+   *          The options of the run.
+   */
+  public LoadHarness(LoadConfig config) {
+    this.config = config;
+    this.inbound = new TrafficRecorder(config.bytes);
+    this.outbound = new TrafficRecorder(config.bytes);
+  }
+
+  /**
+   * Run the harness.
+   * 
+   * @param args
+   *          Options, as {@code key=value} pairs.
+   */
+  public static void main(String[] args) throws Exception {
+    LoadConfig config;
+    try {
+      config = LoadConfig.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println("Usage: LoadHarness [key=value]... (see LoadConfig for the options)");
+      System.exit(1);
+      return;
+    }
+
+    new LoadHarness(config).run(System.out);
+  }
+
+  /**
+   * Start the server and players, measure, and report.
+   * 
+   * @param out
+   *          The stream to which the report is printed.
+   */
+  public void run(PrintStream out) throws InterruptedException {
+    out.println("Load test: " + config);
+    startServer();
+    ScheduledExecutorService drivers = null;
+    try {
+      createPlayers();
+      drivers = startDrivers();
+
+      Thread.sleep((long) (config.warmup * 1000));
+      reset();
+      long start = System.nanoTime();
+      Thread.sleep((long) (config.duration * 1000));
+      report(out, (System.nanoTime() - start) / 1e9);
+    } finally {
+      if (drivers != null) {
+        drivers.shutdownNow();
+        drivers.awaitTermination(10, TimeUnit.SECONDS);
+      }
+      stopServer();
+    }
+  }
+
+  /**
+   * Wire and start the server, as the container would.
+   */
+  private void startServer() {
+    server = new LobbyServer();
+    inject("messageBus", RecordingMessageBus.create(outbound, this));
+    inject("playerRegistration", RecordingEvent.create(outbound, Player.class));
+    inject("lobbyUpdate", RecordingEvent.create(outbound, LobbyUpdate.class));
+    inject("lobbyDelta", RecordingEvent.create(outbound, LobbyDelta.class));
+    inject("metrics", metrics);
+    invoke("startExecutors");
+  }
+
+  private void stopServer() {
+    invoke("stopExecutors");
+  }
+
+  private void inject(String fieldName, Object value) {
+    try {
+      Field field = LobbyServer.class.getDeclaredField(fieldName);
+      field.setAccessible(true);
+      field.set(server, value);
+    } catch (Exception e) {
+      throw new IllegalStateException("Could not inject " + fieldName, e);
+    }
+  }
+
+  private void invoke(String methodName) {
+    try {
+      Method method = LobbyServer.class.getDeclaredMethod(methodName);
+      method.setAccessible(true);
+      method.invoke(server);
+    } catch (Exception e) {
+      throw new IllegalStateException("Could not invoke " + methodName, e);
+    }
+  }
+
+  /**
+   * Register every player, and open every room's first game.
+   */
+  private void createPlayers() {
+    Random seeds = new Random(config.seed);
+    for (int i = 0; i < config.rooms; i++) {
+      rooms.add(new SimulatedRoom());
+    }
+    for (int i = 0; i < config.players; i++) {
+      SimulatedRoom room = rooms.get(i % config.rooms);
+      SimulatedPlayer player = new SimulatedPlayer(this, room, "load" + i, seeds.nextLong(), config);
+      players.put(player.register(), player);
+      room.add(player);
+    }
+    for (SimulatedRoom room : rooms) {
+      room.open();
+    }
+  }
+
+  /**
+   * Tick every player at the configured move rate, with the players split evenly between the driving
+   * threads.
+   */
+  private ScheduledExecutorService startDrivers() {
+    ScheduledExecutorService drivers = Executors.newScheduledThreadPool(config.threads, new ThreadFactory() {
+      private int count = 0;
+
+      @Override
+      public synchronized Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "load-driver-" + count++);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    List<List<SimulatedPlayer>> groups = new ArrayList<List<SimulatedPlayer>>();
+    for (int i = 0; i < config.threads; i++) {
+      groups.add(new ArrayList<SimulatedPlayer>());
+    }
+    int i = 0;
+    for (SimulatedPlayer player : players.values()) {
+      groups.get(i++ % config.threads).add(player);
+    }
+
+    long period = (long) (TimeUnit.SECONDS.toMicros(1) / config.moveRate);
+    for (final List<SimulatedPlayer> group : groups) {
+      drivers.scheduleAtFixedRate(new Runnable() {
+        @Override
+        public void run() {
+          long now = System.currentTimeMillis();
+          for (SimulatedPlayer player : group) {
+            try {
+              player.tick(now);
+            } catch (RuntimeException e) {
+              errors.incrementAndGet();
+              firstError.compareAndSet(null, e);
+            }
+          }
+        }
+      }, 0, period, TimeUnit.MICROSECONDS);
+    }
+
+    return drivers;
+  }
+
+  /**
+   * Register a player with the server, timing the call.
+   * 
+   * @param player
+   *          A copy of the player to register.
+   * @return The id assigned to the player.
+   */
+  int register(Player player) {
+    RegisterRequest request = new RegisterRequest(player);
+    long start = System.nanoTime();
+    server.addPlayerToLobby(request);
+    latencies.record(REGISTRATION, System.nanoTime() - start);
+    inbound.record(REGISTRATION, request);
+
+    return player.getId();
+  }
+
+  /**
+   * Send an invitation to the server, on behalf of its host.
+   * 
+   * @param invitation
+   *          The invitation.
+   * @return The id of the game created for the invitation.
+   */
+  int invite(Invitation invitation) {
+    server.handleInvitation(invitation);
+    inbound.record(INVITATION, invitation);
+
+    return invitation.getGameId();
+  }
+
+  /**
+   * Send a message to the server's message callback.
+   * 
+   * @param command
+   *          The command of the message.
+   * @param value
+   *          The value of the message.
+   * @param timed
+   *          If true, the time taken by the callback is recorded as the latency of the command. This
+   *          is only meaningful for commands which the server handles synchronously.
+   */
+  void send(Command command, Object value, boolean timed) {
+    long start = System.nanoTime();
+    server.callback(InboundMessage.create(command, value));
+    if (timed) {
+      latencies.record(command.name(), System.nanoTime() - start);
+    }
+    inbound.record(command.name(), value);
+  }
+
+  @Override
+  public void received(String subject, String command, Message message) {
+    long now = System.nanoTime();
+    if (subject.startsWith(CLIENT_SUBJECT)) {
+      SimulatedPlayer player = players.get(Integer.valueOf(subject.substring(CLIENT_SUBJECT.length())));
+      if (player == null) {
+        return;
+      }
+      if (Command.JOIN_GAME.name().equals(command)) {
+        player.joined(message.getValue(GameRoom.class), now);
+      }
+      else if (Command.INVITATION.name().equals(command)) {
+        player.invited(message.getValue(Invitation.class));
+      }
+    }
+    else if (Command.GAME_FRAME.name().equals(command)) {
+      receivedFrame(message.getValue(GameFrame.class), now);
+    }
+  }
+
+  private void receivedFrame(GameFrame frame, long now) {
+    updatesSent.addAndGet(frame.size());
+    for (InputEvent event : frame.getInputs()) {
+      batchesRelayed.incrementAndGet();
+      inputsRelayed.addAndGet(event.getInputs().length);
+      SimulatedPlayer player = players.get(event.getPlayer().getId());
+      if (player != null) {
+        player.inputsRelayed(event, now);
+      }
+    }
+    for (CorrectionEvent correction : frame.getCorrections()) {
+      SimulatedPlayer player = players.get(correction.getPlayer().getId());
+      if (player != null) {
+        player.corrected(correction);
+      }
+    }
+    for (Player paused : frame.getPausedPlayers()) {
+      SimulatedPlayer player = players.get(paused.getId());
+      if (player != null) {
+        player.keepAliveRelayed(now);
+      }
+    }
+    for (Player left : frame.getLeftPlayers()) {
+      SimulatedPlayer player = players.get(left.getId());
+      if (player != null) {
+        player.leaveRelayed(now);
+      }
+    }
+  }
+
+  LatencyRecorder getLatencies() {
+    return latencies;
+  }
+
+  void inputsSent(int count) {
+    inputsSent.addAndGet(count);
+  }
+
+  void correctionApplied() {
+    corrections.incrementAndGet();
+  }
+
+  void restarted() {
+    restarts.incrementAndGet();
+  }
+
+  void joinTimedOut() {
+    joinTimeouts.incrementAndGet();
+  }
+
+  /**
+   * Forget everything measured during the warm up.
+   */
+  private void reset() {
+    inbound.reset();
+    outbound.reset();
+    latencies.reset();
+    inputsSent.set(0);
+    inputsRelayed.set(0);
+    batchesRelayed.set(0);
+    updatesSent.set(0);
+    corrections.set(0);
+    restarts.set(0);
+    joinTimeouts.set(0);
+  }
+
+  private void report(PrintStream out, double seconds) {
+    out.printf("%nMeasured for %.1f s with %d room shards%n", seconds, Runtime.getRuntime().availableProcessors());
+
+    out.printf("%nRelay throughput%n");
+    printRate(out, "inputs sent", inputsSent.get(), seconds);
+    printRate(out, "inputs relayed", inputsRelayed.get(), seconds);
+    printRate(out, "batches relayed", batchesRelayed.get(), seconds);
+    TrafficRecorder.Tally frames = outbound.getTallies().get(Command.GAME_FRAME.name());
+    printRate(out, "frames sent", frames != null ? frames.getMessages() : 0, seconds);
+    printRate(out, "updates sent", updatesSent.get(), seconds);
+    printRate(out, "corrections", corrections.get(), seconds);
+    printRate(out, "restarts", restarts.get(), seconds);
+    printRate(out, "join timeouts", joinTimeouts.get(), seconds);
+    if (errors.get() > 0) {
+      out.printf("  %d errors in simulated players, the first being:%n", errors.get());
+      firstError.get().printStackTrace(out);
+    }
+
+    out.printf("%n%-24s %9s %9s %9s %9s %9s%n", "Latency (ms)", "count", "p50", "p90", "p99", "max");
+    for (Map.Entry<String, LatencyRecorder.Samples> entry : latencies.getSamples().entrySet()) {
+      long[] sorted = entry.getValue().sorted();
+      if (sorted.length > 0) {
+        out.printf("  %-22s %9d %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(), sorted.length,
+                toMillis(LatencyRecorder.percentile(sorted, 50)), toMillis(LatencyRecorder.percentile(sorted, 90)),
+                toMillis(LatencyRecorder.percentile(sorted, 99)), toMillis(sorted[sorted.length - 1]));
+      }
+    }
+
+    printTraffic(out, "Inbound", inbound, seconds);
+    printTraffic(out, "Outbound", outbound, seconds);
+
+    out.printf("%nServer metrics (since start, excluding rooms)%n");
+    for (Map.Entry<String, Number> entry : metrics.snapshot().entrySet()) {
+      if (!entry.getKey().startsWith("relay.room.") && entry.getValue().doubleValue() != 0) {
+        out.printf("  %-50s %s%n", entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private static void printRate(PrintStream out, String name, long count, double seconds) {
+    out.printf("  %-22s %9d %11.1f /s%n", name, count, count / seconds);
+  }
+
+  private static void printTraffic(PrintStream out, String direction, TrafficRecorder traffic, double seconds) {
+    out.printf("%n%-24s %9s %11s %11s %11s%n", direction, "messages", "msgs/s", "bytes", "bytes/s");
+    for (Map.Entry<String, TrafficRecorder.Tally> entry : traffic.getTallies().entrySet()) {
+      TrafficRecorder.Tally tally = entry.getValue();
+      out.printf("  %-22s %9d %11.1f %11d %11.0f%n", entry.getKey(), tally.getMessages(),
+              tally.getMessages() / seconds, tally.getBytes(), tally.getBytes() / seconds);
+    }
+    if (!traffic.isCountingBytes()) {
+      out.println("  (bytes not counted" + (traffic.getMarshallingError() != null ? ": "
+              + traffic.getMarshallingError() : "") + ")");
+    }
+  }
+
+  private static double toMillis(long nanos) {
+    return (double) nanos / NANOS_PER_MILLI;
+  }
+}
@@ -0,0 +1,54 @@
+package demo.server.load;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.enterprise.event.Event;
+
+/**
+ * A stand-in for a CDI {@link Event}, which records every event fired instead of sending it to
+ * clients. Selecting a qualified event returns the same recorder.
+ */
+class RecordingEvent implements InvocationHandler {
+
+  private final TrafficRecorder traffic;
+  private final String key;
+
+  private RecordingEvent(TrafficRecorder traffic, String key) {
+    this.traffic = traffic;
+    this.key = key;
+  }
+
+  /**
+   * Create a recording event.
+   * 
+   * @param traffic
+   *          Records every event fired.
+   * @param type
+   *          The type of the events, under whose name they are recorded.
+   * @return An event which records fired events instead of sending them.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Event<T> create(TrafficRecorder traffic, Class<T> type) {
+    return (Event<T>) Proxy.newProxyInstance(Event.class.getClassLoader(), new Class<?>[] { Event.class },
+            new RecordingEvent(traffic, "Event<" + type.getSimpleName() + ">"));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) {
+    if (method.getDeclaringClass() == Object.class) {
+      return RecordingMessageBus.invokeObjectMethod(proxy, method, args);
+    }
+    else if (method.getName().equals("fire")) {
+      traffic.record(key, args[0]);
+      return null;
+    }
+    else if (method.getReturnType() == Event.class) {
+      return proxy;
+    }
+    else {
+      return RecordingMessageBus.defaultValue(method.getReturnType());
+    }
+  }
+}
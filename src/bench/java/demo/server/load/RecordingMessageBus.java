@@ -0,0 +1,121 @@
+package demo.server.load;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import org.jboss.errai.bus.client.api.messaging.Message;
+import org.jboss.errai.bus.client.api.messaging.MessageBus;
+
+/**
+ * A stand-in for the server's {@link MessageBus}, which records every message sent through it
+ * instead of delivering it to clients.
+ * 
+ * Recorded messages are handed to a {@link Receiver}, on the thread that sent them, so that
+ * simulated clients can react to them. Every other use of the bus does nothing.
+ */
+class RecordingMessageBus implements InvocationHandler {
+
+  /**
+   * Receives the messages sent through the bus.
+   */
+  interface Receiver {
+
+    /**
+     * Called for each message sent through the bus, on the sending thread.
+     * 
+     * @param subject
+     *          The subject to which the message was sent.
+     * @param command
+     *          The command type of the message.
+     * @param message
+     *          The message.
+     */
+    void received(String subject, String command, Message message);
+  }
+
+  private final TrafficRecorder traffic;
+  private final Receiver receiver;
+
+  private RecordingMessageBus(TrafficRecorder traffic, Receiver receiver) {
+    this.traffic = traffic;
+    this.receiver = receiver;
+  }
+
+  /**
+   * Create a recording bus.
+   * 
+   * @param traffic
+   *          Records every message sent, by command.
+   * @param receiver
+   *          Receives every message sent.
+   * @return A bus which records messages instead of sending them.
+   */
+  static MessageBus create(TrafficRecorder traffic, Receiver receiver) {
+    return (MessageBus) Proxy.newProxyInstance(MessageBus.class.getClassLoader(), new Class<?>[] { MessageBus.class },
+            new RecordingMessageBus(traffic, receiver));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) {
+    if (method.getDeclaringClass() == Object.class) {
+      return invokeObjectMethod(proxy, method, args);
+    }
+
+    if (args != null) {
+      for (Object arg : args) {
+        if (arg instanceof Message) {
+          Message message = (Message) arg;
+          String command = message.getCommandType();
+          traffic.record(command, message.getParts());
+          receiver.received(message.getSubject(), command, message);
+        }
+      }
+    }
+
+    return defaultValue(method.getReturnType());
+  }
+
+  static Object invokeObjectMethod(Object proxy, Method method, Object[] args) {
+    if (method.getName().equals("equals")) {
+      return proxy == args[0];
+    }
+    else if (method.getName().equals("hashCode")) {
+      return System.identityHashCode(proxy);
+    }
+    else {
+      return proxy.getClass().getInterfaces()[0].getSimpleName() + "@"
+              + Integer.toHexString(System.identityHashCode(proxy));
+    }
+  }
+
+  static Object defaultValue(Class<?> type) {
+    if (!type.isPrimitive() || type == void.class) {
+      return null;
+    }
+    else if (type == boolean.class) {
+      return false;
+    }
+    else if (type == char.class) {
+      return '\0';
+    }
+    else if (type == long.class) {
+      return 0L;
+    }
+    else if (type == float.class) {
+      return 0f;
+    }
+    else if (type == double.class) {
+      return 0d;
+    }
+    else if (type == byte.class) {
+      return (byte) 0;
+    }
+    else if (type == short.class) {
+      return (short) 0;
+    }
+    else {
+      return 0;
+    }
+  }
+}
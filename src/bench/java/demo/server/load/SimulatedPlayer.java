@@ -0,0 +1,417 @@
+package demo.server.load;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import demo.client.shared.game.model.BoardSimulation;
+import demo.client.shared.lobby.Invitation;
+import demo.client.shared.message.Command;
+import demo.client.shared.message.CorrectionEvent;
+import demo.client.shared.message.ExitMessage;
+import demo.client.shared.message.InputEvent;
+import demo.client.shared.meta.GameRoom;
+import demo.client.shared.meta.Player;
+
+/**
+ * A client playing against a {@link LoadHarness harnessed} server. Each player runs a
+ * {@link BoardSimulation} seeded like the server's, makes a random input on every
+ * {@link #tick(long) tick}, and sends its inputs in batches, as the client's board controller does.
+ * It accepts the server's corrections, restarts when it loses, and now and then leaves its game to
+ * spend some time in the lobby before rejoining.
+ * 
+ * Ticks must all be run by the same thread. Messages from the server may arrive on any thread; they
+ * are timed on arrival and queued for the next tick.
+ * 
+ * Every player and game sent to the server is a fresh copy, as if unmarshalled from the network, so
+ * that the server never shares objects with its clients.
+ */
+class SimulatedPlayer {
+
+  private enum State {
+    /** In the lobby, waiting to rejoin a game. */
+    LOBBY,
+    /** Waiting for an invitation to a game. */
+    INVITED,
+    /** Waiting for the server to add the player to a game. */
+    JOINING,
+    /** Playing a game. */
+    PLAYING
+  }
+
+  /** The number of inputs sent in each batch, as by the client. */
+  private static final int INPUT_BATCH_SIZE = 4;
+  /** The time (in milliseconds) allowed for the server to let a player into a game. */
+  private static final long JOIN_TIMEOUT = 5000;
+
+  private final LoadHarness harness;
+  private final SimulatedRoom room;
+  private final Random random;
+  private final String name;
+  /** The chance of leaving the game on each tick. */
+  private final double churnPerTick;
+  private final long lobbyTime;
+  private final long keepAlive;
+  private int id;
+  private int idGeneration;
+
+  private State state = State.LOBBY;
+  private int gameId;
+  private int gameSeed;
+  private BoardSimulation simulation;
+  private final int[] inputBuffer = new int[INPUT_BATCH_SIZE];
+  private int bufferedInputs;
+  private int firstBufferedStep;
+  /** The time (in milliseconds) at which the player rejoins a game, or gives up joining one. */
+  private long deadline;
+  private long nextKeepAlive;
+
+  /** Messages from the server, waiting to be handled on the next tick. */
+  private final Queue<Object> inbox = new ConcurrentLinkedQueue<Object>();
+  /** The command awaiting the player's arrival in a game. */
+  private volatile String joinCommand;
+  /** The time (in nanoseconds) at which {@link #joinCommand} was sent, or 0. */
+  private final AtomicLong joinSent = new AtomicLong();
+  /** The time (in nanoseconds) at which each batch of inputs awaiting relay was sent. */
+  private final ConcurrentMap<Long, Long> inputsSent = new ConcurrentHashMap<Long, Long>();
+  /** The time (in nanoseconds) at which the last keep alive awaiting relay was sent, or 0. */
+  private final AtomicLong keepAliveSent = new AtomicLong();
+  /** The time (in nanoseconds) at which the player left their last game, until it was relayed, or 0. */
+  private final AtomicLong leaveSent = new AtomicLong();
+
+  /**
+   * Create a SimulatedPlayer.
+   * 
+   * @param harness
+   *          The harness through which the player reaches the server.
+   * @param room
+   *          The group of players with whom this player plays.
+   * @param name
+   *          The player's name.
+   * @param seed
+   *          The seed of the player's random inputs.
+   * @param config
+   *          The options of the run.
+   */
+  SimulatedPlayer(LoadHarness harness, SimulatedRoom room, String name, long seed, LoadConfig config) {
+    this.harness = harness;
+    this.room = room;
+    this.name = name;
+    this.random = new Random(seed);
+    this.churnPerTick = config.churn / config.moveRate;
+    this.lobbyTime = (long) (config.lobbyTime * 1000);
+    this.keepAlive = (long) (config.keepAlive * 1000);
+  }
+
+  /**
+   * Register this player with the server for the first time.
+   * 
+   * @return The id assigned to this player.
+   */
+  int register() {
+    Player player = new Player(name);
+    id = harness.register(player);
+    idGeneration = player.getIdGeneration();
+
+    return id;
+  }
+
+  /**
+   * Get a copy of this player, as the client would send it.
+   */
+  Player identity() {
+    Player player = new Player(id, name, gameId);
+    player.setIdGeneration(idGeneration);
+
+    return player;
+  }
+
+  /**
+   * Host a new game.
+   * 
+   * @param guests
+   *          The players to invite.
+   * @return The id of the new game.
+   */
+  int host(Set<Player> guests) {
+    Invitation invitation = new Invitation();
+    invitation.setHost(identity());
+    invitation.setGuests(guests);
+    expectJoin(LoadHarness.INVITATION);
+
+    return harness.invite(invitation);
+  }
+
+  /**
+   * Join an existing game, without waiting to be invited.
+   * 
+   * @param gameId
+   *          The id of the game.
+   */
+  void join(int gameId) {
+    Invitation invitation = new Invitation();
+    invitation.setHost(identity());
+    invitation.setGameId(gameId);
+    invitation.setTarget(identity());
+    expectJoin(Command.JOIN_GAME.name());
+    harness.send(Command.JOIN_GAME, invitation, false);
+  }
+
+  /**
+   * Wait for an invitation to a game, then join it.
+   */
+  void awaitInvitation() {
+    state = State.INVITED;
+    deadline = System.currentTimeMillis() + JOIN_TIMEOUT;
+  }
+
+  private void expectJoin(String command) {
+    state = State.JOINING;
+    deadline = System.currentTimeMillis() + JOIN_TIMEOUT;
+    leaveSent.set(0);
+    joinCommand = command;
+    joinSent.set(System.nanoTime());
+  }
+
+  /**
+   * Note that the server has added this player to a game.
+   * 
+   * @param game
+   *          The game joined.
+   * @param now
+   *          The time (in nanoseconds) at which the message arrived.
+   */
+  void joined(GameRoom game, long now) {
+    long sent = joinSent.getAndSet(0);
+    if (sent != 0) {
+      harness.getLatencies().record(joinCommand, now - sent);
+    }
+    inbox.add(game);
+  }
+
+  /**
+   * Note that this player has been invited to a game.
+   * 
+   * @param invitation
+   *          The invitation.
+   */
+  void invited(Invitation invitation) {
+    inbox.add(invitation);
+  }
+
+  /**
+   * Note that the server has sent this player a correction.
+   * 
+   * @param correction
+   *          The correction.
+   */
+  void corrected(CorrectionEvent correction) {
+    inbox.add(correction);
+  }
+
+  /**
+   * Note that the server has relayed a batch of this player's inputs to their game.
+   * 
+   * @param event
+   *          The relayed inputs.
+   * @param now
+   *          The time (in nanoseconds) at which the message arrived.
+   */
+  void inputsRelayed(InputEvent event, long now) {
+    Long sent = inputsSent.remove(batchKey(event.getLife(), event.getEpoch(), event.getFirstStep()));
+    if (sent != null) {
+      harness.getLatencies().record(Command.INPUT_UPDATE.name(), now - sent);
+    }
+  }
+
+  /**
+   * Note that the server has relayed this player's keep alive to their game.
+   * 
+   * @param now
+   *          The time (in nanoseconds) at which the message arrived.
+   */
+  void keepAliveRelayed(long now) {
+    long sent = keepAliveSent.getAndSet(0);
+    if (sent != 0) {
+      harness.getLatencies().record(Command.GAME_KEEP_ALIVE.name(), now - sent);
+    }
+  }
+
+  /**
+   * Note that the server has told this player's last game that they left.
+   * 
+   * @param now
+   *          The time (in nanoseconds) at which the message arrived.
+   */
+  void leaveRelayed(long now) {
+    long sent = leaveSent.getAndSet(0);
+    if (sent != 0) {
+      harness.getLatencies().record(Command.LEAVE_GAME.name(), now - sent);
+    }
+  }
+
+  /**
+   * Advance this player by one game loop iteration.
+   * 
+   * @param now
+   *          The current time, in milliseconds.
+   */
+  void tick(long now) {
+    for (Object message = inbox.poll(); message != null; message = inbox.poll()) {
+      handle(message, now);
+    }
+
+    switch (state) {
+    case LOBBY:
+      if (now >= deadline) {
+        room.join(this);
+      }
+      else if (now >= nextKeepAlive) {
+        harness.send(Command.LOBBY_KEEP_ALIVE, identity(), true);
+        nextKeepAlive = now + keepAlive;
+      }
+      break;
+
+    case INVITED:
+    case JOINING:
+      if (now >= deadline) {
+        harness.joinTimedOut();
+        joinSent.set(0);
+        room.leave(this);
+        state = State.LOBBY;
+      }
+      break;
+
+    case PLAYING:
+      if (random.nextDouble() < churnPerTick) {
+        leave(now);
+      }
+      else {
+        step();
+        if (now >= nextKeepAlive) {
+          keepAliveSent.compareAndSet(0, System.nanoTime());
+          harness.send(Command.GAME_KEEP_ALIVE, identity(), false);
+          nextKeepAlive = now + keepAlive;
+        }
+      }
+      break;
+    }
+  }
+
+  private void handle(Object message, long now) {
+    if (message instanceof GameRoom) {
+      if (state == State.JOINING) {
+        GameRoom game = (GameRoom) message;
+        state = State.PLAYING;
+        gameId = game.getId();
+        gameSeed = game.getSeed();
+        simulation = new BoardSimulation(gameSeed, id, 0);
+        bufferedInputs = 0;
+        nextKeepAlive = now + keepAlive;
+      }
+    }
+    else if (message instanceof Invitation) {
+      if (state == State.INVITED) {
+        expectJoin(Command.JOIN_GAME.name());
+        harness.send(Command.JOIN_GAME, new Invitation((Invitation) message, identity()), false);
+      }
+    }
+    else if (message instanceof CorrectionEvent) {
+      BoardSimulation correction = ((CorrectionEvent) message).getSimulation();
+      if (state == State.PLAYING && correction.getLife() == simulation.getLife()) {
+        simulation = new BoardSimulation(correction);
+        // Buffered and unrelayed inputs were applied to the diverged simulation.
+        bufferedInputs = 0;
+        inputsSent.clear();
+        harness.correctionApplied();
+      }
+    }
+  }
+
+  private void step() {
+    if (bufferedInputs == 0) {
+      firstBufferedStep = simulation.getStep();
+    }
+    int input = nextInput();
+    simulation.step(input);
+    inputBuffer[bufferedInputs++] = input;
+
+    if (simulation.isLost()) {
+      // Let the server see the losing move, then start again straight away.
+      flushInputs();
+      simulation = new BoardSimulation(gameSeed, id, simulation.getLife() + 1);
+      harness.restarted();
+      return;
+    }
+
+    // Full rows are cleared by the server as soon as it replays the step that filled them.
+    simulation.clearFullRows();
+    if (bufferedInputs == INPUT_BATCH_SIZE) {
+      flushInputs();
+    }
+  }
+
+  private void flushInputs() {
+    int[] inputs = Arrays.copyOf(inputBuffer, bufferedInputs);
+    bufferedInputs = 0;
+
+    InputEvent event = new InputEvent(identity(), gameId, simulation, firstBufferedStep, inputs, 0);
+    inputsSent.put(batchKey(event.getLife(), event.getEpoch(), event.getFirstStep()), System.nanoTime());
+    harness.send(Command.INPUT_UPDATE, event, false);
+    harness.inputsSent(inputs.length);
+  }
+
+  /**
+   * Get a random input, with roughly the mix of a real player's: mostly nothing, with frequent
+   * sideways moves and rotations and an occasional drop.
+   */
+  private int nextInput() {
+    int roll = random.nextInt(100);
+    if (roll < 3) {
+      return BoardSimulation.packInput(BoardSimulation.DROP, 0, 0, 0);
+    }
+    else if (roll < 6) {
+      return BoardSimulation.packInput(BoardSimulation.FAST, 0, 0, 0);
+    }
+    else if (roll < 14) {
+      return BoardSimulation.packInput(BoardSimulation.ROTATE, 0, 0, 0);
+    }
+    else if (roll < 30) {
+      return BoardSimulation.packInput(0, roll % 2 == 0 ? 1 : -1, 0, 0);
+    }
+    else {
+      return 0;
+    }
+  }
+
+  private void leave(long now) {
+    ExitMessage exitMessage = new ExitMessage();
+    GameRoom game = new GameRoom();
+    game.setId(gameId);
+    exitMessage.setGame(game);
+    exitMessage.setPlayer(identity());
+    leaveSent.set(System.nanoTime());
+    harness.send(Command.LEAVE_GAME, exitMessage, false);
+    room.leave(this);
+
+    state = State.LOBBY;
+    gameId = 0;
+    simulation = null;
+    bufferedInputs = 0;
+    inputsSent.clear();
+    keepAliveSent.set(0);
+    // The client registers again on returning to the lobby.
+    harness.register(identity());
+    deadline = now + lobbyTime;
+    nextKeepAlive = now + keepAlive;
+  }
+
+  private static long batchKey(int life, int epoch, int firstStep) {
+    return ((long) life << 48) ^ ((long) epoch << 32) ^ (firstStep & 0xFFFFFFFFL);
+  }
+}
@@ -0,0 +1,73 @@
+package demo.server.load;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import demo.client.shared.meta.Player;
+
+/**
+ * A group of {@link SimulatedPlayer simulated players} who play together.
+ * 
+ * The group keeps track of the game it is playing on the server. The first player to join hosts a
+ * new game; later players join it. Once every player has left, the game is over and the next player
+ * to join hosts another.
+ * 
+ * This class is thread safe.
+ */
+class SimulatedRoom {
+
+  private final List<SimulatedPlayer> players = new ArrayList<SimulatedPlayer>();
+  /** The id of the group's game, or 0 if it has none. */
+  private int gameId;
+  /** The number of players in the game, or on their way into it. */
+  private int members;
+
+  synchronized void add(SimulatedPlayer player) {
+    players.add(player);
+  }
+
+  /**
+   * Start the group's first game, with the first player hosting and inviting the others.
+   */
+  synchronized void open() {
+    SimulatedPlayer host = players.get(0);
+    Set<Player> guests = new HashSet<Player>();
+    for (SimulatedPlayer guest : players.subList(1, players.size())) {
+      guest.awaitInvitation();
+      guests.add(guest.identity());
+    }
+    gameId = host.host(guests);
+    members = players.size();
+  }
+
+  /**
+   * Send a player back into the group's game, or host a new one if there is none.
+   * 
+   * @param player
+   *          A player of this group who is in the lobby.
+   */
+  synchronized void join(SimulatedPlayer player) {
+    if (members == 0) {
+      gameId = player.host(new HashSet<Player>());
+    }
+    else {
+      player.join(gameId);
+    }
+    members += 1;
+  }
+
+  /**
+   * Note that a player has left the group's game, or failed to join it.
+   * 
+   * @param player
+   *          A player of this group.
+   */
+  synchronized void leave(SimulatedPlayer player) {
+    members -= 1;
+    if (members == 0) {
+      gameId = 0;
+    }
+  }
+}
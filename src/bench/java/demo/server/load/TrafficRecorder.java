@@ -0,0 +1,123 @@
+package demo.server.load;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.errai.marshalling.server.ServerMarshalling;
+
+/**
+ * Counts the messages sent in one direction between clients and the server, and their size once
+ * marshalled to JSON as Errai would send them.
+ * 
+ * This class is thread safe.
+ */
+class TrafficRecorder {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * The number and total size of the messages recorded under one key.
+   */
+  static class Tally {
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    long getMessages() {
+      return messages.get();
+    }
+
+    long getBytes() {
+      return bytes.get();
+    }
+  }
+
+  private final ConcurrentMap<String, Tally> tallies = new ConcurrentHashMap<String, Tally>();
+  private final boolean countBytes;
+  /** Why payloads could not be marshalled, or null if they could. */
+  private volatile String marshallingError;
+
+  /**
+   * Create a TrafficRecorder.
+   * 
+   * @param countBytes
+   *          If true, every payload is marshalled to measure its size. This is done on the thread
+   *          sending the message, as it would be by the bus.
+   */
+  TrafficRecorder(boolean countBytes) {
+    this.countBytes = countBytes;
+  }
+
+  /**
+   * Record a message.
+   * 
+   * @param key
+   *          The key under which the message is counted, usually its command.
+   * @param payload
+   *          The content of the message, or null if there is nothing to measure.
+   */
+  void record(String key, Object payload) {
+    Tally tally = tallies.get(key);
+    if (tally == null) {
+      tallies.putIfAbsent(key, new Tally());
+      tally = tallies.get(key);
+    }
+    tally.messages.incrementAndGet();
+    if (payload != null) {
+      tally.bytes.addAndGet(sizeOf(payload));
+    }
+  }
+
+  private long sizeOf(Object payload) {
+    if (!countBytes || marshallingError != null) {
+      return 0;
+    }
+
+    try {
+      return ServerMarshalling.toJSON(payload).getBytes(UTF_8).length;
+    } catch (RuntimeException e) {
+      marshallingError = e.toString();
+    } catch (LinkageError e) {
+      marshallingError = e.toString();
+    }
+
+    return 0;
+  }
+
+  /**
+   * Forget every message recorded so far.
+   */
+  void reset() {
+    tallies.clear();
+  }
+
+  /**
+   * Get the messages recorded so far.
+   * 
+   * @return A map of keys to the tally of messages recorded under each, sorted by key.
+   */
+  Map<String, Tally> getTallies() {
+    return new TreeMap<String, Tally>(tallies);
+  }
+
+  /**
+   * Check if message sizes are being measured.
+   * 
+   * @return True iff the size of every message has been measured so far.
+   */
+  boolean isCountingBytes() {
+    return countBytes && marshallingError == null;
+  }
+
+  /**
+   * Get the reason that message sizes are not being measured.
+   * 
+   * @return A description of the failure to marshal a payload, or null if there has been none.
+   */
+  String getMarshallingError() {
+    return marshallingError;
+  }
+}
@@ -8,6 +8,8 @@ import demo.client.local.game.controllers.BoardController;
 import demo.client.local.game.controllers.SecondaryDisplayController;
 import demo.client.local.game.tools.CallOutManager;
 import demo.client.shared.message.Command;
+import demo.client.shared.message.CorrectionEvent;
+import demo.client.shared.message.GameFrame;
 import demo.client.shared.message.ScoreEvent;
 import demo.client.shared.meta.Player;
 import demo.client.shared.meta.ScoreTracker;
@@ -38,16 +40,39 @@ public class BoardCallback implements MessageCallback {
       ScoreEvent event = message.getValue(ScoreEvent.class);
       updateScore(event.getScoreTracker(), event.getTarget());
       break;
+    case BOARD_CORRECTION:
+      correct(message.getValue(CorrectionEvent.class));
+      break;
     case LEAVE_GAME:
-      Player player = message.getValue(Player.class);
-      if (!player.equals(client.getPlayer()))
-        removePlayer(player);
+      playerLeft(message.getValue(Player.class));
+      break;
+    case GAME_FRAME:
+      GameFrame frame = message.getValue(GameFrame.class);
+      for (ScoreEvent scoreEvent : frame.getScores()) {
+        updateScore(scoreEvent.getScoreTracker(), scoreEvent.getTarget());
+      }
+      for (CorrectionEvent correction : frame.getCorrections()) {
+        correct(correction);
+      }
+      for (Player player : frame.getLeftPlayers()) {
+        playerLeft(player);
+      }
       break;
     default:
       break;
     }
   }
 
+  private void correct(CorrectionEvent correction) {
+    if (correction.getPlayer().equals(client.getPlayer()))
+      controller.correct(correction.getSimulation());
+  }
+
+  private void playerLeft(Player player) {
+    if (!player.equals(client.getPlayer()))
+      removePlayer(player);
+  }
+
   private void removePlayer(Player player) {
     client.getGameRoom().removePlayer(player.getId());
     secondaryController.removeTracker(player);
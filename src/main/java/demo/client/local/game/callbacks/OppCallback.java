@@ -3,13 +3,19 @@ package demo.client.local.game.callbacks;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.jboss.errai.bus.client.ErraiBus;
+import org.jboss.errai.bus.client.api.base.MessageBuilder;
 import org.jboss.errai.bus.client.api.messaging.Message;
 import org.jboss.errai.bus.client.api.messaging.MessageCallback;
 
 import demo.client.local.Client;
 import demo.client.local.game.controllers.OppController;
 import demo.client.local.game.gui.ControllableBoardDisplay;
+import demo.client.local.game.tools.PerfMonitor;
 import demo.client.shared.message.Command;
+import demo.client.shared.message.CorrectionEvent;
+import demo.client.shared.message.GameFrame;
+import demo.client.shared.message.InputEvent;
 import demo.client.shared.message.MoveEvent;
 import demo.client.shared.message.ScoreEvent;
 import demo.client.shared.meta.GameRoom;
@@ -26,14 +32,17 @@ public class OppCallback implements MessageCallback {
   private Map<Player, OppController> oppControllers;
   private ControllableBoardDisplay boardDisplay;
   private Client client;
-  public OppCallback(ControllableBoardDisplay boardDisplay, Client client) {
+  private PerfMonitor monitor;
+
+  public OppCallback(ControllableBoardDisplay boardDisplay, Client client, PerfMonitor monitor) {
     this.client = client;
+    this.monitor = monitor;
     this.oppControllers = new HashMap<Player, OppController>();
     this.boardDisplay = boardDisplay;
 
     GameRoom game = client.getGameRoom();
     for (Player player : game.getPlayers().values()) {
-      this.oppControllers.put(player, new OppController(boardDisplay, client));
+      this.oppControllers.put(player, new OppController(boardDisplay, client, monitor));
     }
     this.oppControllers.get(client.getPlayer()).setActive(true);
     this.oppControllers.get(client.getPlayer()).startGame();
@@ -45,23 +54,42 @@ public class OppCallback implements MessageCallback {
     switch (command) {
 
     case MOVE_UPDATE:
-      MoveEvent moveEvent = message.getValue(MoveEvent.class);
-      OppController movedController = oppControllers.get(moveEvent.getPlayer());
-      movedController.setPaused(false);
-      movedController.addState(moveEvent.getState());
+      monitor.gameMessageReceived(1);
+      addMove(message.getValue(MoveEvent.class));
       break;
 
     case UPDATE_SCORE:
-      ScoreEvent scoreEvent = message.getValue(ScoreEvent.class);
-      if (!oppControllers.containsKey(scoreEvent.getScoreTracker().getPlayer())) {
-        oppControllers.put(scoreEvent.getScoreTracker().getPlayer(), new OppController(boardDisplay, client));
-      }
+      addPlayer(message.getValue(ScoreEvent.class));
       break;
 
     case GAME_KEEP_ALIVE:
-      Player pausePlayer = message.getValue(Player.class);
-      OppController pausedController = oppControllers.get(pausePlayer);
-      pausedController.setPaused(true);
+      pause(message.getValue(Player.class));
+      break;
+
+    case GAME_FRAME:
+      GameFrame frame = message.getValue(GameFrame.class);
+      monitor.gameMessageReceived(frame.getInputs().size() + frame.getMoves().size());
+      // Scores come first here, so that moves of players who have just joined are not lost.
+      for (ScoreEvent scoreEvent : frame.getScores()) {
+        addPlayer(scoreEvent);
+      }
+      // Syncs come before inputs, since replays skip inputs already included in a sync.
+      for (CorrectionEvent syncEvent : frame.getSyncs()) {
+        OppController syncedController = oppControllers.get(syncEvent.getPlayer());
+        if (syncedController != null) {
+          syncedController.sync(syncEvent.getSimulation());
+        }
+      }
+      for (InputEvent inputEvent : frame.getInputs()) {
+        addInputs(inputEvent);
+      }
+      for (MoveEvent moveEvent : frame.getMoves()) {
+        addMove(moveEvent);
+      }
+      for (Player pausePlayer : frame.getPausedPlayers()) {
+        pause(pausePlayer);
+      }
+      requestSyncs();
       break;
 
     case SWITCH_OPPONENT:
@@ -80,6 +108,50 @@ public class OppCallback implements MessageCallback {
     }
   }
 
+  private void addMove(MoveEvent moveEvent) {
+    OppController movedController = oppControllers.get(moveEvent.getPlayer());
+    if (movedController != null) {
+      movedController.setPaused(false);
+      movedController.addMove(moveEvent);
+    }
+  }
+
+  private void addInputs(InputEvent inputEvent) {
+    OppController movedController = oppControllers.get(inputEvent.getPlayer());
+    if (movedController != null) {
+      movedController.setPaused(false);
+      movedController.addInputs(inputEvent);
+    }
+  }
+
+  /**
+   * Ask the server for the boards of any opponents whose replays have missed inputs or diverged.
+   */
+  private void requestSyncs() {
+    for (Map.Entry<Player, OppController> entry : oppControllers.entrySet()) {
+      if (entry.getValue().takeSyncRequest()) {
+        InputEvent request = new InputEvent();
+        request.setPlayer(entry.getKey());
+        request.setGameId(client.getGameRoom().getId());
+        MessageBuilder.createMessage("Relay").command(Command.BOARD_SYNC).withValue(request).noErrorHandling()
+                .sendNowWith(ErraiBus.get());
+      }
+    }
+  }
+
+  private void addPlayer(ScoreEvent scoreEvent) {
+    if (!oppControllers.containsKey(scoreEvent.getScoreTracker().getPlayer())) {
+      oppControllers.put(scoreEvent.getScoreTracker().getPlayer(), new OppController(boardDisplay, client, monitor));
+    }
+  }
+
+  private void pause(Player pausePlayer) {
+    OppController pausedController = oppControllers.get(pausePlayer);
+    if (pausedController != null) {
+      pausedController.setPaused(true);
+    }
+  }
+
   public void destroy() {
     for (OppController controller : oppControllers.values()) {
       controller.stop();
@@ -1,5 +1,9 @@
 package demo.client.local.game.controllers;
 
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationCallback;
+import com.google.gwt.animation.client.AnimationScheduler.AnimationHandle;
+import com.google.gwt.core.client.Duration;
 import com.google.gwt.user.client.Timer;
 
 import demo.client.local.Client;
@@ -9,14 +13,27 @@ import demo.client.local.game.tools.BoardMessageBus;
 import demo.client.local.game.tools.ClearState;
 import demo.client.local.game.tools.GameHeartBeat;
 import demo.client.local.game.tools.Pacer;
-import demo.client.shared.game.model.BackgroundBlockModel;
-import demo.client.shared.game.model.BlockOverflow;
+import demo.client.local.game.tools.PerfMonitor;
 import demo.client.shared.game.model.BoardModel;
+import demo.client.shared.game.model.BoardSimulation;
+import demo.client.shared.message.InputEvent;
+import demo.client.shared.meta.GameRoom;
+import demo.client.shared.meta.Player;
 import demo.client.shared.meta.ScoreTracker;
 
 /**
  * This class runs the main game loop for Block Drop, updating the model and view.
  * 
+ * The model is updated in fixed steps of {@code loopTime} milliseconds, driven by a timer. The view
+ * is drawn separately on animation frames, and only when the model has changed since the last
+ * frame. Browsers do not run animation frames for hidden tabs, so nothing is drawn while the game
+ * is not visible.
+ * 
+ * The rules of the game are run by a {@link BoardSimulation}, seeded like the server's simulation
+ * of this board. Each step's input is buffered and sent to the server in batches, and the server
+ * replays them to decide scores and sabotage. The server {@link #correct(BoardSimulation) corrects}
+ * this board if the two simulations ever disagree.
+ * 
  * @author mbarkley <mbarkley@redhat.com>
  * 
  */
@@ -27,21 +44,40 @@ public class BoardController {
   private SecondaryDisplayController secondaryController;
   private BoardMessageBus messageBus;
 
+  protected BoardSimulation simulation;
+  // The board of the simulation (or of the latest opponent state, for an OppController)
   protected BoardModel model;
   protected Block activeBlock;
   protected Block nextBlock;
 
   // A Timer for running the game loop
   private Timer updateTimer;
+  // Draws the display on animation frames
+  private AnimationCallback renderCallback;
+  // The pending animation frame request, or null if none is pending
+  private AnimationHandle renderHandle;
   // A Timer for maintaining a connection with the server while not actively playing
   private GameHeartBeat heartBeatTimer;
+  // Samples frame times and loop jitter, or null if this controller is not monitored
+  private PerfMonitor monitor;
 
   // The number of iterations for a block to drop one square on the board. Must be a multiple of 4.
-  private int dropIncrement = 16;
+  private int dropIncrement = BoardSimulation.DROP_INCREMENT;
   // The time (in milliseconds) between calls to the game loop.
   private int loopTime = 25;
-  // A counter of elapsed iterations since a block last dropped.
-  private int loopCounter = 0;
+  // The maximum number of game loop iterations run at once to catch up with a late timer.
+  private static final int MAX_CATCH_UP_STEPS = 8;
+  // Elapsed time (in milliseconds) not yet consumed by game loop iterations.
+  private double pendingTime;
+  // The time (in milliseconds) at which the timer last fired.
+  private double lastStepTime;
+  // True while the game loop is running.
+  private boolean running = false;
+
+  // True if the model has changed since the display was last drawn.
+  private boolean dirty = false;
+  // True if the display should not show full rows (during the row clearing animation).
+  private boolean hideFullRows = false;
 
   // True if the game is paused.
   private boolean pause = false;
@@ -57,6 +93,22 @@ public class BoardController {
   private boolean singleRowMove = false;
   private boolean singleRotate;
 
+  // Player input to be applied in the next game loop iteration.
+  private int colMove = 0;
+  private int rowMove = 0;
+  private boolean drop = false;
+  private boolean fast = false;
+  // Sabotage rows received from opponents, not yet added to the board.
+  private int rowsToAdd = 0;
+
+  // The number of simulation steps sent to the server in each input update.
+  private static final int INPUT_BATCH_SIZE = 4;
+  // Inputs of simulation steps not yet sent to the server.
+  private int[] inputBuffer = new int[INPUT_BATCH_SIZE];
+  private int bufferedInputs = 0;
+  // The simulation step before the first buffered input was applied.
+  private int firstBufferedStep;
+
   // Controls speed of row clearing animation
   private ClearState clearState = ClearState.START;
 
@@ -70,7 +122,7 @@ public class BoardController {
    * @param secondaryController
    *          A controller for the score list and the canvas displaying the next block.
    * @param messageBus
-   *          A bus for broadcasting moves and score updates.
+   *          A bus for sending inputs to the server.
    */
   public BoardController(ControllableBoardDisplay boardDisplay, SecondaryDisplayController secondaryController,
           BoardMessageBus messageBus, Client client) {
@@ -82,7 +134,8 @@ public class BoardController {
     this.heartBeatTimer = new GameHeartBeat(client);
 
     // Initiate BoardModel.
-    model = new BoardModel();
+    simulation = createSimulation(0);
+    model = simulation.getModel();
     activeBlock = new Block(model.getActiveBlock(), boardDisplay.getSizeCategory());
     nextBlock = new Block(model.getNextBlock(), boardDisplay.getSizeCategory());
 
@@ -90,11 +143,44 @@ public class BoardController {
     updateTimer = new Timer() {
       @Override
       public void run() {
-        update();
+        step();
+      }
+    };
+    renderCallback = new AnimationCallback() {
+      @Override
+      public void execute(double timestamp) {
+        renderHandle = null;
+        if (monitor != null) {
+          double start = Duration.currentTimeMillis();
+          render();
+          monitor.frameDrawn(start, Duration.currentTimeMillis());
+        }
+        else {
+          render();
+        }
+        if (running) {
+          requestRender();
+        }
       }
     };
   }
 
+  /**
+   * Create a simulation seeded like the server's simulation of the local player's board.
+   * 
+   * @param life
+   *          The number of times the local player has restarted in this game.
+   */
+  private BoardSimulation createSimulation(int life) {
+    GameRoom room = client.getGameRoom();
+    if (room != null && client.getPlayer() != null) {
+      return new BoardSimulation(room.getSeed(), client.getPlayer().getId(), life);
+    }
+    else {
+      return BoardSimulation.unseeded();
+    }
+  }
+
   /**
    * Reset this controller in preparation for a call to {@link BoardController#startGame()
    * startGame}.
@@ -103,13 +189,59 @@ public class BoardController {
     activeBlock = new Block(model.getActiveBlock(), boardDisplay.getSizeCategory());
     nextBlock = new Block(model.getNextBlock(), boardDisplay.getSizeCategory());
     clearState = ClearState.START;
+    hideFullRows = false;
   }
 
   /**
    * Start the game loop for this controller.
    */
   public void startGame() {
+    running = true;
+    pendingTime = 0;
+    lastStepTime = Duration.currentTimeMillis();
     updateTimer.scheduleRepeating(loopTime);
+    if (monitor != null) {
+      monitor.loopStarted();
+    }
+    requestRender();
+  }
+
+  /**
+   * Stop the game loop for this controller. The display is drawn once more if needed.
+   */
+  private void stopGame() {
+    running = false;
+    updateTimer.cancel();
+  }
+
+  /**
+   * Run as many game loop iterations as have elapsed since the timer last fired. Browser timers
+   * fire late under load, so this keeps the game speed independent of timer accuracy.
+   */
+  private void step() {
+    double now = Duration.currentTimeMillis();
+    if (monitor != null) {
+      monitor.loopFired(now - lastStepTime, loopTime);
+    }
+    pendingTime += now - lastStepTime;
+    lastStepTime = now;
+
+    int steps = 0;
+    while (running && pendingTime >= loopTime && steps < MAX_CATCH_UP_STEPS) {
+      update();
+      pendingTime -= loopTime;
+      steps += 1;
+    }
+    // After a long stall (e.g. while the tab was hidden), drop the backlog rather than fast-forward.
+    if (steps == MAX_CATCH_UP_STEPS) {
+      pendingTime = 0;
+    }
+  }
+
+  private void requestRender() {
+    if (renderHandle == null) {
+      renderHandle = AnimationScheduler.get().requestAnimationFrame(renderCallback);
+    }
   }
 
   /**
@@ -127,39 +259,104 @@ public class BoardController {
   private void performMovementUpdate() {
     int numFullRows = model.numFullRows();
     if (numFullRows > 0) {
-      if (clearState.equals(ClearState.START))
-        messageBus.sendMoveUpdate(model, client.getPlayer());
       clearRows(numFullRows);
     }
-    else if (model.getRowsToAdd() > 0) {
+    else if (rowsToAdd > 0) {
       addRowsToBottom();
-      messageBus.sendMoveUpdate(model, client.getPlayer());
     }
     else {
-      final boolean moved = moveActiveBlock();
-      if (moved)
-        messageBus.sendMoveUpdate(model, client.getPlayer());
+      moveActiveBlock();
     }
   }
 
   private boolean moveActiveBlock() {
     maybeResetActiveBlock();
-    final boolean moved = activeBlockUpdate();
+    final boolean moved = stepSimulation(currentInput());
 
-    try {
-      // If the block could not drop, start a new block.
-      if (blockIsStuck(moved)) {
-        model.initNextBlock();
-      }
-    } catch (BlockOverflow e) {
+    if (simulation.isLost()) {
       handleLossOfGame();
     }
     redraw();
-    resetAndUpdateModel();
+    resetInput();
 
     return moved;
   }
 
+  /**
+   * Advance the simulation by one step and buffer the input for the server.
+   * 
+   * @param input
+   *          A packed input, as per {@link BoardSimulation#packInput(int, int, int, int)}.
+   * @return True iff the active block moved.
+   */
+  private boolean stepSimulation(int input) {
+    if (bufferedInputs == 0) {
+      firstBufferedStep = simulation.getStep();
+    }
+    final boolean moved = simulation.step(input);
+    inputBuffer[bufferedInputs++] = input;
+
+    // Full rows are cleared by the server as soon as it replays the step that filled them, so
+    // wait until they are cleared here as well before sending the checksum.
+    if (bufferedInputs == INPUT_BATCH_SIZE && model.numFullRows() == 0) {
+      flushInputs();
+    }
+
+    return moved;
+  }
+
+  /**
+   * Send any buffered inputs to the server.
+   */
+  private void flushInputs() {
+    GameRoom room = client.getGameRoom();
+    if (bufferedInputs == 0 || room == null) {
+      return;
+    }
+
+    int[] inputs = new int[bufferedInputs];
+    System.arraycopy(inputBuffer, 0, inputs, 0, bufferedInputs);
+    bufferedInputs = 0;
+
+    Player target = secondaryController.getTarget();
+    messageBus.sendInputUpdate(new InputEvent(client.getPlayer(), room.getId(), simulation, firstBufferedStep,
+            inputs, target != null ? target.getId() : 0));
+  }
+
+  /**
+   * Get the player's input for the next game loop iteration.
+   * 
+   * @return A packed input, as per {@link BoardSimulation#packInput(int, int, int, int)}.
+   */
+  private int currentInput() {
+    int flags = 0;
+    int cols = 0;
+    int rows = 0;
+
+    // If the user wishes to drop the block, do nothing else.
+    if (drop) {
+      setColMove(0);
+      flags |= BoardSimulation.DROP;
+    }
+    else {
+      if (rotate()) {
+        flags |= BoardSimulation.ROTATE;
+      }
+      // Check if the user wants to increase the speed at which the block drops
+      if (fast) {
+        flags |= BoardSimulation.FAST;
+      }
+      else if (singleRowMove) {
+        rows = rowMove;
+      }
+      if (horizontalMove()) {
+        cols = colMove;
+      }
+    }
+
+    return BoardSimulation.packInput(flags, cols, rows, 0);
+  }
+
   private void maybeSendPauseHeartBeat() {
     if (pausePacer.isReady()) {
       messageBus.sendPauseUpdate(client.getPlayer());
@@ -170,29 +367,26 @@ public class BoardController {
     }
   }
 
-  private void resetAndUpdateModel() {
-    model.setDrop(false);
+  private void resetInput() {
+    drop = false;
     if (rotate())
       incrementRotate();
     if (horizontalMove())
       incrementMovePacer();
-    model.setPendingRowMove(0);
+    rowMove = 0;
     singleRowMove = false;
-    loopCounter = loopCounter == dropIncrement ? 0 : loopCounter + 1;
   }
 
   private void handleLossOfGame() {
-    updateTimer.cancel();
+    // Let the server see the losing move.
+    flushInputs();
+    stopGame();
     // Keep alive presence in game room
     heartBeatTimer.scheduleRepeating(loopTime * dropIncrement);
     // Display game over prompt to user
     boardDisplay.gameOver();
   }
 
-  private boolean blockIsStuck(boolean moved) {
-    return !moved && model.getPendingRowMove() > 0;
-  }
-
   private void maybeResetActiveBlock() {
     if (!activeBlock.isModel(model.getActiveBlock())) {
       activeBlock = new Block(model.getActiveBlock(), boardDisplay.getSizeCategory());
@@ -201,10 +395,33 @@ public class BoardController {
     }
   }
 
+  /**
+   * Mark the display as needing to be drawn on the next animation frame.
+   */
   public void redraw() {
-    boardDisplay.clearBoard();
-    Block allSquares = new Block(model.getAllSquares(), boardDisplay.getSizeCategory());
-    boardDisplay.drawBlock(0, 0, allSquares);
+    dirty = true;
+  }
+
+  /**
+   * Draw the display immediately, if it has changed since it was last drawn.
+   */
+  protected void render() {
+    if (dirty) {
+      dirty = false;
+      if (hideFullRows) {
+        boardDisplay.updateNonFullRows(model);
+      }
+      else {
+        drawBoard();
+      }
+    }
+  }
+
+  /**
+   * Bring the display up to date with every square of the board, including the active block.
+   */
+  protected void drawBoard() {
+    boardDisplay.updateBoard(model);
   }
 
   /**
@@ -212,34 +429,51 @@ public class BoardController {
    */
   public void restart() {
     // Reset board model and controller
-    model = new BoardModel();
+    simulation = createSimulation(simulation.getLife() + 1);
+    model = simulation.getModel();
+    bufferedInputs = 0;
+    rowsToAdd = 0;
     boardDisplay.clearBoard();
     reset();
 
-    // Subtract score penalty and update score
+    // Subtract score penalty and update score (the server applies the same penalty when it sees the
+    // loss)
     secondaryController.getScoreTracker().setScore(
             secondaryController.getScoreTracker().getScore() - ScoreTracker.LOSS_PENALTY);
     secondaryController.updateAndSortScore(secondaryController.getScoreTracker());
-    messageBus.sendScoreUpdate(secondaryController.getScoreTracker(), null);
 
     // Show time
     startGame();
     heartBeatTimer.cancel();
   }
 
+  /**
+   * Replace the simulation of this board with the server's, after the two have diverged. Corrections
+   * for an earlier life, or arriving after the game was lost, are ignored.
+   * 
+   * @param correction
+   *          The server's simulation of this board.
+   */
+  public void correct(BoardSimulation correction) {
+    if (!running || correction.getLife() != simulation.getLife()) {
+      return;
+    }
+
+    simulation = correction;
+    model = simulation.getModel();
+    // Buffered inputs were applied to the diverged simulation.
+    bufferedInputs = 0;
+    boardDisplay.clearBoard();
+    reset();
+    secondaryController.drawBlockToNextCanvas(nextBlock);
+    redraw();
+  }
+
   // This method should never be called when there are full rows.
   private void addRowsToBottom() {
-    BackgroundBlockModel bgModel = model.getNonFullRows();
-    Block bg = new Block(bgModel, boardDisplay.getSizeCategory());
-    boardDisplay.undrawBlock(0, 0, bg);
-    boardDisplay.undrawBlock(Block.indexToCoord(model.getActiveBlockCol(), boardDisplay.getSizeCategory()),
-            Block.indexToCoord(model.getActiveBlockRow(), boardDisplay.getSizeCategory()), activeBlock);
-    model.addRows();
-    bgModel = model.getNonFullRows();
-    bg = new Block(bgModel, boardDisplay.getSizeCategory());
-    boardDisplay.drawBlock(0, 0, bg);
-    boardDisplay.drawBlock(Block.indexToCoord(model.getActiveBlockCol(), boardDisplay.getSizeCategory()),
-            Block.indexToCoord(model.getActiveBlockRow(), boardDisplay.getSizeCategory()), activeBlock);
+    stepSimulation(BoardSimulation.packInput(0, 0, 0, rowsToAdd));
+    rowsToAdd = 0;
+    redraw();
   }
 
   /**
@@ -260,64 +494,30 @@ public class BoardController {
       case SECOND_UNDRAW:
       case THIRD_UNDRAW:
       case LAST_UNDRAW:
-        boardDisplay.clearBoard();
-        boardDisplay.drawBlock(0, 0, new Block(model.getNonFullRows(), boardDisplay.getSizeCategory()));
+        hideFullRows = true;
+        redraw();
         break;
       case FIRST_REDRAW:
       case SECOND_REDRAW:
       case THIRD_REDRAW:
-        boardDisplay.clearBoard();
-        boardDisplay.drawBlock(0, 0, new Block(model.getAllSquares(), boardDisplay.getSizeCategory()));
+        hideFullRows = false;
+        redraw();
         break;
       case DROPPING:
-        boardDisplay.clearBoard();
         model.clearFullRows();
         // Redraw background blocks.
-        boardDisplay.drawBlock(0, 0, new Block(model.getAllSquares(), boardDisplay.getSizeCategory()));
-        // Update the score.
+        hideFullRows = false;
+        redraw();
+        // Update the score. The server decides the score and sabotage when it replays these inputs.
         secondaryController.updateScore(numFullRows);
-        messageBus.sendScoreUpdate(secondaryController.getScoreTracker(), secondaryController.getTarget());
+        flushInputs();
         break;
       }
     clearState = clearState.getNextState();
   }
 
-  /**
-   * Update the position of the active block in the model and redraw it in the display.
-   * 
-   * @return True iff the active block moved during this call.
-   */
-  protected boolean activeBlockUpdate() {
-    // If the user wishes to drop the block, do nothing else.
-    if (model.isDropping()) {
-      setColMove(0);
-      model.setPendingRowMove(model.getDropDistance());
-    }
-    else {
-      if (rotate()) {
-        model.rotateActiveBlock();
-      }
-      // Check if the user wants to increase the speed at which the block drops
-      if (model.isFast()) {
-        model.setPendingRowMove(1);
-      }
-      else if (!singleRowMove) {
-        // Drop by one row every time counter hits dropIncrement.
-        model.setPendingRowMove(loopCounter == dropIncrement ? 1 : 0);
-      }
-    }
-
-    // Attempt to move model.
-    boolean moved = horizontalMove() ? model.moveActiveBlock(true) : model.moveActiveBlock(false);
-    // If that didn't work, ignore the colMove (so that the block may still drop).
-    if (!moved && horizontalMove())
-      moved = model.moveActiveBlock(false);
-
-    return moved;
-  }
-
   private boolean horizontalMove() {
-    return singleColMove && model.getPendingColMove() != 0 || movePacer.isReady();
+    return singleColMove && colMove != 0 || movePacer.isReady();
   }
 
   private boolean rotate() {
@@ -333,7 +533,7 @@ public class BoardController {
       movePacer.increment();
     else {
       singleColMove = false;
-      model.setPendingColMove(0);
+      colMove = 0;
     }
   }
 
@@ -363,7 +563,7 @@ public class BoardController {
    *          The number of squares to move (right is positive).
    */
   public void setColMove(int i) {
-    model.setPendingColMove(i);
+    colMove = i;
     if (i != 0)
       incrementMovePacer();
     else
@@ -380,7 +580,7 @@ public class BoardController {
    *          The number of squares to move (right is positive).
    */
   public void setColMoveOnce(int i) {
-    model.setPendingColMove(i);
+    colMove = i;
     singleColMove = true;
   }
 
@@ -400,7 +600,7 @@ public class BoardController {
    *          True iff the block should drop.
    */
   public void setDrop(boolean b) {
-    model.setDrop(b);
+    drop = b;
   }
 
   /**
@@ -413,6 +613,10 @@ public class BoardController {
     if (b && !pause) {
       boardDisplay.pause();
       pausePacer.clear();
+      // Rows being cleared are sent when the clearing animation finishes.
+      if (model.numFullRows() == 0) {
+        flushInputs();
+      }
     }
     else if (!b && pause) {
       boardDisplay.unpause();
@@ -427,7 +631,17 @@ public class BoardController {
    *          True to increase the block drop speed. False to set it to the normal speed.
    */
   public void setFast(boolean fast) {
-    model.setFast(fast);
+    this.fast = fast;
+  }
+
+  /**
+   * Set the monitor sampling the frame times and game loop jitter of this controller.
+   * 
+   * @param monitor
+   *          A performance monitor, or null to stop monitoring.
+   */
+  public void setMonitor(PerfMonitor monitor) {
+    this.monitor = monitor;
   }
 
   /**
@@ -447,14 +661,14 @@ public class BoardController {
    *          The number of rows to be added.
    */
   public void addRows(int rowsToAdd) {
-    model.setRowsToAdd(rowsToAdd);
+    this.rowsToAdd += rowsToAdd;
   }
 
   /**
    * Stop the all timers initiated by this controller.
    */
   public void stop() {
-    updateTimer.cancel();
+    stopGame();
     heartBeatTimer.cancel();
   }
 
@@ -465,7 +679,16 @@ public class BoardController {
    * @return The pending horizontal movement of the active block.
    */
   public int getColMove() {
-    return model.getPendingColMove();
+    return colMove;
+  }
+
+  /**
+   * Get the time between steps of the game loop.
+   * 
+   * @return The time (in milliseconds) between steps.
+   */
+  public int getLoopTime() {
+    return loopTime;
   }
 
   /**
@@ -485,6 +708,6 @@ public class BoardController {
    */
   public void setRowMoveOnce(int i) {
     singleRowMove = true;
-    model.setPendingRowMove(i);
+    rowMove = i;
   }
 }
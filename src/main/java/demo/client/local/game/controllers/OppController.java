@@ -1,80 +1,254 @@
 package demo.client.local.game.controllers;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
 import demo.client.local.Client;
 import demo.client.local.game.gui.ControllableBoardDisplay;
 import demo.client.local.game.tools.DummyBus;
+import demo.client.local.game.tools.JitterBuffer;
+import demo.client.local.game.tools.PerfMonitor;
 import demo.client.shared.game.model.BoardModel;
+import demo.client.shared.game.model.BoardSimulation;
+import demo.client.shared.game.model.BoardSnapshot;
+import demo.client.shared.message.InputEvent;
+import demo.client.shared.message.MoveDeltaDecoder;
+import demo.client.shared.message.MoveEvent;
 
 /**
  * A controller for canvases displaying remote opponents boards.
  * 
+ * Opponents' boards are either rebuilt from {@link MoveEvent moves} sent by the server or, in
+ * {@link demo.client.shared.meta.GameRoom#isLockstep() lockstep} games, replayed locally from the
+ * opponent's {@link InputEvent inputs} on a {@link BoardSimulation} seeded like the server's.
+ * 
+ * Either way, the resulting states are tagged with the step of the opponent's board, and played back
+ * through a {@link JitterBuffer} at the cadence the opponent made them, a little behind the newest
+ * state received.
+ * 
  * @author mbarkley <mbarkley@redhat.com>
  * 
  */
 public class OppController extends BoardController {
 
-  private Queue<BoardModel> stateQueue = new LinkedList<BoardModel>();
+  // Immutable snapshots of the states waiting to be drawn, played back at the opponent's cadence
+  private JitterBuffer<BoardSnapshot> stateQueue = new JitterBuffer<BoardSnapshot>();
+  // The state being drawn, or null while the model is drawn for the row clearing animation
+  private BoardSnapshot shownState;
+  // Rebuilds opponent states from keyframes and deltas
+  private MoveDeltaDecoder decoder = new MoveDeltaDecoder();
   // True iff this board is currently controlling a display
   private boolean active;
+  // The seed of the game, for replaying opponents in lockstep games
+  private int gameSeed;
+  // Replays the opponent's inputs in lockstep games, or null before the first replayable inputs
+  private BoardSimulation replay;
+  // True iff the replay has missed inputs or diverged from the server's
+  private boolean syncNeeded;
+  // True iff the server's copy of the board has been requested and has not yet arrived
+  private boolean syncRequested;
+  // Samples the state queue while this controller is active
+  private PerfMonitor queueMonitor;
+  // The skips and late states of the state queue already reported to the monitor
+  private int reportedSkips;
+  private int reportedLateStates;
+  private int reportedDroppedStates;
 
   /**
    * Create an OppController instance.
    * 
    * @param boardDisplay
    *          The display to be controlled by this instance.
+   * @param queueMonitor
+   *          A monitor sampling the queue of states waiting to be drawn.
    */
-  public OppController(ControllableBoardDisplay boardDisplay, Client client) {
+  public OppController(ControllableBoardDisplay boardDisplay, Client client, PerfMonitor queueMonitor) {
     // Dummy objects do nothing, to prevent this controller from updating the displayed score or
     // sending messages through the bus.
     super(boardDisplay, new DummyController(), new DummyBus(), client);
     setPaused(true);
+    gameSeed = client.getGameRoom().getSeed();
+    this.queueMonitor = queueMonitor;
   }
 
   /**
-   * Add a game state to be drawn to the display.
+   * Replay the opponent's inputs, and queue the resulting game states to be drawn to the display.
+   * Inputs must be added in the order they were received, even while this controller is inactive.
+   * If any inputs have been missed, or the replay no longer matches the server's, a
+   * {@link #takeSyncRequest() sync} is needed.
    * 
-   * @param state
-   *          The state being queued for drawing.
+   * @param event
+   *          Inputs replayed by the server on the board of the opponent watched by this controller.
    */
-  public void addState(BoardModel state) {
-    synchronized (stateQueue) {
-      // While the board is inactive, only save the single most recent state
-      if (!active) {
-        stateQueue.clear();
+  public void addInputs(InputEvent event) {
+    if (replay == null || event.getLife() > replay.getLife()) {
+      if (event.getFirstStep() != 0) {
+        // Joined after this life began.
+        syncNeeded = true;
+        return;
       }
-      stateQueue.add(state);
-      if (isPaused()) {
-        setPaused(false);
+      replay = new BoardSimulation(gameSeed, event.getPlayer().getId(), event.getLife());
+      syncNeeded = false;
+      syncRequested = false;
+    }
+    else if (event.getLife() < replay.getLife()) {
+      return;
+    }
+
+    int[] inputs = event.getInputs();
+    int skip = replay.getStep() - event.getFirstStep();
+    if (skip < 0) {
+      syncNeeded = true;
+      return;
+    }
+    else if (skip >= inputs.length) {
+      // Already included in a sync.
+      return;
+    }
+
+    // Mirror the server's replay, so that full rows are shown before they are cleared. While this
+    // board is displayed, every step is shown, as the opponent saw it.
+    for (int i = skip; i < inputs.length && !replay.isLost(); i++) {
+      replay.step(inputs[i]);
+      if (!replay.isLost() && replay.getModel().numFullRows() > 0) {
+        addState(replay.getLife(), replay.getStep(), replay.snapshot());
+        replay.clearFullRows();
       }
+      else if (active && i < inputs.length - 1) {
+        addState(replay.getLife(), replay.getStep(), replay.snapshot());
+      }
+    }
+    addState(replay.getLife(), replay.getStep(), replay.snapshot());
+
+    if (replay.checksum() != event.getChecksum()) {
+      syncNeeded = true;
+    }
+  }
+
+  /**
+   * Replace the replay of the opponent's board with the server's simulation of it.
+   * 
+   * @param simulation
+   *          The server's simulation of the board of the opponent watched by this controller.
+   */
+  public void sync(BoardSimulation simulation) {
+    if (replay == null || simulation.getLife() >= replay.getLife()) {
+      replay = new BoardSimulation(simulation);
+      syncNeeded = false;
+      syncRequested = false;
+      addState(replay.getLife(), replay.getStep(), replay.snapshot());
+    }
+  }
+
+  /**
+   * Check if the server's simulation of the opponent's board should be requested. Returns true at
+   * most once per sync needed.
+   * 
+   * @return True iff a sync is needed and has not already been requested.
+   */
+  public boolean takeSyncRequest() {
+    if (syncNeeded && !syncRequested) {
+      syncRequested = true;
+      return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Decode a move update and queue the resulting game state to be drawn to the display. Move updates
+   * must be added in the order they were received, even while this controller is inactive.
+   * 
+   * @param moveEvent
+   *          A keyframe or delta move update from the opponent watched by this controller.
+   */
+  public void addMove(MoveEvent moveEvent) {
+    BoardSnapshot state = decoder.decode(moveEvent);
+    if (state != null) {
+      addState(moveEvent.getLife(), moveEvent.getStep(), state);
+    }
+  }
+
+  /**
+   * Add a game state to be drawn to the display.
+   * 
+   * @param life
+   *          The life of the opponent's board in this state.
+   * @param step
+   *          The step of the opponent's board in this state.
+   * @param state
+   *          A snapshot of the state being queued for drawing.
+   */
+  public void addState(int life, int step, BoardSnapshot state) {
+    stateQueue.add(life, step, state);
+    // While the board is inactive, only save the single most recent state
+    if (!active) {
+      stateQueue.restart();
+    }
+    if (isPaused()) {
+      setPaused(false);
     }
   }
 
   @Override
   protected void update() {
     if (active) {
-      synchronized (stateQueue) {
-        // Deal with row clearing animation before entering new state.
-        int numFullRows = model.numFullRows();
-        if (numFullRows > 0) {
-          clearRows(numFullRows);
-        }
-        else if (!stateQueue.isEmpty()) {
-          model = stateQueue.poll();
-          reset();
-          redraw();
-        }
-        else if (isPaused()) {
-          if (model == null) {
-            model = new BoardModel();
-            reset();
-          }
-          redraw();
-          boardDisplay.pause();
-        }
+      // Deal with row clearing animation before entering new state. The opponent did not make any
+      // steps during theirs either, so playback is held until it finishes.
+      int numFullRows = shownState == null ? model.numFullRows() : 0;
+      if (numFullRows > 0) {
+        clearRows(numFullRows);
+        return;
+      }
+
+      BoardSnapshot state = stateQueue.next();
+      samplePlayback();
+      if (state != null) {
+        show(state);
       }
+      else if (isPaused()) {
+        // Draw now, so that the pause message is drawn over the board.
+        redraw();
+        render();
+        boardDisplay.pause();
+      }
+    }
+  }
+
+  private void show(BoardSnapshot state) {
+    if (state.getFullRowMask() != 0) {
+      // Only the row clearing animation needs a mutable board. Other states are drawn as they are.
+      model = new BoardModel(state);
+      shownState = null;
+      reset();
+    }
+    else {
+      shownState = state;
+    }
+    redraw();
+  }
+
+  private void samplePlayback() {
+    queueMonitor.playbackSampled(stateQueue.size(), Math.max(0, stateQueue.getDelay()) * getLoopTime(),
+            stateQueue.getTarget() * getLoopTime(), stateQueue.getSkips() - reportedSkips,
+            stateQueue.getLateStates() - reportedLateStates, stateQueue.getDroppedStates() - reportedDroppedStates);
+    reportedSkips = stateQueue.getSkips();
+    reportedLateStates = stateQueue.getLateStates();
+    reportedDroppedStates = stateQueue.getDroppedStates();
+  }
+
+  @Override
+  protected void drawBoard() {
+    if (shownState != null) {
+      boardDisplay.updateBoard(shownState);
+    }
+    else {
+      super.drawBoard();
+    }
+  }
+
+  @Override
+  protected void render() {
+    // Inactive controllers must not draw over the display of the active controller.
+    if (active) {
+      super.render();
     }
   }
 
@@ -95,11 +269,8 @@ public class OppController extends BoardController {
    */
   public void setActive(boolean active) {
     this.active = active;
-    if (!active) {
-      while (stateQueue.size() > 1) {
-        stateQueue.poll();
-      }
-    }
+    // Playback starts afresh from the most recent state whenever the board is shown or hidden.
+    stateQueue.restart();
   }
 
 }
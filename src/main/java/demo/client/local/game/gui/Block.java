@@ -2,7 +2,6 @@ package demo.client.local.game.gui;
 
 import com.google.gwt.canvas.dom.client.Context2d;
 
-import demo.client.local.game.tools.ColourMapper;
 import demo.client.local.game.tools.Size;
 import demo.client.local.game.tools.Size.SizeCategory;
 import demo.client.shared.game.model.BlockModel;
@@ -17,7 +16,11 @@ import demo.client.shared.game.model.SquareModel;
 public class Block {
 
   private BlockModel model;
+  /** The id of the model when this Block was created. Boards reuse their block models for new blocks. */
+  private int modelId;
   private SizeCategory sizeCategory;
+  // Reused for every square drawn by this block.
+  private Square square;
 
   /**
    * Create a Block instance.
@@ -29,7 +32,9 @@ public class Block {
    */
   public Block(BlockModel blockModel, SizeCategory sizeCategory) {
     model = blockModel;
+    modelId = blockModel.getId();
     this.sizeCategory = sizeCategory;
+    square = new Square(sizeCategory);
   }
 
   /**
@@ -45,10 +50,9 @@ public class Block {
    *          The context on which to draw this block.
    */
   public void draw(double x, double y, Context2d context2d) {
-    Square square = new Square(sizeCategory);
     // Get an iterator of square coordinates based around the given coordinate (x,y).
     for (SquareModel squareModel : model.getIterator()) {
-      square.setInteriorColour(ColourMapper.codeToColour(squareModel.getCode()));
+      square.setCode(squareModel.getCode());
       square.draw(x + indexToCoord(squareModel.getCol(), sizeCategory),
               y + indexToCoord(squareModel.getRow(), sizeCategory), context2d);
     }
@@ -60,10 +64,11 @@ public class Block {
    * @param activeBlock
    *          The block model to compare against the the model stored in this Block.
    * 
-   * @return True iff the given BlockModel is the same as the model of this Block instance.
+   * @return True iff the given BlockModel is the same as the model of this Block instance, and has
+   *         not since been reused for another block.
    */
   public boolean isModel(BlockModel activeBlock) {
-    return model.equals(activeBlock);
+    return model == activeBlock && modelId == activeBlock.getId();
   }
 
   /**
@@ -79,7 +84,6 @@ public class Block {
    *          The context on which to create this path.
    */
   void getPath(int x, int y, Context2d context2d) {
-    Square square = new Square(sizeCategory);
     for (SquareModel squareModel : model.getIterator()) {
       square.addSquareToCanvasPath(x + indexToCoord(squareModel.getCol(), sizeCategory),
               y + indexToCoord(squareModel.getRow(), sizeCategory), context2d);
@@ -96,7 +100,7 @@ public class Block {
    * @return The coordinate to pass to the {@link Block#draw(double, double, Context2d)
    *         Block.draw()} method for drawing a block in the correct position.
    */
-  public static double indexToCoord(Integer index, SizeCategory sizeCategory) {
+  public static double indexToCoord(int index, SizeCategory sizeCategory) {
     return index * Size.getSize(sizeCategory).getBlockSize();
   }
 
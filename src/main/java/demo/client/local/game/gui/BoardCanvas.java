@@ -1,12 +1,18 @@
 package demo.client.local.game.gui;
 
+import java.util.Arrays;
+
 import com.google.gwt.canvas.client.Canvas;
 import com.google.gwt.canvas.dom.client.Context2d;
 
+import demo.client.local.game.tools.PerfMonitor;
 import demo.client.local.game.tools.Size;
 import demo.client.local.game.tools.Size.SizeCategory;
 import demo.client.shared.game.model.BlockModel;
+import demo.client.shared.game.model.BoardModel;
+import demo.client.shared.game.model.BoardSnapshot;
 import demo.client.shared.game.model.SquareModel;
+import demo.client.shared.game.model.SquareVisitor;
 
 /**
  * A simple wrapper for a HTML5 canvas implementing the ControllableBoardDisplay interface.
@@ -20,13 +26,39 @@ public class BoardCanvas implements ControllableBoardDisplay {
 
   private SizeCategory sizeCategory;
 
+  private BoardPainter painter;
+
+  // Counts the calls drawing to this canvas, or null if they are not counted.
+  private PerfMonitor monitor;
+
+  // The codes of the cells currently on the canvas, indexed by row * COL_NUM + col.
+  private final int[] drawnCells = new int[BoardModel.ROW_NUM * BoardModel.COL_NUM];
+  // The codes of the cells in the frame being drawn, indexed by row * COL_NUM + col.
+  private final int[] frameCells = new int[BoardModel.ROW_NUM * BoardModel.COL_NUM];
+  // Records the cells of the frame being drawn.
+  private final SquareVisitor frameRecorder = new SquareVisitor() {
+
+    @Override
+    public void visit(int row, int col, int code) {
+      frameCells[row * BoardModel.COL_NUM + col] = code;
+    }
+  };
+  // False if the canvas may have been drawn on since drawnCells was last updated.
+  private boolean drawnCellsValid = false;
+  // The dimensions of the canvas and its squares when drawnCells was last valid.
+  private double drawnBlockSize;
+  private int drawnWidth;
+  private int drawnHeight;
+
   public BoardCanvas(Canvas canvas, SizeCategory sizeCategory) {
     this.canvas = canvas;
     this.sizeCategory = sizeCategory;
+    this.painter = new BoardPainter(canvas.getContext2d(), sizeCategory);
   }
 
   @Override
   public void undrawBlock(double x, double y, Block activeBlock) {
+    drawnCellsValid = false;
     BlockModel model = activeBlock.getModel();
     for (SquareModel square : model.getIterator()) {
       double xOffset = x + Block.indexToCoord(square.getCol(), sizeCategory);
@@ -38,11 +70,66 @@ public class BoardCanvas implements ControllableBoardDisplay {
 
   @Override
   public void drawBlock(double x, double y, Block activeBlock) {
+    drawnCellsValid = false;
     activeBlock.draw(x, y, canvas.getContext2d());
   }
 
+  @Override
+  public void updateBoard(BoardModel model) {
+    Arrays.fill(frameCells, BoardModel.NO_TILE);
+    model.visitAllSquares(frameRecorder);
+    drawChangedCells();
+  }
+
+  @Override
+  public void updateBoard(BoardSnapshot snapshot) {
+    Arrays.fill(frameCells, BoardModel.NO_TILE);
+    snapshot.visitAllSquares(frameRecorder);
+    drawChangedCells();
+  }
+
+  @Override
+  public void updateNonFullRows(BoardModel model) {
+    Arrays.fill(frameCells, BoardModel.NO_TILE);
+    model.visitNonFullRows(frameRecorder);
+    drawChangedCells();
+  }
+
+  /**
+   * Clear and redraw only the cells that differ between the frame being drawn and the canvas. If
+   * the canvas has been drawn on by other means or resized, the whole frame is redrawn instead.
+   */
+  private void drawChangedCells() {
+    Size size = Size.getSize(sizeCategory);
+    if (!drawnCellsValid || drawnBlockSize != size.getBlockSize() || drawnWidth != canvas.getCoordinateSpaceWidth()
+            || drawnHeight != canvas.getCoordinateSpaceHeight()) {
+      clearBoard();
+    }
+
+    Context2d context = canvas.getContext2d();
+    int calls = 0;
+    for (int i = 0; i < frameCells.length; i++) {
+      if (frameCells[i] != drawnCells[i]) {
+        int row = i / BoardModel.COL_NUM;
+        int col = i % BoardModel.COL_NUM;
+        context.clearRect(Block.indexToCoord(col, sizeCategory), Block.indexToCoord(row, sizeCategory),
+                size.getBlockSize(), size.getBlockSize());
+        calls += 1;
+        if (frameCells[i] != BoardModel.NO_TILE) {
+          painter.visit(row, col, frameCells[i]);
+          calls += 1;
+        }
+        drawnCells[i] = frameCells[i];
+      }
+    }
+    if (monitor != null) {
+      monitor.drawCalls(calls);
+    }
+  }
+
   @Override
   public void pause() {
+    drawnCellsValid = false;
     Context2d context = canvas.getContext2d();
     context.save();
     context.setFont("bold 20px sans-serif");
@@ -59,6 +146,25 @@ public class BoardCanvas implements ControllableBoardDisplay {
   @Override
   public void clearBoard() {
     canvas.getContext2d().clearRect(0, 0, canvas.getCoordinateSpaceWidth(), canvas.getCoordinateSpaceHeight());
+    if (monitor != null) {
+      monitor.drawCalls(1);
+    }
+    // An empty canvas is a valid starting point for drawing only changed cells.
+    Arrays.fill(drawnCells, BoardModel.NO_TILE);
+    drawnCellsValid = true;
+    drawnBlockSize = Size.getSize(sizeCategory).getBlockSize();
+    drawnWidth = canvas.getCoordinateSpaceWidth();
+    drawnHeight = canvas.getCoordinateSpaceHeight();
+  }
+
+  /**
+   * Set the monitor counting the calls drawing to this canvas.
+   * 
+   * @param monitor
+   *          A performance monitor, or null to stop counting.
+   */
+  public void setMonitor(PerfMonitor monitor) {
+    this.monitor = monitor;
   }
 
   @Override
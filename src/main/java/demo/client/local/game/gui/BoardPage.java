@@ -67,9 +67,12 @@ import demo.client.local.game.handlers.BoardTouchHandler;
 import demo.client.local.game.handlers.PauseInputHandler;
 import demo.client.local.game.tools.BoardMessageBusImpl;
 import demo.client.local.game.tools.CallOutManager;
+import demo.client.local.game.tools.PerfMonitor;
 import demo.client.local.game.tools.Size;
 import demo.client.local.game.tools.Size.SizeCategory;
 import demo.client.local.lobby.Lobby;
+import demo.client.shared.game.model.BoardModel;
+import demo.client.shared.game.model.BoardSnapshot;
 import demo.client.shared.message.Command;
 import demo.client.shared.message.ExitMessage;
 import demo.client.shared.meta.ScoreTracker;
@@ -134,6 +137,9 @@ public class BoardPage extends Composite implements ControllableBoardDisplay {
   // For handling updates from the server.
   private BoardCallback boardCallback;
 
+  // For sampling frame times, loop jitter and message rates, shown on a heads up display.
+  private PerfMonitor perfMonitor;
+
   @Inject
   private RequestDispatcher dispatcher;
   @Inject
@@ -170,10 +176,18 @@ public class BoardPage extends Composite implements ControllableBoardDisplay {
     if (mainCanvas == null) {
       // TODO: Display message to user that HTML5 Canvas is required.
     }
+    // The monitor is kept between games, so that the heads up display stays shown or hidden.
+    if (perfMonitor == null) {
+      perfMonitor = new PerfMonitor(client);
+      canvasWrapper.setMonitor(perfMonitor);
+      oppCanvasWrapper.setMonitor(perfMonitor);
+    }
     secondaryController = new SecondaryDisplayControllerImpl(scoreDisplay, nextPieceCanvas, client);
-    controller = new BoardController(this, secondaryController, new BoardMessageBusImpl(client), client);
+    controller = new BoardController(this, secondaryController, new BoardMessageBusImpl(client, perfMonitor),
+            client);
+    controller.setMonitor(perfMonitor);
     boardCallback = new BoardCallback(controller, secondaryController, client);
-    oppCallback = new OppCallback(oppCanvasWrapper, client);
+    oppCallback = new OppCallback(oppCanvasWrapper, client, perfMonitor);
 
     gameOverPanel.setVisible(false);
     
@@ -188,7 +202,7 @@ public class BoardPage extends Composite implements ControllableBoardDisplay {
     addHandlerToMainCanvas((MouseDownHandler) pauseHandler, MouseDownEvent.getType());
     addHandlerToMainCanvas((MouseUpHandler) pauseHandler, MouseUpEvent.getType());
 
-    EventHandler keyHandler = new BoardKeyHandler(controller);
+    EventHandler keyHandler = new BoardKeyHandler(controller, perfMonitor);
     addHandlerToMainCanvas((KeyUpHandler) keyHandler, KeyUpEvent.getType());
     addHandlerToMainCanvas((KeyDownHandler) keyHandler, KeyDownEvent.getType());
 
@@ -234,6 +248,7 @@ public class BoardPage extends Composite implements ControllableBoardDisplay {
       client.getPlayer().setGameId(client.getGameRoom().getId());
       setup();
       controller.startGame();
+      perfMonitor.start();
       // Subscribe to game channel
       messageBus.subscribe("Game" + client.getGameRoom().getId(), boardCallback);
       messageBus.subscribe("Game" + client.getGameRoom().getId(), oppCallback);
@@ -283,6 +298,7 @@ public class BoardPage extends Composite implements ControllableBoardDisplay {
     if (controller != null) {
       controller.stop();
       ((OppCallback) oppCallback).destroy();
+      perfMonitor.stop();
     }
 
     removeHandlers();
@@ -311,6 +327,21 @@ public class BoardPage extends Composite implements ControllableBoardDisplay {
     canvasWrapper.drawBlock(x, y, activeBlock);
   }
 
+  @Override
+  public void updateBoard(BoardModel model) {
+    canvasWrapper.updateBoard(model);
+  }
+
+  @Override
+  public void updateBoard(BoardSnapshot snapshot) {
+    canvasWrapper.updateBoard(snapshot);
+  }
+
+  @Override
+  public void updateNonFullRows(BoardModel model) {
+    canvasWrapper.updateNonFullRows(model);
+  }
+
   private <H extends EventHandler> void addHandlerToMainCanvas(H handler, Type<H> type) {
     handlerRegs.add(Assert.notNull("Could not get game-wrapper root panel.", RootPanel.get()).addDomHandler(handler,
             type));
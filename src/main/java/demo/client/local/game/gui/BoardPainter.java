@@ -0,0 +1,39 @@
+package demo.client.local.game.gui;
+
+import com.google.gwt.canvas.dom.client.Context2d;
+
+import demo.client.local.game.tools.Size.SizeCategory;
+import demo.client.shared.game.model.BoardModel;
+import demo.client.shared.game.model.SquareVisitor;
+
+/**
+ * A reusable visitor for drawing the squares of a {@link BoardModel board model} directly onto a
+ * canvas. A single painter (and its single {@link Square}) is kept for the life of a canvas, so that
+ * drawing a board does not create any objects.
+ */
+class BoardPainter implements SquareVisitor {
+
+  private final Context2d context2d;
+  private final SizeCategory sizeCategory;
+  private final Square square;
+
+  /**
+   * Create a BoardPainter instance.
+   * 
+   * @param context2d
+   *          The context of the canvas on which to draw.
+   * @param sizeCategory
+   *          The size information used to determine the dimensions of the squares drawn.
+   */
+  BoardPainter(Context2d context2d, SizeCategory sizeCategory) {
+    this.context2d = context2d;
+    this.sizeCategory = sizeCategory;
+    this.square = new Square(sizeCategory);
+  }
+
+  @Override
+  public void visit(int row, int col, int code) {
+    square.setCode(code);
+    square.draw(Block.indexToCoord(col, sizeCategory), Block.indexToCoord(row, sizeCategory), context2d);
+  }
+}
@@ -1,6 +1,8 @@
 package demo.client.local.game.gui;
 
 import demo.client.local.game.tools.Size.SizeCategory;
+import demo.client.shared.game.model.BoardModel;
+import demo.client.shared.game.model.BoardSnapshot;
 
 /**
  * A display for drawing a Block Drop game board.
@@ -38,6 +40,34 @@ public interface ControllableBoardDisplay {
    */
   public void drawBlock(double x, double y, Block activeBlock);
 
+  /**
+   * Bring this display up to date with every square on a board, including the active block. The display
+   * does not need to be cleared first: only cells which changed since the last update are cleared
+   * and redrawn.
+   * 
+   * @param model
+   *          The board to draw.
+   */
+  public void updateBoard(BoardModel model);
+
+  /**
+   * Bring this display up to date with every square in a snapshot of a board, including the active
+   * block. Only cells which changed since the last update are cleared and redrawn.
+   * 
+   * @param snapshot
+   *          The state of the board to draw.
+   */
+  public void updateBoard(BoardSnapshot snapshot);
+
+  /**
+   * Bring this display up to date with the squares in rows of a board which are not full, excluding
+   * the active block. Only cells which changed since the last update are cleared and redrawn.
+   * 
+   * @param model
+   *          The board to draw.
+   */
+  public void updateNonFullRows(BoardModel model);
+
   /**
    * Draw a pause message on this display.
    */
@@ -2,11 +2,14 @@ package demo.client.local.game.gui;
 
 import com.google.gwt.canvas.dom.client.Context2d;
 
+import demo.client.local.game.tools.ColourMapper;
 import demo.client.local.game.tools.Size;
 import demo.client.local.game.tools.Size.SizeCategory;
 
 /**
- * A class for drawing individual squares in a {@link Block Block}.
+ * A class for drawing individual squares in a {@link Block Block}. Squares with a block code are
+ * copied from the {@link TileAtlas tile atlas} of their size category where possible, rather than
+ * being filled as paths.
  */
 class Square {
 
@@ -14,12 +17,17 @@ class Square {
   public static final String INTERIOR_DEFAULT = "red";
   // The default colour of the outline of each square.
   public static final String OUTLINE_DEFAULT = "black";
+  // The code of a square whose colour was not set from a block code.
+  private static final int NO_CODE = -1;
 
   // The colour of the interior of the block.
   private String interiorColour;
   // The colour of the block outline.
   private String outlineColour;
   private Size size;
+  private SizeCategory sizeCategory;
+  // The block code of this square, used to find its tile in the atlas.
+  private int code = NO_CODE;
 
   /**
    * Create a Square instance with specified interior and outline colours.
@@ -37,6 +45,7 @@ class Square {
     this.interiorColour = interiorColour;
     this.outlineColour = outlineColour;
     this.size = Size.getSize(sizeCategory);
+    this.sizeCategory = sizeCategory;
   }
 
   /**
@@ -62,6 +71,28 @@ class Square {
    *          The context of the canvas on which this square will be drawn.
    */
   void draw(double x, double y, Context2d context2d) {
+    if (code != NO_CODE && OUTLINE_DEFAULT.equals(outlineColour)) {
+      TileAtlas atlas = TileAtlas.getAtlas(sizeCategory);
+      if (atlas != null && atlas.drawTile(code, x, y, context2d)) {
+        return;
+      }
+    }
+    drawPaths(x, y, context2d);
+  }
+
+  /**
+   * Draw this Square onto an HTML5 canvas by filling paths, without using a tile atlas.
+   * 
+   * @param x
+   *          The x coordinate of the position to draw this square.
+   * 
+   * @param y
+   *          The y coordinate of the position to draw this square.
+   * 
+   * @param context2d
+   *          The context of the canvas on which this square will be drawn.
+   */
+  void drawPaths(double x, double y, Context2d context2d) {
     // Draw the outline.
     makeOuterRectPath(x, y, context2d);
     context2d.setFillStyle(outlineColour);
@@ -131,5 +162,17 @@ class Square {
    */
   void setInteriorColour(String cssColour) {
     interiorColour = cssColour;
+    code = NO_CODE;
+  }
+
+  /**
+   * Set the interior colour of this square to the colour of a block code.
+   * 
+   * @param code
+   *          A block code, as per {@link ColourMapper#codeToColour(int)}.
+   */
+  void setCode(int code) {
+    interiorColour = ColourMapper.codeToColour(code);
+    this.code = code;
   }
 }
@@ -8,6 +8,7 @@ import com.google.gwt.event.dom.client.KeyUpHandler;
 
 import demo.client.local.game.controllers.BoardController;
 import demo.client.local.game.controllers.SecondaryDisplayController;
+import demo.client.local.game.tools.PerfMonitor;
 
 /**
  * A keyboard input handler for the local player's game. This handler asynchronously sets values in
@@ -21,6 +22,7 @@ public class BoardKeyHandler implements KeyDownHandler, KeyUpHandler {
 
   private BoardController controller;
   private SecondaryDisplayController secondaryController;
+  private PerfMonitor perfMonitor;
   private static final int KEY_SPACE_BAR = 32;
 
   /**
@@ -28,10 +30,13 @@ public class BoardKeyHandler implements KeyDownHandler, KeyUpHandler {
    * 
    * @param boardController
    *          The BoardController associated with this handler.
+   * @param perfMonitor
+   *          The monitor whose heads up display is toggled by this handler.
    */
-  public BoardKeyHandler(BoardController boardController) {
+  public BoardKeyHandler(BoardController boardController, PerfMonitor perfMonitor) {
     controller = boardController;
     secondaryController = controller.getSecondaryController();
+    this.perfMonitor = perfMonitor;
   }
 
   @Override
@@ -121,6 +126,9 @@ public class BoardKeyHandler implements KeyDownHandler, KeyUpHandler {
       case 66: // Ordinal of lower case b
         secondaryController.selectLastPlayer();
         break;
+      case 72: // Ordinal of lower case h
+        perfMonitor.toggleHud();
+        break;
       default:
         relevantKey = false;
         break;
@@ -144,6 +152,9 @@ public class BoardKeyHandler implements KeyDownHandler, KeyUpHandler {
       case 80: // Ordinal of lower case p
         controller.setPaused(false);
         break;
+      case 72: // Ordinal of lower case h
+        perfMonitor.toggleHud();
+        break;
       default:
         relevantKey = false;
       }
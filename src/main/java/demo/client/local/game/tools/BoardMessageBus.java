@@ -2,11 +2,9 @@ package demo.client.local.game.tools;
 
 import org.jboss.errai.bus.client.api.messaging.MessageBus;
 
-import demo.client.local.game.controllers.BoardController;
-import demo.client.shared.game.model.BoardModel;
 import demo.client.shared.message.Command;
+import demo.client.shared.message.InputEvent;
 import demo.client.shared.meta.Player;
-import demo.client.shared.meta.ScoreTracker;
 
 /**
  * A {@link MessageBus MessageBus} wrapper for sending game updates to the server.
@@ -17,25 +15,13 @@ import demo.client.shared.meta.ScoreTracker;
 public interface BoardMessageBus {
 
   /**
-   * Send a {@link Command#UPDATE_SCORE score update} to the server.
+   * Send an {@link Command#INPUT_UPDATE input update} to the server. The server replays the inputs
+   * to update the local player's score, and broadcasts the resulting moves to the other players.
    * 
-   * @param scoreTracker
-   *          The local player's updated score and player information.
-   * @param target
-   *          A remote player in this game. This score update will result in the targeted player
-   *          having {@link BoardController#addRows(int) addRows} called.
+   * @param event
+   *          A batch of the local player's inputs.
    */
-  public void sendScoreUpdate(ScoreTracker scoreTracker, Player target);
-
-  /**
-   * Send a {@link Command#MOVE_UPDATE move update} to the server.
-   * 
-   * @param state
-   *          The current state of the local player's game.
-   * @param player
-   *          The local player.
-   */
-  public void sendMoveUpdate(BoardModel state, Player player);
+  public void sendInputUpdate(InputEvent event);
 
   /**
    * Send a {@link Command#GAME_KEEP_ALIVE} game keep alive to the server to prevent being kicked
@@ -37,6 +37,12 @@ public class ColourMapper {
   private static final String Z_BLOCK_COLOUR = "brown";
 
   private static Map<Integer, String> colourMap;
+  // Codes below this value are also kept in an array, so that looking them up does not box the code.
+  private static final int ARRAY_CODES = 16;
+
+  private static String[] colourArray;
+
+  private static int[] codes;
 
   static {
     colourMap = new HashMap<Integer, String>();
@@ -50,6 +56,17 @@ public class ColourMapper {
     colourMap.put(TBlockModel.getCode(), T_BLOCK_COLOUR);
     colourMap.put(ZBlockModel.getCode(), Z_BLOCK_COLOUR);
     colourMap.put(1337, "grey");
+
+    codes = new int[colourMap.size()];
+    int i = 0;
+    for (Integer code : colourMap.keySet()) {
+      codes[i++] = code;
+    }
+
+    colourArray = new String[ARRAY_CODES];
+    for (int code = 0; code < colourArray.length; code++) {
+      colourArray[code] = colourMap.get(code);
+    }
   }
 
   /**
@@ -60,7 +77,18 @@ public class ColourMapper {
    * @return The CSS colour string.
    */
   public static String codeToColour(int code) {
+    if (code >= 0 && code < colourArray.length) {
+      return colourArray[code];
+    }
     return colourMap.get(code);
   }
 
+  /**
+   * Get every code which has an associated colour.
+   * 
+   * @return An array of block codes. The array should not be modified.
+   */
+  public static int[] getCodes() {
+    return codes;
+  }
 }
@@ -1,8 +1,7 @@
 package demo.client.local.game.tools;
 
-import demo.client.shared.game.model.BoardModel;
+import demo.client.shared.message.InputEvent;
 import demo.client.shared.meta.Player;
-import demo.client.shared.meta.ScoreTracker;
 
 /**
  * A NOOP implementation of the {@link BoardMessageBus BoardMessageBus} interface.
@@ -13,11 +12,7 @@ import demo.client.shared.meta.ScoreTracker;
 public class DummyBus implements BoardMessageBus {
 
   @Override
-  public void sendScoreUpdate(ScoreTracker scoreTracker, Player target) {
-  }
-
-  @Override
-  public void sendMoveUpdate(BoardModel state, Player player) {
+  public void sendInputUpdate(InputEvent event) {
   }
 
   @Override
@@ -0,0 +1,261 @@
+package demo.client.local.game.tools;
+
+import java.util.LinkedList;
+
+/**
+ * An adaptive jitter buffer, for playing back the states of a remote board at the cadence they were
+ * produced rather than the cadence they arrive.
+ * 
+ * Each state is tagged with the life and simulation step of the sender's board when it was produced.
+ * Every call to {@link #next()} is one tick of the local game loop, which runs at the same rate as the
+ * sender's steps, and advances a playhead by one step. The state shown is the newest one at or
+ * before the playhead, so states produced in a burst are spread back out, and a gap in arrivals is
+ * absorbed as long as it is shorter than the playhead's delay behind the newest state received.
+ * States sharing a step are shown on successive ticks, so that none of them is skipped.
+ * 
+ * The target delay follows the jitter in arrivals. Each state's transit offset is the tick it arrived
+ * on less its step. The smallest recent offset is taken as the baseline, and the target is a slowly
+ * decaying peak of how much later than the baseline states arrive. The playhead is moved towards
+ * the target gradually, by holding or skipping one step in every
+ * {@value #ADJUST_PERIOD} ticks, so that playback never visibly stalls or jumps. If the delay
+ * exceeds the target by more than {@value #SKIP_MARGIN} steps, as after a burst following a long
+ * stall, the playhead skips straight to the target, discarding the states in between. If states
+ * arrive that long after the playhead has passed them, as after the sender pauses, playback is
+ * restarted from the newest state.
+ * 
+ * @param <T>
+ *          The type of state buffered.
+ */
+public class JitterBuffer<T> {
+
+  /** The smallest target delay, in steps. */
+  public static final int MIN_TARGET = 2;
+  /** The largest target delay, in steps. */
+  public static final int MAX_TARGET = 40;
+  /** How far (in steps) the delay may stray from the target before the playhead jumps to it. */
+  public static final int SKIP_MARGIN = 8;
+  /** The number of ticks in which the playhead may be moved one step towards the target. */
+  public static final int ADJUST_PERIOD = 8;
+  /** The fraction by which the peak jitter decays every tick, so that it halves in about 4 seconds. */
+  private static final double PEAK_DECAY = 1.0 / 256;
+  /** The fraction of the gap to a later offset by which the baseline rises with each state. */
+  private static final double BASELINE_RISE = 1.0 / 64;
+
+  private static class Entry<T> {
+
+    private final int step;
+    private final T state;
+
+    private Entry(int step, T state) {
+      this.step = step;
+      this.state = state;
+    }
+  }
+
+  // States not yet played, in the order of their steps
+  private LinkedList<Entry<T>> entries = new LinkedList<Entry<T>>();
+  // The life of the states being played, or -1 if none have been added
+  private int life = -1;
+  // The step of the newest state added in the current life
+  private int newestStep;
+  // The step being played, if anchored
+  private int playhead;
+  // False until playback has started from the states buffered
+  private boolean anchored = false;
+  // The number of ticks played
+  private int clock = 0;
+
+  // The newest step when the delay was last compared with the target
+  private int measuredStep;
+  // The smallest recent transit offset, or NaN if none has been measured in this life
+  private double baseline = Double.NaN;
+  // The decaying peak of transit offsets above the baseline, in steps
+  private double peakJitter = 0;
+  private int target = MIN_TARGET;
+  // Steps still to be skipped (if positive) or held (if negative) to reach the target delay
+  private int drift = 0;
+
+  private int skips = 0;
+  private int lateStates = 0;
+  private int droppedStates = 0;
+
+  /**
+   * Add a state to be played. States of a later life than those being played replace them, while
+   * states of an earlier life, or of an earlier step than the newest state, are ignored.
+   * 
+   * @param stateLife
+   *          The life of the sender's board when the state was produced.
+   * @param step
+   *          The step of the sender's board when the state was produced.
+   * @param state
+   *          The state.
+   */
+  public void add(int stateLife, int step, T state) {
+    if (stateLife < life || stateLife == life && step < newestStep) {
+      return;
+    }
+    if (stateLife > life) {
+      // Steps start again from 0.
+      entries.clear();
+      anchored = false;
+      life = stateLife;
+      baseline = Double.NaN;
+    }
+    else if (anchored && step <= playhead) {
+      lateStates += 1;
+      if (step < playhead - MAX_TARGET) {
+        // Too late to be jitter that could be absorbed: the sender stopped, or the connection stalled.
+        baseline = Double.NaN;
+      }
+    }
+
+    entries.add(new Entry<T>(step, state));
+    newestStep = step;
+    measureTransit(clock - step);
+  }
+
+  private void measureTransit(int offset) {
+    if (Double.isNaN(baseline) || offset < baseline) {
+      baseline = offset;
+    }
+    else {
+      // Let the baseline follow offsets that rise for good, as when the sender pauses.
+      baseline += (offset - baseline) * BASELINE_RISE;
+    }
+    peakJitter = Math.max(peakJitter, offset - baseline);
+    target = Math.max(MIN_TARGET, Math.min(MAX_TARGET, (int) Math.ceil(peakJitter)));
+  }
+
+  /**
+   * Play one tick.
+   * 
+   * @return The state to show from this tick on, or {@code null} if the state shown is unchanged.
+   */
+  public T next() {
+    clock += 1;
+    if (!anchored) {
+      if (entries.isEmpty()) {
+        return null;
+      }
+      // Show the oldest state buffered at once, unless it is beyond the target, and let the delay grow
+      // to the target gradually.
+      playhead = Math.max(newestStep - target, entries.getFirst().step);
+      anchored = true;
+      measuredStep = newestStep;
+      drift = newestStep - playhead - target;
+    }
+    else {
+      playhead += 1;
+      peakJitter -= peakJitter * PEAK_DECAY;
+      if (newestStep != measuredStep) {
+        adjustDelay();
+      }
+      if (drift != 0 && clock % ADJUST_PERIOD == 0) {
+        playhead += drift > 0 ? 1 : -1;
+        drift += drift > 0 ? -1 : 1;
+      }
+    }
+
+    T shown = null;
+    while (!entries.isEmpty() && entries.getFirst().step <= playhead) {
+      if (shown != null) {
+        droppedStates += 1;
+      }
+      Entry<T> entry = entries.removeFirst();
+      shown = entry.state;
+      if (!entries.isEmpty() && entries.getFirst().step == entry.step) {
+        // The state was replaced within its step, as when full rows are cleared: show both in turn.
+        break;
+      }
+    }
+
+    return shown;
+  }
+
+  /**
+   * Compare the delay with the target after new states have arrived, and move the playhead at once
+   * if it has strayed too far from the target.
+   */
+  private void adjustDelay() {
+    measuredStep = newestStep;
+    int delay = newestStep - playhead;
+    if (delay > target + SKIP_MARGIN) {
+      skips += 1;
+      playhead = newestStep - target;
+      drift = 0;
+    }
+    else if (delay < -SKIP_MARGIN) {
+      // The sender stopped, or the connection stalled, long enough for the playhead to run on.
+      playhead = newestStep - target;
+      drift = 0;
+    }
+    else {
+      drift = delay - target;
+    }
+  }
+
+  /**
+   * Discard every state but the newest, and start playback from it on the next tick.
+   */
+  public void restart() {
+    while (entries.size() > 1) {
+      entries.removeFirst();
+    }
+    anchored = false;
+  }
+
+  /**
+   * Get the number of states waiting to be played.
+   * 
+   * @return The number of states buffered.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Get the delay of playback behind the newest state received.
+   * 
+   * @return The number of steps between the playhead and the newest state, or 0 if playback has not
+   *         started.
+   */
+  public int getDelay() {
+    return anchored ? newestStep - playhead : 0;
+  }
+
+  /**
+   * Get the delay that playback is adjusted towards.
+   * 
+   * @return The target delay in steps.
+   */
+  public int getTarget() {
+    return target;
+  }
+
+  /**
+   * Get the number of times the playhead has skipped ahead to the target delay.
+   * 
+   * @return The number of skips since this buffer was created.
+   */
+  public int getSkips() {
+    return skips;
+  }
+
+  /**
+   * Get the number of states which arrived after the playhead had passed them.
+   * 
+   * @return The number of late states since this buffer was created.
+   */
+  public int getLateStates() {
+    return lateStates;
+  }
+
+  /**
+   * Get the number of states never shown, because a later state was due in the same tick.
+   * 
+   * @return The number of states dropped since this buffer was created.
+   */
+  public int getDroppedStates() {
+    return droppedStates;
+  }
+}
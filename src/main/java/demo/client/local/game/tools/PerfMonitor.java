@@ -0,0 +1,247 @@
+package demo.client.local.game.tools;
+
+import org.jboss.errai.bus.client.ErraiBus;
+import org.jboss.errai.bus.client.api.base.MessageBuilder;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.dom.client.Document;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Style.Display;
+import com.google.gwt.user.client.Timer;
+
+import demo.client.local.Client;
+import demo.client.shared.message.Command;
+import demo.client.shared.message.PerfReport;
+import demo.client.shared.meta.GameRoom;
+
+/**
+ * Samples the performance of a Block Drop game on this client: the time between animation frames and
+ * spent drawing them, the jitter of the game loop timer, the calls drawing to canvases, the rates of
+ * inputs sent and opponents' updates received, and the playback of opponent states: how many are
+ * waiting to be drawn, how far behind the newest it is, and how often it skips or states arrive late.
+ * 
+ * Samples are shown, refreshed every second, on an optional heads up display, and are sent to the
+ * server in a {@link PerfReport} every {@value #REPORT_TIME} milliseconds. Recording a sample only
+ * updates a few totals, so the monitor is always running.
+ */
+public class PerfMonitor {
+
+  /** The id of the element showing the heads up display. */
+  public static final String HUD_ID = "perf-hud";
+  /** The time (in milliseconds) between refreshes of the heads up display. */
+  public static final int HUD_REFRESH_TIME = 1000;
+  /** The time (in milliseconds) between reports sent to the server. */
+  public static final int REPORT_TIME = 10000;
+
+  private Client client;
+  // Samples since the heads up display was last refreshed
+  private PerfReport hudSamples = new PerfReport();
+  // Samples since the last report was sent
+  private PerfReport reportSamples = new PerfReport();
+  private double hudStart;
+  private double reportStart;
+  // The time (in milliseconds) of the previous animation frame, or 0 if there was none
+  private double lastFrameTime;
+  private boolean hudVisible = false;
+
+  private Timer hudTimer = new Timer() {
+    @Override
+    public void run() {
+      refreshHud();
+    }
+  };
+  private Timer reportTimer = new Timer() {
+    @Override
+    public void run() {
+      sendReport();
+    }
+  };
+
+  /**
+   * Create a PerfMonitor.
+   * 
+   * @param client
+   *          The local client, whose player and game are named in reports.
+   */
+  public PerfMonitor(Client client) {
+    this.client = client;
+  }
+
+  /**
+   * Start sampling a new game, sending reports to the server and refreshing the heads up display if
+   * it is shown.
+   */
+  public void start() {
+    hudSamples = new PerfReport();
+    reportSamples = new PerfReport();
+    hudStart = reportStart = Duration.currentTimeMillis();
+    lastFrameTime = 0;
+    reportTimer.scheduleRepeating(REPORT_TIME);
+    if (hudVisible) {
+      hudTimer.scheduleRepeating(HUD_REFRESH_TIME);
+    }
+  }
+
+  /**
+   * Send the samples taken since the last report, and stop sending reports.
+   */
+  public void stop() {
+    sendReport();
+    reportTimer.cancel();
+    hudTimer.cancel();
+  }
+
+  /**
+   * Show the heads up display if it is hidden, or hide it if it is shown.
+   */
+  public void toggleHud() {
+    hudVisible = !hudVisible;
+    Element hud = Document.get().getElementById(HUD_ID);
+    if (hudVisible) {
+      hudSamples = new PerfReport();
+      hudStart = Duration.currentTimeMillis();
+      hud.setInnerText("Sampling...");
+      hud.getStyle().setDisplay(Display.BLOCK);
+      hudTimer.scheduleRepeating(HUD_REFRESH_TIME);
+    }
+    else {
+      hudTimer.cancel();
+      hud.getStyle().setDisplay(Display.NONE);
+    }
+  }
+
+  /**
+   * Note that the game loop has started, after being stopped. The gap in animation frames while it
+   * was stopped is not recorded.
+   */
+  public void loopStarted() {
+    lastFrameTime = 0;
+  }
+
+  /**
+   * Record an animation frame.
+   * 
+   * @param start
+   *          The time (in milliseconds) at which the frame started.
+   * @param end
+   *          The time (in milliseconds) at which drawing the frame finished.
+   */
+  public void frameDrawn(double start, double end) {
+    if (lastFrameTime > 0) {
+      hudSamples.addFrame(start - lastFrameTime, end - start);
+      reportSamples.addFrame(start - lastFrameTime, end - start);
+    }
+    lastFrameTime = start;
+  }
+
+  /**
+   * Record calls drawing to a canvas.
+   * 
+   * @param calls
+   *          The number of calls.
+   */
+  public void drawCalls(int calls) {
+    hudSamples.addDrawCalls(calls);
+    reportSamples.addDrawCalls(calls);
+  }
+
+  /**
+   * Record a firing of the game loop timer.
+   * 
+   * @param interval
+   *          The time (in milliseconds) since the timer last fired.
+   * @param loopTime
+   *          The time (in milliseconds) the timer is scheduled to fire after.
+   */
+  public void loopFired(double interval, int loopTime) {
+    double jitter = Math.abs(interval - loopTime);
+    hudSamples.addLoopFiring(jitter);
+    reportSamples.addLoopFiring(jitter);
+  }
+
+  /**
+   * Record an {@link Command#INPUT_UPDATE input update} sent to the server.
+   */
+  public void inputUpdateSent() {
+    hudSamples.addInputUpdateSent();
+    reportSamples.addInputUpdateSent();
+  }
+
+  /**
+   * Record a message from the server carrying opponents' boards.
+   * 
+   * @param opponentUpdates
+   *          The number of input or move updates of opponents in the message.
+   */
+  public void gameMessageReceived(int opponentUpdates) {
+    hudSamples.addGameMessageReceived(opponentUpdates);
+    reportSamples.addGameMessageReceived(opponentUpdates);
+  }
+
+  /**
+   * Record a tick of the playback of an opponent's board.
+   * 
+   * @param depth
+   *          The number of opponent states waiting to be drawn.
+   * @param delay
+   *          The delay (in milliseconds) of playback behind the newest state received.
+   * @param target
+   *          The delay (in milliseconds) that playback is adjusted towards.
+   * @param skips
+   *          The number of times playback skipped ahead in this tick.
+   * @param late
+   *          The number of states received in this tick after they were due to be drawn.
+   * @param dropped
+   *          The number of states never drawn, as a later state was due in this tick.
+   */
+  public void playbackSampled(int depth, int delay, int target, int skips, int late, int dropped) {
+    hudSamples.addPlayback(depth, delay, target, skips, late, dropped);
+    reportSamples.addPlayback(depth, delay, target, skips, late, dropped);
+  }
+
+  private void refreshHud() {
+    double now = Duration.currentTimeMillis();
+    PerfReport samples = hudSamples;
+    samples.setInterval((int) (now - hudStart));
+    hudSamples = new PerfReport();
+    hudStart = now;
+
+    Document.get().getElementById(HUD_ID).setInnerText(
+            "frame " + format(samples.getMeanFrameTime()) + " ms (max " + format(samples.getMaxFrameTime())
+                    + "), draw " + format(samples.getMeanDrawTime()) + " ms\n"
+                    + "loop jitter " + format(samples.getMeanLoopJitter()) + " ms (max "
+                    + format(samples.getMaxLoopJitter()) + ")\n"
+                    + "draw calls/frame " + format(samples.getDrawCallsPerFrame()) + "\n"
+                    + "inputs sent/s " + format(samples.perSecond(samples.getInputUpdatesSent())) + "\n"
+                    + "frames recv/s " + format(samples.perSecond(samples.getGameMessagesReceived()))
+                    + ", opp updates/s " + format(samples.perSecond(samples.getOpponentUpdatesReceived())) + "\n"
+                    + "opp queue " + format(samples.getMeanQueueDepth()) + " (max " + samples.getMaxQueueDepth()
+                    + "), delay " + format(samples.getMeanPlaybackDelay()) + " ms (max "
+                    + samples.getMaxPlaybackDelay() + "), target " + format(samples.getMeanPlaybackTarget())
+                    + " ms\n"
+                    + "opp skips/s " + format(samples.perSecond(samples.getPlaybackSkips())) + ", late/s "
+                    + format(samples.perSecond(samples.getLateStates())) + ", dropped/s "
+                    + format(samples.perSecond(samples.getDroppedStates())));
+  }
+
+  private void sendReport() {
+    double now = Duration.currentTimeMillis();
+    PerfReport report = reportSamples;
+    report.setInterval((int) (now - reportStart));
+    reportSamples = new PerfReport();
+    reportStart = now;
+
+    GameRoom room = client.getGameRoom();
+    if (report.isEmpty() || room == null) {
+      return;
+    }
+    report.setPlayer(client.getPlayer());
+    report.setGameId(room.getId());
+    MessageBuilder.createMessage("Relay").command(Command.PERF_REPORT).withValue(report).noErrorHandling()
+            .sendNowWith(ErraiBus.get());
+  }
+
+  private static String format(double value) {
+    return String.valueOf(Math.round(value * 10) / 10.0);
+  }
+}
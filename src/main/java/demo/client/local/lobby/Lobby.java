@@ -1,5 +1,7 @@
 package demo.client.local.lobby;
 
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -26,14 +28,22 @@ import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Style.Display;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.KeyUpEvent;
+import com.google.gwt.event.dom.client.KeyUpHandler;
+import com.google.gwt.event.logical.shared.ValueChangeEvent;
+import com.google.gwt.event.logical.shared.ValueChangeHandler;
 import com.google.gwt.user.client.ui.Button;
+import com.google.gwt.user.client.ui.CheckBox;
 import com.google.gwt.user.client.ui.Composite;
 import com.google.gwt.user.client.ui.HorizontalPanel;
+import com.google.gwt.user.client.ui.TextBox;
 
 import demo.client.local.Client;
 import demo.client.local.game.gui.BoardPage;
 import demo.client.local.game.tools.Style;
 import demo.client.shared.lobby.Invitation;
+import demo.client.shared.lobby.LobbyDelta;
+import demo.client.shared.lobby.LobbyQuery;
 import demo.client.shared.lobby.LobbyUpdate;
 import demo.client.shared.lobby.LobbyUpdateRequest;
 import demo.client.shared.lobby.RegisterRequest;
@@ -49,6 +59,22 @@ import demo.client.shared.meta.Player;
 @ApplicationScoped
 public class Lobby extends Composite {
 
+  /* Players are listed by name, as on the server. */
+  private static final Comparator<Player> PLAYER_ORDER = new Comparator<Player>() {
+    @Override
+    public int compare(Player p1, Player p2) {
+      int byName = p1.getName().toLowerCase().compareTo(p2.getName().toLowerCase());
+      return byName != 0 ? byName : p1.getId() - p2.getId();
+    }
+  };
+  /* Games are listed by id, as on the server. */
+  private static final Comparator<GameRoom> GAME_ORDER = new Comparator<GameRoom>() {
+    @Override
+    public int compare(GameRoom g1, GameRoom g2) {
+      return g1.getId() - g2.getId();
+    }
+  };
+
   /* For the Errai NavigationUI. */
   @Inject
   private TransitionTo<BoardPage> boardTransition;
@@ -80,6 +106,17 @@ public class Lobby extends Composite {
   private Set<Player> selectedPlayers = new HashSet<Player>();
   private GameRoom selectedGame = null;
 
+  /* The version of the lobby being displayed, or -1 if no snapshot has been received. */
+  private int lobbyVersion = -1;
+  /* The page of the lobby being displayed. */
+  private LobbyQuery query = new LobbyQuery();
+  /* The number of players and games matching the query, on all pages. */
+  private int playerCount = 0;
+  private int gameCount = 0;
+
+  private Button prevPageButton = new Button("Prev");
+  private Button nextPageButton = new Button("Next");
+
   private LobbyHeartBeat heartBeat;
 
   /**
@@ -101,6 +138,60 @@ public class Lobby extends Composite {
     });
 
     playerButtonPanel.add(newGameButton);
+
+    final TextBox searchBox = new TextBox();
+    searchBox.getElement().setAttribute("placeholder", "Search players");
+    searchBox.addKeyUpHandler(new KeyUpHandler() {
+
+      @Override
+      public void onKeyUp(KeyUpEvent event) {
+        if (!searchBox.getValue().equals(query.getNamePrefix())) {
+          query.setNamePrefix(searchBox.getValue());
+          changePage(0);
+        }
+      }
+    });
+    playerButtonPanel.add(searchBox);
+
+    CheckBox openGamesBox = new CheckBox("Open games only");
+    openGamesBox.addValueChangeHandler(new ValueChangeHandler<Boolean>() {
+
+      @Override
+      public void onValueChange(ValueChangeEvent<Boolean> event) {
+        query.setFreeSlotsOnly(event.getValue());
+        changePage(0);
+      }
+    });
+    playerButtonPanel.add(openGamesBox);
+
+    prevPageButton.addClickHandler(new ClickHandler() {
+
+      @Override
+      public void onClick(ClickEvent event) {
+        changePage(query.getPage() - 1);
+      }
+    });
+    nextPageButton.addClickHandler(new ClickHandler() {
+
+      @Override
+      public void onClick(ClickEvent event) {
+        changePage(query.getPage() + 1);
+      }
+    });
+    playerButtonPanel.add(prevPageButton);
+    playerButtonPanel.add(nextPageButton);
+    updatePageButtons();
+  }
+
+  private void changePage(int page) {
+    query.setPage(page);
+    requestLobbyUpdate();
+  }
+
+  private void updatePageButtons() {
+    int end = (query.getPage() + 1) * query.getPageSize();
+    prevPageButton.setEnabled(query.getPage() > 0);
+    nextPageButton.setEnabled(end < Math.max(playerCount, gameCount));
   }
 
   private void resetHeartBeat() {
@@ -117,10 +208,10 @@ public class Lobby extends Composite {
   }
 
   /**
-   * Request an update of the current clients in the lobby from the server.
+   * Request an update of the current page of the lobby from the server.
    */
   public void requestLobbyUpdate() {
-    lobbyUpdateRequest.fire(new LobbyUpdateRequest());
+    lobbyUpdateRequest.fire(new LobbyUpdateRequest(query));
   }
   
   /**
@@ -138,22 +229,144 @@ public class Lobby extends Composite {
   }
 
   /**
-   * Update the lobby list model and display with newest lobby update from the server.
+   * Replace the lobby list model and display with a snapshot of a page of the lobby from the server.
    */
   public void updateLobby(@Observes LobbyUpdate update) {
     List<Player> players = update.getPlayers();
     players.remove(client.getPlayer());
+    Collections.sort(players, PLAYER_ORDER);
     playerList.setItems(players);
-    gameList.setItems(update.getGames());
-    
-    if (players.isEmpty()) {
+    List<GameRoom> games = update.getGames();
+    Collections.sort(games, GAME_ORDER);
+    gameList.setItems(games);
+    lobbyVersion = update.getVersion();
+    playerCount = update.getPlayerCount();
+    gameCount = update.getGameCount();
+
+    updateEmptyListMessages();
+    updatePageButtons();
+  }
+
+  /**
+   * Apply a change to the lobby from the server to the lobby list model and display. Only changes to
+   * the page being displayed are applied. If any change has been missed, a new snapshot is requested
+   * instead.
+   */
+  public void applyLobbyDelta(@Observes LobbyDelta delta) {
+    if (lobbyVersion == -1 || delta.getVersion() <= lobbyVersion) {
+      // Waiting for a snapshot, or already included in the last snapshot.
+      return;
+    }
+    if (delta.getBaseVersion() != lobbyVersion) {
+      lobbyVersion = -1;
+      requestLobbyUpdate();
+      return;
+    }
+
+    List<Player> players = playerList.getValue();
+    for (Integer id : delta.getRemovedPlayerIds()) {
+      int index = indexOfPlayer(players, id);
+      if (index != -1) {
+        selectedPlayers.remove(players.remove(index));
+      }
+    }
+    for (Player player : delta.getPlayers()) {
+      if (player.equals(client.getPlayer())) {
+        continue;
+      }
+      int index = indexOfPlayer(players, player.getId());
+      if (!query.matches(player)) {
+        if (index != -1) {
+          selectedPlayers.remove(players.remove(index));
+        }
+        continue;
+      }
+      else if (index != -1) {
+        players.set(index, player);
+      }
+      else if (players.size() < query.getPageSize()) {
+        // A page with room is the last page, so new players belong on it.
+        players.add(insertionIndex(players, player, PLAYER_ORDER), player);
+      }
+      else {
+        continue;
+      }
+      if (selectedPlayers.contains(player)) {
+        playerList.getWidget(player).addStyleName(Style.SELECTED);
+      }
+    }
+
+    List<GameRoom> games = gameList.getValue();
+    for (Integer id : delta.getRemovedGameIds()) {
+      int index = indexOfGame(games, id);
+      if (index != -1 && games.remove(index).equals(selectedGame)) {
+        selectedGame = null;
+      }
+    }
+    for (GameRoom game : delta.getGames()) {
+      int index = indexOfGame(games, game.getId());
+      if (!query.matches(game)) {
+        if (index != -1 && games.remove(index).equals(selectedGame)) {
+          selectedGame = null;
+        }
+        continue;
+      }
+      else if (index != -1) {
+        games.set(index, game);
+      }
+      else if (games.size() < query.getPageSize()) {
+        games.add(insertionIndex(games, game, GAME_ORDER), game);
+      }
+      else {
+        continue;
+      }
+      if (game.equals(selectedGame)) {
+        gameList.getWidget(game).addStyleName(Style.SELECTED);
+      }
+    }
+    lobbyVersion = delta.getVersion();
+
+    updateEmptyListMessages();
+  }
+
+  private static <T> int insertionIndex(List<T> list, T item, Comparator<T> order) {
+    int index = 0;
+    while (index < list.size() && order.compare(list.get(index), item) < 0) {
+      index++;
+    }
+
+    return index;
+  }
+
+  private static int indexOfPlayer(List<Player> players, int id) {
+    for (int i = 0; i < players.size(); i++) {
+      if (players.get(i).getId() == id) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private static int indexOfGame(List<GameRoom> games, int id) {
+    for (int i = 0; i < games.size(); i++) {
+      if (games.get(i).getId() == id) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  private void updateEmptyListMessages() {
+    if (playerList.getValue().isEmpty()) {
       Document.get().getElementById("empty-player-list").getStyle().clearDisplay();
     }
     else {
       Document.get().getElementById("empty-player-list").getStyle().setDisplay(Display.NONE);
     }
     
-    if (update.getGames().isEmpty()) {
+    if (gameList.getValue().isEmpty()) {
       Document.get().getElementById("empty-game-list").getStyle().clearDisplay();
     }
     else {
@@ -177,8 +390,8 @@ public class Lobby extends Composite {
    */
   public void loadPlayer(@Observes Player player) {
 
-    // If this user has not yet been registered, subscribe to server relay
-    if (!client.hasRegisteredPlayer()) {
+    // If this user has not yet been registered (or has been given a new id), subscribe to server relay
+    if (!client.hasRegisteredPlayer() || client.getPlayer().getId() != player.getId()) {
 
       messageBus.subscribe("Client" + player.getId(), new LobbyMessageCallback(client, this));
     }
@@ -7,8 +7,4 @@ package demo.client.shared.game.model;
  * 
  */
 public class BackgroundBlockModel extends BlockModel {
-
-  public BackgroundBlockModel() {
-    super(generateId());
-  }
 }
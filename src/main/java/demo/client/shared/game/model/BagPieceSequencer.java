@@ -0,0 +1,38 @@
+package demo.client.shared.game.model;
+
+/**
+ * A {@link PieceSequencer} dealing blocks from a bag holding one of each type, which is shuffled and
+ * refilled once empty. Every type of block appears exactly once in each group of seven, so there are
+ * never more than twelve blocks between two of the same type.
+ */
+public class BagPieceSequencer extends PieceSequencer {
+
+  /**
+   * Create a BagPieceSequencer.
+   * 
+   * @param seed
+   *          The seed of the sequence.
+   */
+  public BagPieceSequencer(int seed) {
+    super(seed);
+  }
+
+  @Override
+  public int getType() {
+    return BAG;
+  }
+
+  @Override
+  protected int generate(int[] buffer, int offset) {
+    System.arraycopy(CODES, 0, buffer, offset, CODES.length);
+    // Fisher-Yates shuffle.
+    for (int i = CODES.length - 1; i > 0; i--) {
+      int j = offset + nextInt(i + 1);
+      int swap = buffer[offset + i];
+      buffer[offset + i] = buffer[j];
+      buffer[j] = swap;
+    }
+
+    return CODES.length;
+  }
+}
@@ -16,25 +16,23 @@ public class BlockModel {
    */
   public static final int BASIC_CODE = 1;
 
-  private static int idGen = 1;
-
   /**
    * A list of SquareModels, containing the squares of squares.
    */
   private List<SquareModel> squares;
-  /** A unique id for identifying this block. */
+  /**
+   * An id for identifying this block. Blocks dealt to a {@link BoardModel board} are numbered by
+   * their position in the board's sequence of blocks, and all other blocks have id 0.
+   */
   private int id;
+  /** The code of the squares in this block, as passed to {@link #setOffsets(int[][], int)}. */
+  private int typeCode = BASIC_CODE;
+  /** The current orientation of this block, as an index into its {@link RotationTable rotation table}. */
+  private int orientation = 0;
+  /** Squares removed from this block, kept for reuse when squares are next added. */
+  private transient List<SquareModel> spareSquares;
 
   public BlockModel() {
-    this(generateId());
-  }
-
-  /**
-   * Initializes BlockModel id. All subclasses should invoke this constructor using the return value
-   * of {@link BlockModel#generateId()} as the argument.
-   */
-  protected BlockModel(int id) {
-    this.id = id;
     squares = new ArrayList<SquareModel>();
   }
 
@@ -47,16 +45,78 @@ public class BlockModel {
    *          position.
    */
   protected void setOffsets(int[][] offsets, int code) {
-    this.squares = new ArrayList<SquareModel>();
+    this.typeCode = code;
 
     for (int i = 0; i < offsets.length; i++) {
-      this.squares.add(new SquareModel(offsets[i][0], offsets[i][1], code));
+      setSquare(i, offsets[i][0], offsets[i][1], code);
     }
+    truncate(offsets.length);
+  }
+
+  /**
+   * Set the squares in this block from the initial orientation of a rotation table. Subclasses with
+   * a fixed shape should call this with the same table returned by {@link #getRotationTable()}.
+   * 
+   * @param table
+   *          The rotation table of this type of block.
+   * @param code
+   *          The code of the squares in this block.
+   */
+  protected void setOffsets(RotationTable table, int code) {
+    this.typeCode = code;
+    this.orientation = 0;
+
+    for (int i = 0; i < table.getSize(); i++) {
+      setSquare(i, table.getRowOffset(0, i), table.getColOffset(0, i), code);
+    }
+    truncate(table.getSize());
+  }
+
+  /**
+   * Reshape this block in place into the initial orientation of another type of block, reusing its
+   * squares. Boards use this to recycle their blocks as new blocks are dealt.
+   * 
+   * @param shape
+   *          The shape of the new type of block.
+   * @param id
+   *          The new id of this block.
+   */
+  void reshape(BlockShape shape, int id) {
+    this.id = id;
+    setOffsets(shape.getRotations(), shape.getCode());
+  }
+
+  /**
+   * Get the shape of this type of block.
+   * 
+   * @return The shape shared by all blocks of this type, or {@code null} if this block does not have
+   *         a fixed shape.
+   */
+  public BlockShape getShape() {
+    return BlockShape.of(typeCode);
+  }
+
+  /**
+   * Get the rotation table of this type of block.
+   * 
+   * @return The rotation table shared by all blocks of this type, or {@code null} if this block
+   *         does not have a fixed shape.
+   */
+  public RotationTable getRotationTable() {
+    BlockShape shape = getShape();
+
+    return shape != null ? shape.getRotations() : null;
   }
 
   @Override
   public boolean equals(Object other) {
-    return other.getClass() == BlockModel.class && this.getId() == ((BlockModel) other).getId();
+    return other != null && other.getClass() == getClass() && this.getId() == ((BlockModel) other).getId()
+            && this.getTypeCode() == ((BlockModel) other).getTypeCode();
+  }
+
+  @Override
+  public int hashCode() {
+    return getId() ^ (getTypeCode() << 24);
   }
 
   /**
@@ -69,21 +129,51 @@ public class BlockModel {
   }
 
   /**
-   * Generate a unique id for a BlockModel instance.
+   * Get the integer representing this type of BlockModel on the {@link BoardModel board model}.
    * 
-   * @return A unique id.
+   * @return An integer representing this type of block on the {@link BoardModel board model}.
    */
-  protected static int generateId() {
-    return idGen++;
+  public static int getCode() {
+    return BASIC_CODE;
   }
 
   /**
-   * Get the integer representing this type of BlockModel on the {@link BoardModel board model}.
+   * Get the code of the squares in this particular block instance. Unlike the static
+   * {@link #getCode()}, this is not hidden by subclasses and so can be used to identify the type of
+   * a block at runtime.
    * 
-   * @return An integer representing this type of block on the {@link BoardModel board model}.
+   * @return The code of the squares in this block.
    */
-  public static int getCode() {
-    return BASIC_CODE;
+  public int getTypeCode() {
+    return typeCode;
+  }
+
+  /**
+   * Get the orientation of this block.
+   * 
+   * @return The index of this block's orientation in its {@link #getRotationTable() rotation table}.
+   *         For blocks without a rotation table, this is the number of 90-degree clockwise rotations
+   *         (modulo 4) applied to the block since it was created.
+   */
+  public int getOrientation() {
+    return orientation;
+  }
+
+  /**
+   * Set the orientation of this block. This should only be called on blocks with a
+   * {@link #getRotationTable() rotation table}.
+   * 
+   * @param orientation
+   *          The index of the new orientation in this block's rotation table.
+   */
+  public void setOrientation(int orientation) {
+    RotationTable table = getRotationTable();
+    for (int i = 0; i < squares.size(); i++) {
+      SquareModel square = squares.get(i);
+      square.setRow(table.getRowOffset(orientation, i));
+      square.setCol(table.getColOffset(orientation, i));
+    }
+    this.orientation = orientation;
   }
 
   /**
@@ -96,10 +186,17 @@ public class BlockModel {
   }
 
   /**
-   * Rotate the squares in this block by 90 degrees clockwise. BlockModels that do not rotate around
-   * a central square should override this method.
+   * Rotate the squares in this block by 90 degrees clockwise. Blocks with a
+   * {@link #getRotationTable() rotation table} take the next orientation from their table, and all
+   * other blocks are rotated around their central square.
    */
   public void rotate() {
+    RotationTable table = getRotationTable();
+    if (table != null) {
+      setOrientation(table.next(orientation));
+      return;
+    }
+
     for (SquareModel square : squares) {
       // Calculate new squares (calculation derived from rotation matrix by 90 degrees)
       int newRowOffset = -1 * square.getCol();
@@ -109,12 +206,19 @@ public class BlockModel {
       square.setRow(newRowOffset);
       square.setCol(newColOffset);
     }
+    orientation = (orientation + 1) % 4;
   }
 
   /**
    * Reverse the effect of a call to {@link BlockModel#rotate() rotate()}.
    */
   public void unrotate() {
+    RotationTable table = getRotationTable();
+    if (table != null) {
+      setOrientation(table.previous(orientation));
+      return;
+    }
+
     for (SquareModel square : squares) {
       // Calculate new squares (calculation derived from rotation matrix by -90 degrees).
       int newRowOffset = square.getCol();
@@ -124,6 +228,7 @@ public class BlockModel {
       square.setRow(newRowOffset);
       square.setCol(newColOffset);
     }
+    orientation = (orientation + 3) % 4;
   }
 
   /**
@@ -136,6 +241,67 @@ public class BlockModel {
     squares.add(square);
   }
 
+  /**
+   * Remove every square from this block. The removed squares are reused by later calls to
+   * {@link #addSquare(int, int, int)}.
+   */
+  public void clearSquares() {
+    truncate(0);
+  }
+
+  /**
+   * Add a square to this BlockModel, reusing a previously removed square if there is one.
+   * 
+   * @param row
+   *          The row offset of the square.
+   * @param col
+   *          The column offset of the square.
+   * @param code
+   *          The code of the square.
+   */
+  public void addSquare(int row, int col, int code) {
+    setSquare(squares.size(), row, col, code);
+  }
+
+  /**
+   * Set the square at an index, reusing the square already there or a spare square if possible.
+   */
+  private void setSquare(int index, int row, int col, int code) {
+    if (index < squares.size()) {
+      SquareModel square = squares.get(index);
+      square.setRow(row);
+      square.setCol(col);
+      square.setCode(code);
+    }
+    else {
+      squares.add(takeSpare(row, col, code));
+    }
+  }
+
+  private SquareModel takeSpare(int row, int col, int code) {
+    if (spareSquares == null || spareSquares.isEmpty()) {
+      return new SquareModel(row, col, code);
+    }
+    SquareModel square = spareSquares.remove(spareSquares.size() - 1);
+    square.setRow(row);
+    square.setCol(col);
+    square.setCode(code);
+
+    return square;
+  }
+
+  /**
+   * Remove the squares after the first {@code size} squares, keeping them as spares.
+   */
+  private void truncate(int size) {
+    if (squares.size() > size && spareSquares == null) {
+      spareSquares = new ArrayList<SquareModel>();
+    }
+    while (squares.size() > size) {
+      spareSquares.add(squares.remove(squares.size() - 1));
+    }
+  }
+
   /**
    * Get the starting row of this BlockModel.
    * 
@@ -143,6 +309,8 @@ public class BlockModel {
    *         model}.
    */
   public int getStartingRow() {
-    return -2;
+    BlockShape shape = getShape();
+
+    return shape != null ? shape.getStartingRow() : -2;
   }
 }
@@ -0,0 +1,87 @@
+package demo.client.shared.game.model;
+
+/**
+ * The immutable definition of a type of {@link BlockModel block}: its code, its
+ * {@link RotationTable rotation table}, and the row at which it enters a {@link BoardModel board}.
+ * 
+ * There is exactly one shape per type of block, shared by every block of that type, so a block only
+ * has to hold its code and orientation. This lets a board reshape the same block objects in place
+ * each time a new block is dealt, instead of allocating new ones.
+ */
+public final class BlockShape {
+
+  /** Every shape, indexed by code. */
+  private static final BlockShape[] SHAPES = index(
+          new BlockShape(LBlockModel.CODE, LBlockModel.ROTATIONS, -2),
+          new BlockShape(ReverseLBlockModel.CODE, ReverseLBlockModel.ROTATIONS, -2),
+          new BlockShape(TBlockModel.CODE, TBlockModel.ROTATIONS, -2),
+          new BlockShape(SBlockModel.CODE, SBlockModel.ROTATIONS, -2),
+          new BlockShape(ZBlockModel.CODE, ZBlockModel.ROTATIONS, -2),
+          new BlockShape(LongBlockModel.CODE, LongBlockModel.ROTATIONS, -3),
+          new BlockShape(SquareBlockModel.CODE, SquareBlockModel.ROTATIONS, -2));
+
+  private final int code;
+  private final RotationTable rotations;
+  private final int startingRow;
+
+  private BlockShape(int code, RotationTable rotations, int startingRow) {
+    this.code = code;
+    this.rotations = rotations;
+    this.startingRow = startingRow;
+  }
+
+  /**
+   * Index shapes by code, in an array just long enough to hold the largest code.
+   */
+  private static BlockShape[] index(BlockShape... shapes) {
+    int maxCode = 0;
+    for (BlockShape shape : shapes) {
+      maxCode = Math.max(maxCode, shape.code);
+    }
+    BlockShape[] indexed = new BlockShape[maxCode + 1];
+    for (BlockShape shape : shapes) {
+      indexed[shape.code] = shape;
+    }
+
+    return indexed;
+  }
+
+  /**
+   * Get the shape of a type of block.
+   * 
+   * @param code
+   *          The code of a type of block, as per {@link BlockModel#getTypeCode()}.
+   * @return The shape of the given type of block, or {@code null} if the code does not identify a
+   *         type of block with a fixed shape.
+   */
+  public static BlockShape of(int code) {
+    return code >= 0 && code < SHAPES.length ? SHAPES[code] : null;
+  }
+
+  /**
+   * Get the code of this shape.
+   * 
+   * @return The code of the squares in blocks of this shape.
+   */
+  public int getCode() {
+    return code;
+  }
+
+  /**
+   * Get the rotation table of this shape.
+   * 
+   * @return The square offsets of every orientation of this shape.
+   */
+  public RotationTable getRotations() {
+    return rotations;
+  }
+
+  /**
+   * Get the starting row of this shape.
+   * 
+   * @return The row index of the position at which blocks of this shape enter a board.
+   */
+  public int getStartingRow() {
+    return startingRow;
+  }
+}
@@ -20,8 +20,16 @@ public class BoardModel {
   /** The number of columns in this board. */
   public final static int COL_NUM = 10;
 
-  /** The rows of the board. Lower indices represent lower rows. */
-  private Row[] board;
+  /** A mask with one bit set for every column of a row. */
+  static final int FULL_ROW = (1 << COL_NUM) - 1;
+
+  /**
+   * The occupancy of each row of the board, with bit j of a row set iff column j is occupied. Higher
+   * indices represent lower rows.
+   */
+  private int[] rowMasks;
+  /** The code of every square on the board, indexed by row * COL_NUM + col. */
+  private int[] tiles;
 
   /**
    * The current active block. Tiles in the active block are not recorded on the board until the
@@ -39,6 +47,18 @@ public class BoardModel {
   private int pendingRowMove = 0;
   private int pendingColMove = 0;
   private int rowsToAdd = 0;
+  /** The type of sequencer dealing blocks to this board, as per {@link PieceSequencer#getType()}. */
+  private int pieceType;
+  /** The seed of the sequencer dealing blocks to this board. */
+  private int pieceSeed;
+  /** The position in the sequence of the next block to be generated. */
+  private int pieceIndex;
+  /** Deals blocks to this board. Shared with copies of this board, and rebuilt after marshalling. */
+  private transient PieceSequencer pieces;
+  /** The state of the generator choosing the gaps in sabotage rows. Never zero. */
+  private int sabotageSeed;
+  /** Reused by every call that returns a model of settled squares. */
+  private transient BackgroundBlockModel scratchBlock;
 
   /**
    * Create a BoardModel.
@@ -50,21 +70,119 @@ public class BoardModel {
    *          The number of squares in the height of the board.
    */
   public BoardModel() {
-    board = new Row[ROW_NUM];
+    this(new Random().nextInt());
+  }
+
+  /**
+   * Create a BoardModel whose blocks and sabotage rows are determined by a seed. Boards created with
+   * the same seed and given the same moves remain identical.
+   * 
+   * @param seed
+   *          The seed for generating blocks and sabotage rows.
+   */
+  public BoardModel(int seed) {
+    this(PieceSequencer.create(PieceSequencer.BAG, seed), seed);
+  }
+
+  /**
+   * Create a BoardModel dealt blocks by a sequencer, which may be shared with other boards. Boards
+   * created with the same type of sequencer, seeds and moves remain identical.
+   * 
+   * @param pieces
+   *          Deals blocks to this board, starting at the beginning of its sequence.
+   * @param seed
+   *          The seed for generating sabotage rows.
+   */
+  public BoardModel(PieceSequencer pieces, int seed) {
+    this.pieces = pieces;
+    pieceType = pieces.getType();
+    pieceSeed = pieces.getSeed();
+    sabotageSeed = nonZero(nextRandom(~seed));
     initBoard();
   }
 
+  /**
+   * Create a copy of another BoardModel. The copy shares no mutable state with the original.
+   * 
+   * @param other
+   *          The board to copy.
+   */
+  public BoardModel(BoardModel other) {
+    rowMasks = new int[ROW_NUM];
+    tiles = new int[ROW_NUM * COL_NUM];
+    System.arraycopy(other.rowMasks, 0, rowMasks, 0, ROW_NUM);
+    System.arraycopy(other.tiles, 0, tiles, 0, ROW_NUM * COL_NUM);
+    activeBlock = copyBlock(other.activeBlock);
+    nextBlock = copyBlock(other.nextBlock);
+    activeBlockRow = other.activeBlockRow;
+    activeBlockColumn = other.activeBlockColumn;
+    fast = other.fast;
+    drop = other.drop;
+    pendingRowMove = other.pendingRowMove;
+    pendingColMove = other.pendingColMove;
+    rowsToAdd = other.rowsToAdd;
+    pieceType = other.pieceType;
+    pieceSeed = other.pieceSeed;
+    pieceIndex = other.pieceIndex;
+    // The sequence never changes, so the copy can share the sequencer.
+    pieces = other.pieces;
+    sabotageSeed = other.sabotageSeed;
+  }
+
+  /**
+   * Create a board in the state captured by a snapshot.
+   * 
+   * @param snapshot
+   *          A snapshot of a board.
+   */
+  public BoardModel(BoardSnapshot snapshot) {
+    rowMasks = new int[ROW_NUM];
+    tiles = new int[ROW_NUM * COL_NUM];
+    for (int i = 0; i < ROW_NUM; i++) {
+      rowMasks[i] = snapshot.getRowMask(i);
+      for (int j = 0; j < COL_NUM; j++) {
+        tiles[i * COL_NUM + j] = snapshot.getTile(i, j);
+      }
+    }
+    activeBlock = blockOf(BlockShape.of(snapshot.getActiveCode()), snapshot.getActiveId(),
+            snapshot.getActiveOrientation());
+    nextBlock = blockOf(BlockShape.of(snapshot.getNextCode()), snapshot.getNextId(), 0);
+    activeBlockRow = snapshot.getActiveRow();
+    activeBlockColumn = snapshot.getActiveCol();
+    fast = snapshot.isFast();
+    drop = snapshot.isDropping();
+    pendingRowMove = snapshot.getPendingRowMove();
+    pendingColMove = snapshot.getPendingColMove();
+    rowsToAdd = snapshot.getRowsToAdd();
+    pieceType = snapshot.getPieceType();
+    pieceSeed = snapshot.getPieceSeed();
+    pieceIndex = snapshot.getPieceIndex();
+    sabotageSeed = snapshot.getSabotageSeed();
+  }
+
+  /**
+   * Take an immutable snapshot of this board.
+   * 
+   * @param previous
+   *          An earlier snapshot of this board, whose unchanged rows are shared with the new snapshot,
+   *          or {@code null}.
+   * @return A snapshot of the current state of this board.
+   */
+  public BoardSnapshot snapshot(BoardSnapshot previous) {
+    return new BoardSnapshot(this, previous);
+  }
+
   /**
    * Initialize the board in preparation for a new game.
    */
   private void initBoard() {
-    // Initialize board array.
-    for (int i = 0; i < ROW_NUM; i++)
-      board[i] = new Row(COL_NUM);
+    // Initialize board arrays. Values are initialized to 0 (which is unoccupied).
+    rowMasks = new int[ROW_NUM];
+    tiles = new int[ROW_NUM * COL_NUM];
 
-    // Remove any blocks from the previous game.
-    activeBlock = generateNextBlock();
-    nextBlock = generateNextBlock();
+    // Replace any blocks from the previous game.
+    activeBlock = generateNextBlock(activeBlock);
+    nextBlock = generateNextBlock(nextBlock);
 
     initActiveBlockPosition();
   }
@@ -79,41 +197,58 @@ public class BoardModel {
   }
 
   /**
-   * Generate the next BlockModel to be used as the active block on this board.
-   */
-  private BlockModel generateNextBlock() {
-    int decider = (new Random()).nextInt(7);
-
-    BlockModel retVal;
-
-    switch (decider) {
-    case 0:
-      retVal = new LBlockModel();
-      break;
-    case 1:
-      retVal = new ReverseLBlockModel();
-      break;
-    case 2:
-      retVal = new TBlockModel();
-      break;
-    case 3:
-      retVal = new SBlockModel();
-      break;
-    case 4:
-      retVal = new ZBlockModel();
-      break;
-    case 5:
-      retVal = new LongBlockModel();
-      break;
-    case 6:
-      retVal = new SquareBlockModel();
-      break;
-    default:
-      retVal = null;
-      break;
+   * Generate the next BlockModel to be used as the active block on this board. The block is
+   * numbered by its position in the sequence of blocks dealt to this board.
+   * 
+   * @param recycled
+   *          A block that is no longer used by this board, to reshape into the new block, or
+   *          {@code null} to create a new block.
+   */
+  private BlockModel generateNextBlock(BlockModel recycled) {
+    if (pieces == null) {
+      pieces = PieceSequencer.create(pieceType, pieceSeed);
     }
+    BlockModel block = recycled != null ? recycled : new BlockModel();
+    block.reshape(BlockShape.of(pieces.pieceAt(pieceIndex)), pieceIndex);
+    pieceIndex += 1;
 
-    return retVal;
+    return block;
+  }
+
+  /**
+   * Advance a xorshift generator. Only shifts and exclusive-ors are used, so that the sequence is
+   * the same in compiled JavaScript as on the server.
+   * 
+   * @param seed
+   *          The current non-zero state of the generator.
+   * @return The next non-zero state of the generator.
+   */
+  private static int nextRandom(int seed) {
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+
+    return seed;
+  }
+
+  private static int nonZero(int seed) {
+    // A xorshift generator with a state of zero only ever produces zero.
+    return seed != 0 ? seed : 0x9E3779B9;
+  }
+
+  private static BlockModel copyBlock(BlockModel block) {
+    return block != null ? blockOf(block.getShape(), block.getId(), block.getOrientation()) : null;
+  }
+
+  private static BlockModel blockOf(BlockShape shape, int id, int orientation) {
+    if (shape == null) {
+      return null;
+    }
+    BlockModel block = new BlockModel();
+    block.reshape(shape, id);
+    block.setOrientation(orientation);
+
+    return block;
   }
 
   /**
@@ -127,8 +262,10 @@ public class BoardModel {
   public void initNextBlock() throws BlockOverflow {
     if (activeBlock != null)
       writeActiveBlock();
+    // The settled block is recycled as the new next block.
+    BlockModel settled = activeBlock;
     activeBlock = nextBlock;
-    nextBlock = generateNextBlock();
+    nextBlock = generateNextBlock(settled);
     initActiveBlockPosition();
   }
 
@@ -155,7 +292,7 @@ public class BoardModel {
       return 0;
     }
     else {
-      return board[row].getSquareValue(col);
+      return tiles[row * COL_NUM + col];
     }
   }
 
@@ -185,7 +322,7 @@ public class BoardModel {
     int retVal = 0;
 
     for (int i = 0; i < ROW_NUM; i++) {
-      if (board[i].isFull()) {
+      if (rowMasks[i] == FULL_ROW) {
         retVal += 1;
       }
     }
@@ -206,7 +343,13 @@ public class BoardModel {
    *          The value to be assigned to the square.
    */
   private void setSquare(int row, int col, int value) {
-    board[row].setSquare(col, value);
+    tiles[row * COL_NUM + col] = value;
+    if (value != NO_TILE) {
+      rowMasks[row] |= 1 << col;
+    }
+    else {
+      rowMasks[row] &= ~(1 << col);
+    }
   }
 
   /**
@@ -236,19 +379,185 @@ public class BoardModel {
     return activeBlockColumn;
   }
 
+  /**
+   * Set the active block and its position on this board.
+   * 
+   * @param block
+   *          The new active block.
+   * @param row
+   *          The row index of the active block.
+   * @param col
+   *          The column index of the active block.
+   */
+  public void setActiveBlock(BlockModel block, int row, int col) {
+    activeBlock = block;
+    activeBlockRow = row;
+    activeBlockColumn = col;
+  }
+
+  /**
+   * Place the active block of this board, reshaping it in place if it is now a different block.
+   * 
+   * @param code
+   *          The code of the type of the active block, as per {@link BlockModel#getTypeCode()}.
+   * @param id
+   *          The id of the active block, as per {@link BlockModel#getId()}.
+   * @param orientation
+   *          The orientation of the active block, as per {@link BlockModel#getOrientation()}.
+   * @param row
+   *          The row index of the active block.
+   * @param col
+   *          The column index of the active block.
+   */
+  public void placeActiveBlock(int code, int id, int orientation, int row, int col) {
+    if (activeBlock.getId() != id || activeBlock.getTypeCode() != code) {
+      activeBlock.reshape(BlockShape.of(code), id);
+    }
+    orientation %= activeBlock.getRotationTable().getOrientations();
+    if (activeBlock.getOrientation() != orientation) {
+      activeBlock.setOrientation(orientation);
+    }
+    activeBlockRow = row;
+    activeBlockColumn = col;
+  }
+
+  /**
+   * Reshape the next block of this board in place, if it is now a different block.
+   * 
+   * @param code
+   *          The code of the type of the next block, as per {@link BlockModel#getTypeCode()}.
+   * @param id
+   *          The id of the next block, as per {@link BlockModel#getId()}.
+   */
+  public void placeNextBlock(int code, int id) {
+    if (nextBlock.getId() != id || nextBlock.getTypeCode() != code) {
+      nextBlock.reshape(BlockShape.of(code), id);
+    }
+  }
+
+  /**
+   * Set the next block to become active on this board.
+   * 
+   * @param block
+   *          The next block.
+   */
+  public void setNextBlock(BlockModel block) {
+    nextBlock = block;
+  }
+
+  /**
+   * Get the code of the settled square at (row,col). The active block is not included.
+   * 
+   * @param row
+   *          The row index of a square on this board.
+   * @param col
+   *          The column index of a square on this board.
+   * 
+   * @return The code of the square, or {@link #NO_TILE} if the square is vacant.
+   */
+  public int getTile(int row, int col) {
+    return tiles[row * COL_NUM + col];
+  }
+
+  /**
+   * Set the code of the settled square at (row,col).
+   * 
+   * @param row
+   *          The row index of a square on this board.
+   * @param col
+   *          The column index of a square on this board.
+   * @param code
+   *          The code of the square, or {@link #NO_TILE} to vacate it.
+   */
+  public void setTile(int row, int col, int code) {
+    setSquare(row, col, code);
+  }
+
+  /**
+   * Get the occupancy of a row.
+   * 
+   * @param row
+   *          The row index of a row on this board.
+   * @return A mask in which bit j is set iff column j of the row is occupied.
+   */
+  int getRowMask(int row) {
+    return rowMasks[row];
+  }
+
+  int getPieceType() {
+    return pieceType;
+  }
+
+  int getPieceSeed() {
+    return pieceSeed;
+  }
+
+  int getPieceIndex() {
+    return pieceIndex;
+  }
+
+  int getSabotageSeed() {
+    return sabotageSeed;
+  }
+
+  /**
+   * Get a bit mask of the rows on this board which are full.
+   * 
+   * @return A mask in which bit i is set iff row i is full.
+   */
+  public int getFullRowMask() {
+    int mask = 0;
+    for (int i = 0; i < ROW_NUM; i++) {
+      if (rowMasks[i] == FULL_ROW) {
+        mask |= 1 << i;
+      }
+    }
+
+    return mask;
+  }
+
   /**
    * Check if the active block is in a valid position.
    */
   private boolean isValidPosition(int row, int col) {
-    boolean isMovable = true;
+    RotationTable table = activeBlock.getRotationTable();
+    if (table != null) {
+      return isValidPosition(row, col, table, activeBlock.getOrientation());
+    }
+
     for (SquareModel squareModel : activeBlock.getIterator()) {
-      if (getSquare(row + squareModel.getRow(), col + squareModel.getCol()) != NO_TILE) {
-        isMovable = false;
-        break;
+      if (!isVacant(row + squareModel.getRow(), col + squareModel.getCol())) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Check if the active block would be in a valid position in the given orientation, without
+   * changing the block.
+   */
+  private boolean isValidPosition(int row, int col, RotationTable table, int orientation) {
+    for (int i = 0; i < table.getSize(); i++) {
+      if (!isVacant(row + table.getRowOffset(orientation, i), col + table.getColOffset(orientation, i))) {
+        return false;
       }
     }
 
-    return isMovable;
+    return true;
+  }
+
+  /**
+   * Check if the active block may occupy a cell.
+   */
+  private boolean isVacant(int row, int col) {
+    // Beside or below the board is occupied, above the board is vacant.
+    if (col < 0 || col >= COL_NUM || row >= ROW_NUM) {
+      return false;
+    }
+
+    return row < 0 || (rowMasks[row] & (1 << col)) == 0;
   }
 
   /**
@@ -281,6 +590,16 @@ public class BoardModel {
    * Rotate the current active block if this is possible.
    */
   public void rotateActiveBlock() {
+    RotationTable table = activeBlock.getRotationTable();
+    if (table != null) {
+      // Check the next orientation before committing to it.
+      int next = table.next(activeBlock.getOrientation());
+      if (isValidPosition(activeBlockRow, activeBlockColumn, table, next)) {
+        activeBlock.setOrientation(next);
+      }
+      return;
+    }
+
     // Try rotating block.
     activeBlock.rotate();
 
@@ -303,17 +622,15 @@ public class BoardModel {
 
   /**
    * Get a list of models of the blocks which have settled on this BoardModel above any full rows.
+   * The returned model is reused by this board, and is only valid until the next call to this
+   * method, {@link #getFullRows()} or {@link #getAllSquares()}.
    */
   public BackgroundBlockModel getNonFullRows() {
-    BackgroundBlockModel retVal = new BackgroundBlockModel();
+    BackgroundBlockModel retVal = clearScratchBlock();
 
     for (int i = 0; i < ROW_NUM; i++) {
-      if (!board[i].isFull()) {
-        for (int j = 0; j < COL_NUM; j++) {
-          if (board[i].getSquareValue(j) != NO_TILE) {
-            retVal.addSquare(new SquareModel(i, j, board[i].getSquareValue(j)));
-          }
-        }
+      if (rowMasks[i] != FULL_ROW) {
+        addSquares(retVal, i);
       }
     }
 
@@ -324,39 +641,70 @@ public class BoardModel {
    * Clear any full rows.
    */
   public void clearFullRows() {
-    Row[] newBoard = new Row[ROW_NUM];
+    removeRows(getFullRowMask());
+  }
 
+  /**
+   * Remove rows from this board. Rows above removed rows are moved down, and empty rows are added
+   * at the top of the board.
+   * 
+   * @param mask
+   *          A mask in which bit i is set iff row i should be removed.
+   */
+  public void removeRows(int mask) {
     int i = ROW_NUM - 1, j = ROW_NUM - 1;
     while (i >= 0) {
-      if (!board[i].isFull()) {
-        newBoard[j--] = board[i--];
-      }
-      else {
-        i -= 1;
+      if ((mask & (1 << i)) == 0) {
+        moveRow(i, j--);
       }
+      i -= 1;
     }
 
-    // Fill the remaining space in newBoard with clear rows.
+    // Fill the remaining space with clear rows.
     while (j >= 0) {
-      newBoard[j--] = new Row(COL_NUM);
+      clearRow(j--);
+    }
+  }
+
+  private void moveRow(int from, int to) {
+    if (from != to) {
+      rowMasks[to] = rowMasks[from];
+      System.arraycopy(tiles, from * COL_NUM, tiles, to * COL_NUM, COL_NUM);
     }
+  }
 
-    board = newBoard;
+  private void clearRow(int row) {
+    rowMasks[row] = 0;
+    for (int j = row * COL_NUM; j < (row + 1) * COL_NUM; j++) {
+      tiles[j] = NO_TILE;
+    }
+  }
+
+  /**
+   * Add a SquareModel for every occupied square in a row to a BlockModel.
+   */
+  private void addSquares(BlockModel block, int row) {
+    int mask = rowMasks[row];
+    for (int j = 0; mask != 0; j++, mask >>>= 1) {
+      if ((mask & 1) != 0) {
+        block.addSquare(row, j, tiles[row * COL_NUM + j]);
+      }
+    }
   }
 
   /**
    * Get a BlockModel of all the squares in currently full rows.
    * 
-   * @return A model of squares in full rows.
+   * @return A model of squares in full rows. The model is reused by this board, and is only valid
+   *         until the next call to this method, {@link #getNonFullRows()} or
+   *         {@link #getAllSquares()}.
    */
   public BlockModel getFullRows() {
-    BlockModel retVal = new BackgroundBlockModel();
+    BlockModel retVal = clearScratchBlock();
 
     for (int i = 0; i < ROW_NUM; i++) {
-      if (board[i].isFull()) {
-        for (int j = 0; j < COL_NUM; j++) {
-          retVal.addSquare(new SquareModel(i, j, board[i].getSquareValue(j)));
-        }
+      if (rowMasks[i] == FULL_ROW) {
+        addSquares(retVal, i);
       }
     }
 
@@ -484,55 +832,149 @@ public class BoardModel {
    * 
    */
   public void addRows() {
-    Row[] newBoard = new Row[ROW_NUM];
-    for (int i = ROW_NUM - 1, j = i - rowsToAdd; j >= 0; i--, j--) {
-      newBoard[j] = board[i];
+    // Rows pushed off the top of the board are lost.
+    for (int i = 0; i + rowsToAdd < ROW_NUM; i++) {
+      moveRow(i + rowsToAdd, i);
     }
-    for (int i = ROW_NUM - rowsToAdd; i < ROW_NUM; i++) {
-      newBoard[i] = generateSabotageRow();
+    for (int i = Math.max(0, ROW_NUM - rowsToAdd); i < ROW_NUM; i++) {
+      generateSabotageRow(i);
     }
-    board = newBoard;
     rowsToAdd = 0;
   }
 
-  private Row generateSabotageRow() {
-    Row row = new Row(COL_NUM);
-    int empty = (new Random()).nextInt(COL_NUM);
+  private void generateSabotageRow(int row) {
+    sabotageSeed = nextRandom(sabotageSeed);
+    int empty = (sabotageSeed >>> 1) % COL_NUM;
 
     for (int i = 0; i < COL_NUM; i++) {
       if (i != empty) {
-        row.setSquare(i, 1337);
+        setSquare(row, i, 1337);
       }
       else {
-        row.setSquare(i, NO_TILE);
+        setSquare(row, i, NO_TILE);
       }
     }
+  }
+
+  /**
+   * Compute a checksum of this board, including the active and next blocks and the state of its
+   * generators. Boards in the same state have the same checksum.
+   * 
+   * @return A checksum of this board.
+   */
+  public int checksum() {
+    int hash = mixHash(mixHash(pieceSeed, pieceIndex), sabotageSeed);
+    for (int i = 0; i < tiles.length; i++) {
+      hash = mixHash(hash, tiles[i]);
+    }
+    hash = mixHash(hash, activeBlock.getTypeCode());
+    hash = mixHash(hash, activeBlock.getOrientation());
+    hash = mixHash(hash, activeBlockRow);
+    hash = mixHash(hash, activeBlockColumn);
+    hash = mixHash(hash, nextBlock.getTypeCode());
+
+    return hash;
+  }
 
-    return row;
+  private static int mixHash(int hash, int value) {
+    // Equivalent to hash * 31 + value, without a multiplication that loses precision in JavaScript.
+    return (hash << 5) - hash + value;
   }
 
   /**
    * Get a BlockModel of all the non-empty squares on the board.
    * 
-   * @return All the non-empty squares on the board.
+   * @return All the non-empty squares on the board. The model is reused by this board, and is only
+   *         valid until the next call to this method, {@link #getNonFullRows()} or
+   *         {@link #getFullRows()}.
    */
   public BlockModel getAllSquares() {
-    BlockModel retVal = new BlockModel();
+    BlockModel retVal = clearScratchBlock();
 
     for (int i = 0; i < ROW_NUM; i++) {
-      for (int j = 0; j < COL_NUM; j++) {
-        if (board[i].getSquareValue(j) != NO_TILE) {
-          retVal.addSquare(new SquareModel(i, j, board[i].getSquareValue(j)));
-        }
-      }
+      addSquares(retVal, i);
     }
     for (SquareModel squareModel : activeBlock.getIterator()) {
       int rowIndex = getActiveBlockRow() + squareModel.getRow();
       int colIndex = getActiveBlockCol() + squareModel.getCol();
       if (rowIndex >= 0 && rowIndex < ROW_NUM && colIndex >= 0 && colIndex < COL_NUM)
-        retVal.addSquare(new SquareModel(rowIndex, colIndex, squareModel.getCode()));
+        retVal.addSquare(rowIndex, colIndex, squareModel.getCode());
     }
 
     return retVal;
   }
+
+  private BackgroundBlockModel clearScratchBlock() {
+    if (scratchBlock == null) {
+      scratchBlock = new BackgroundBlockModel();
+    }
+    scratchBlock.clearSquares();
+
+    return scratchBlock;
+  }
+
+  /**
+   * Visit every non-empty square on the board, including the squares of the active block. Unlike
+   * {@link #getAllSquares()}, this does not create any objects.
+   * 
+   * @param visitor
+   *          The visitor to call for each square.
+   */
+  public void visitAllSquares(SquareVisitor visitor) {
+    for (int i = 0; i < ROW_NUM; i++) {
+      visitRow(i, visitor);
+    }
+    visitActiveBlock(visitor);
+  }
+
+  /**
+   * Visit every non-empty square in rows which are not full, excluding the active block. Unlike
+   * {@link #getNonFullRows()}, this does not create any objects.
+   * 
+   * @param visitor
+   *          The visitor to call for each square.
+   */
+  public void visitNonFullRows(SquareVisitor visitor) {
+    for (int i = 0; i < ROW_NUM; i++) {
+      if (rowMasks[i] != FULL_ROW) {
+        visitRow(i, visitor);
+      }
+    }
+  }
+
+  private void visitRow(int row, SquareVisitor visitor) {
+    int mask = rowMasks[row];
+    for (int j = 0; mask != 0; j++, mask >>>= 1) {
+      if ((mask & 1) != 0) {
+        visitor.visit(row, j, tiles[row * COL_NUM + j]);
+      }
+    }
+  }
+
+  /**
+   * Visit the squares of the active block which are on the board.
+   */
+  private void visitActiveBlock(SquareVisitor visitor) {
+    RotationTable table = activeBlock.getRotationTable();
+    if (table != null) {
+      int orientation = activeBlock.getOrientation();
+      int code = activeBlock.getTypeCode();
+      for (int i = 0; i < table.getSize(); i++) {
+        visitOnBoard(activeBlockRow + table.getRowOffset(orientation, i),
+                activeBlockColumn + table.getColOffset(orientation, i), code, visitor);
+      }
+    }
+    else {
+      for (SquareModel squareModel : activeBlock.getIterator()) {
+        visitOnBoard(activeBlockRow + squareModel.getRow(), activeBlockColumn + squareModel.getCol(),
+                squareModel.getCode(), visitor);
+      }
+    }
+  }
+
+  private void visitOnBoard(int row, int col, int code, SquareVisitor visitor) {
+    if (row >= 0 && row < ROW_NUM && col >= 0 && col < COL_NUM) {
+      visitor.visit(row, col, code);
+    }
+  }
 }
@@ -0,0 +1,355 @@
+package demo.client.shared.game.model;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+/**
+ * The rules of Block Drop for a single board, advanced one step at a time from player input. The
+ * same code runs on the client (to play) and on the server (to decide clears, scores and sabotage),
+ * so a simulation given the same seed and inputs always reaches the same state.
+ * 
+ * An input is a single integer packed by {@link #packInput(int, int, int, int)}, describing what the
+ * player did during one step of the game loop.
+ */
+@Portable
+public class BoardSimulation {
+
+  /** Input flag: rotate the active block. */
+  public static final int ROTATE = 1;
+  /** Input flag: drop the active block as far as it will go. */
+  public static final int DROP = 2;
+  /** Input flag: move the active block down one row, regardless of gravity. */
+  public static final int FAST = 4;
+
+  /** The number of steps for the active block to fall one row under gravity. */
+  public static final int DROP_INCREMENT = 16;
+
+  private BoardModel model;
+  /** The number of steps taken since this simulation began. */
+  private int step;
+  /** A counter of steps since the active block last fell under gravity. */
+  private int gravityCounter;
+  /** The number of times the player has restarted after losing in this game. */
+  private int life;
+  /** The number of times the server has corrected this simulation during the current life. */
+  private int epoch;
+  private boolean lost;
+  /** The last snapshot taken of the board, whose unchanged rows are shared by the next snapshot. */
+  private transient BoardSnapshot snapshot;
+
+  /**
+   * A default no-arg constructor for proxying.
+   */
+  public BoardSimulation() {
+  }
+
+  /**
+   * Create a BoardSimulation for a player in a game, with its own sequencer of the game's blocks.
+   * 
+   * @param gameSeed
+   *          The seed of the game, as per {@link demo.client.shared.meta.GameRoom#getSeed()}.
+   * @param playerId
+   *          The id of the player whose board this is.
+   * @param life
+   *          The number of times the player has restarted in this game.
+   */
+  public BoardSimulation(int gameSeed, int playerId, int life) {
+    this(PieceSequencer.create(PieceSequencer.BAG, gameSeed), gameSeed, playerId, life);
+  }
+
+  /**
+   * Create a BoardSimulation for a player in a game, dealt blocks by a sequencer shared with the
+   * other boards in the game.
+   * 
+   * @param pieces
+   *          The game's sequencer, seeded with the seed of the game.
+   * @param gameSeed
+   *          The seed of the game, as per {@link demo.client.shared.meta.GameRoom#getSeed()}.
+   * @param playerId
+   *          The id of the player whose board this is.
+   * @param life
+   *          The number of times the player has restarted in this game.
+   */
+  public BoardSimulation(PieceSequencer pieces, int gameSeed, int playerId, int life) {
+    this.model = new BoardModel(pieces, boardSeed(gameSeed, playerId, life));
+    this.life = life;
+  }
+
+  /**
+   * Create a BoardSimulation of an unseeded board, for boards that are never checked by the server.
+   * 
+   * @return A new simulation with a randomly generated board.
+   */
+  public static BoardSimulation unseeded() {
+    BoardSimulation retVal = new BoardSimulation();
+    retVal.model = new BoardModel();
+
+    return retVal;
+  }
+
+  /**
+   * Create a copy of another BoardSimulation. The copy shares no mutable state with the original.
+   * 
+   * @param other
+   *          The simulation to copy.
+   */
+  public BoardSimulation(BoardSimulation other) {
+    model = new BoardModel(other.model);
+    step = other.step;
+    gravityCounter = other.gravityCounter;
+    life = other.life;
+    epoch = other.epoch;
+    lost = other.lost;
+    // Snapshots are immutable, so the copy can share rows with the original's.
+    snapshot = other.snapshot;
+  }
+
+  /**
+   * Derive the seed of a player's board. Every player, and every life of a player, gets a different
+   * sequence of sabotage rows. Blocks are dealt to every board from the game's sequence.
+   */
+  private static int boardSeed(int gameSeed, int playerId, int life) {
+    int seed = gameSeed ^ (playerId << 16 | playerId >>> 16) ^ (life << 8);
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+
+    return seed ^ seed << 5;
+  }
+
+  /**
+   * Pack one step of player input into an integer.
+   * 
+   * @param flags
+   *          Any of {@link #ROTATE}, {@link #DROP} and {@link #FAST}, or'ed together.
+   * @param colMove
+   *          The number of columns to move the active block (right is positive), between -128 and
+   *          127.
+   * @param rowMove
+   *          The number of rows to move the active block down regardless of gravity, between 0 and
+   *          255.
+   * @param rowsToAdd
+   *          The number of sabotage rows to add to the board in this step instead of moving, between
+   *          0 and 255.
+   * @return The packed input.
+   */
+  public static int packInput(int flags, int colMove, int rowMove, int rowsToAdd) {
+    return (flags & 0xFF) | ((colMove & 0xFF) << 8) | ((rowMove & 0xFF) << 16) | ((rowsToAdd & 0xFF) << 24);
+  }
+
+  /**
+   * Get the flags of a packed input.
+   * 
+   * @param input
+   *          An input packed by {@link #packInput(int, int, int, int)}.
+   * @return The flags of the input.
+   */
+  public static int inputFlags(int input) {
+    return input & 0xFF;
+  }
+
+  /**
+   * Get the column movement of a packed input.
+   * 
+   * @param input
+   *          An input packed by {@link #packInput(int, int, int, int)}.
+   * @return The number of columns to move (right is positive).
+   */
+  public static int inputColMove(int input) {
+    // Sign extend the second byte.
+    return (input << 16) >> 24;
+  }
+
+  /**
+   * Get the row movement of a packed input.
+   * 
+   * @param input
+   *          An input packed by {@link #packInput(int, int, int, int)}.
+   * @return The number of rows to move down regardless of gravity.
+   */
+  public static int inputRowMove(int input) {
+    return (input >>> 16) & 0xFF;
+  }
+
+  /**
+   * Get the number of sabotage rows added by a packed input.
+   * 
+   * @param input
+   *          An input packed by {@link #packInput(int, int, int, int)}.
+   * @return The number of sabotage rows to add.
+   */
+  public static int inputRowsToAdd(int input) {
+    return input >>> 24;
+  }
+
+  /**
+   * Replace the number of sabotage rows added by a packed input.
+   * 
+   * @param input
+   *          An input packed by {@link #packInput(int, int, int, int)}.
+   * @param rowsToAdd
+   *          The new number of sabotage rows to add, between 0 and 255.
+   * @return The modified input.
+   */
+  public static int withRowsToAdd(int input, int rowsToAdd) {
+    return (input & 0xFFFFFF) | ((rowsToAdd & 0xFF) << 24);
+  }
+
+  /**
+   * Advance this simulation by one step. Full rows are left on the board, to be removed by
+   * {@link #clearFullRows()}.
+   * 
+   * @param input
+   *          The player's input during this step, packed by {@link #packInput(int, int, int, int)}.
+   * @return True iff the active block moved during this step.
+   */
+  public boolean step(int input) {
+    step += 1;
+
+    // Adding sabotage rows takes a whole step.
+    int rowsToAdd = inputRowsToAdd(input);
+    if (rowsToAdd > 0) {
+      model.setRowsToAdd(rowsToAdd);
+      model.addRows();
+      return false;
+    }
+
+    int flags = inputFlags(input);
+    int colMove = inputColMove(input);
+    if ((flags & DROP) != 0) {
+      colMove = 0;
+      model.setPendingRowMove(model.getDropDistance());
+    }
+    else {
+      if ((flags & ROTATE) != 0) {
+        model.rotateActiveBlock();
+      }
+      if ((flags & FAST) != 0) {
+        model.setPendingRowMove(1);
+      }
+      else if (inputRowMove(input) > 0) {
+        model.setPendingRowMove(inputRowMove(input));
+      }
+      else {
+        // Drop by one row every time counter hits DROP_INCREMENT.
+        model.setPendingRowMove(gravityCounter == DROP_INCREMENT ? 1 : 0);
+      }
+    }
+
+    // Attempt to move model.
+    model.setPendingColMove(colMove);
+    boolean moved = model.moveActiveBlock(colMove != 0);
+    // If that didn't work, ignore the colMove (so that the block may still drop).
+    if (!moved && colMove != 0) {
+      moved = model.moveActiveBlock(false);
+    }
+
+    // If the block could not drop, start a new block.
+    if (!moved && model.getPendingRowMove() > 0) {
+      try {
+        model.initNextBlock();
+      } catch (BlockOverflow e) {
+        lost = true;
+      }
+    }
+
+    model.setPendingRowMove(0);
+    model.setPendingColMove(0);
+    gravityCounter = gravityCounter == DROP_INCREMENT ? 0 : gravityCounter + 1;
+
+    return moved;
+  }
+
+  /**
+   * Remove any full rows from the board.
+   * 
+   * @return The number of rows removed.
+   */
+  public int clearFullRows() {
+    int numFullRows = model.numFullRows();
+    if (numFullRows > 0) {
+      model.clearFullRows();
+    }
+
+    return numFullRows;
+  }
+
+  /**
+   * Compute a checksum of this simulation, for detecting when two copies have diverged.
+   * 
+   * @return A checksum of the board and the step counters.
+   */
+  public int checksum() {
+    int hash = model.checksum();
+    hash = (hash << 5) - hash + step;
+    hash = (hash << 5) - hash + gravityCounter;
+
+    return hash;
+  }
+
+  /**
+   * Get the board being simulated.
+   * 
+   * @return The board being simulated.
+   */
+  public BoardModel getModel() {
+    return model;
+  }
+
+  /**
+   * Take an immutable snapshot of the board being simulated, for other threads or later frames to
+   * read while the simulation continues. This should be called at most once per tick, after the
+   * tick's inputs have been applied.
+   * 
+   * @return A snapshot of the current state of the board.
+   */
+  public BoardSnapshot snapshot() {
+    snapshot = model.snapshot(snapshot);
+
+    return snapshot;
+  }
+
+  /**
+   * Get the number of steps taken.
+   * 
+   * @return The number of steps taken since this simulation began.
+   */
+  public int getStep() {
+    return step;
+  }
+
+  /**
+   * Get the life of this simulation.
+   * 
+   * @return The number of times the player restarted in this game before this simulation began.
+   */
+  public int getLife() {
+    return life;
+  }
+
+  /**
+   * Get the correction epoch of this simulation.
+   * 
+   * @return The number of times this simulation has been corrected by the server.
+   */
+  public int getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * Set the correction epoch of this simulation.
+   * 
+   * @param epoch
+   *          The number of times this simulation has been corrected by the server.
+   */
+  public void setEpoch(int epoch) {
+    this.epoch = epoch;
+  }
+
+  /**
+   * Check if the game has been lost.
+   * 
+   * @return True iff a block could not be placed entirely on the board.
+   */
+  public boolean isLost() {
+    return lost;
+  }
+}
@@ -0,0 +1,319 @@
+package demo.client.shared.game.model;
+
+/**
+ * An immutable copy of the state of a {@link BoardModel board} at one moment.
+ * 
+ * Snapshots are {@link BoardModel#snapshot(BoardSnapshot) taken} by the thread simulating a board,
+ * and can then be read by any number of other threads (renderers, network encoders, spectators)
+ * without locks or further copying. Each row is held in its own array, and a snapshot taken from an
+ * earlier one shares the arrays of the rows that have not changed since, so that taking a snapshot
+ * every tick copies little more than the rows the active block has settled into.
+ */
+public final class BoardSnapshot {
+
+  /** Shared by every empty row of every snapshot. */
+  private static final int[] EMPTY_ROW = new int[BoardModel.COL_NUM];
+
+  /** The code of every square, indexed by [row][col]. Never modified after construction. */
+  private final int[][] rows;
+  /** The occupancy of each row, with bit j of a row set iff column j is occupied. */
+  private final int[] rowMasks;
+  private final int activeCode;
+  private final int activeOrientation;
+  private final int activeId;
+  private final int activeRow;
+  private final int activeCol;
+  private final int nextCode;
+  private final int nextId;
+  private final boolean fast;
+  private final boolean drop;
+  private final int pendingRowMove;
+  private final int pendingColMove;
+  private final int rowsToAdd;
+  private final int pieceType;
+  private final int pieceSeed;
+  private final int pieceIndex;
+  private final int sabotageSeed;
+  private final int checksum;
+
+  /**
+   * Take a snapshot of a board. This must be called by the thread that modifies the board.
+   * 
+   * @param board
+   *          The board to copy.
+   * @param previous
+   *          An earlier snapshot of the same board, whose unchanged rows are shared with the new
+   *          snapshot, or {@code null}.
+   */
+  BoardSnapshot(BoardModel board, BoardSnapshot previous) {
+    rows = new int[BoardModel.ROW_NUM][];
+    rowMasks = new int[BoardModel.ROW_NUM];
+    for (int i = 0; i < BoardModel.ROW_NUM; i++) {
+      rowMasks[i] = board.getRowMask(i);
+      if (rowMasks[i] == 0) {
+        rows[i] = EMPTY_ROW;
+      }
+      else if (previous != null && previous.rowMasks[i] == rowMasks[i] && sameRow(board, i, previous.rows[i])) {
+        rows[i] = previous.rows[i];
+      }
+      else {
+        rows[i] = copyRow(board, i);
+      }
+    }
+
+    BlockModel active = board.getActiveBlock();
+    activeCode = active.getTypeCode();
+    activeOrientation = active.getOrientation();
+    activeId = active.getId();
+    activeRow = board.getActiveBlockRow();
+    activeCol = board.getActiveBlockCol();
+    nextCode = board.getNextBlock().getTypeCode();
+    nextId = board.getNextBlock().getId();
+    fast = board.isFast();
+    drop = board.isDropping();
+    pendingRowMove = board.getPendingRowMove();
+    pendingColMove = board.getPendingColMove();
+    rowsToAdd = board.getRowsToAdd();
+    pieceType = board.getPieceType();
+    pieceSeed = board.getPieceSeed();
+    pieceIndex = board.getPieceIndex();
+    sabotageSeed = board.getSabotageSeed();
+    checksum = board.checksum();
+  }
+
+  private static boolean sameRow(BoardModel board, int row, int[] codes) {
+    for (int j = 0; j < BoardModel.COL_NUM; j++) {
+      if (board.getTile(row, j) != codes[j]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static int[] copyRow(BoardModel board, int row) {
+    int[] codes = new int[BoardModel.COL_NUM];
+    for (int j = 0; j < BoardModel.COL_NUM; j++) {
+      codes[j] = board.getTile(row, j);
+    }
+
+    return codes;
+  }
+
+  /**
+   * Get the code of the settled square at (row,col). The active block is not included.
+   * 
+   * @param row
+   *          The row index of a square on the board.
+   * @param col
+   *          The column index of a square on the board.
+   * @return The code of the square, or {@link BoardModel#NO_TILE} if the square is vacant.
+   */
+  public int getTile(int row, int col) {
+    return rows[row][col];
+  }
+
+  /**
+   * Get the occupancy of a row.
+   * 
+   * @param row
+   *          The row index of a row on the board.
+   * @return A mask in which bit j is set iff column j of the row is occupied.
+   */
+  public int getRowMask(int row) {
+    return rowMasks[row];
+  }
+
+  /**
+   * Check if a row is unchanged between this snapshot and another snapshot of the same board,
+   * without comparing its squares.
+   * 
+   * @param other
+   *          Another snapshot.
+   * @param row
+   *          The row index of a row on the board.
+   * @return True if the row is shared by both snapshots (and so certainly unchanged). False if the
+   *         row may have changed.
+   */
+  public boolean sharesRow(BoardSnapshot other, int row) {
+    return rows[row] == other.rows[row];
+  }
+
+  /**
+   * Get the number of rows on the board which are full.
+   * 
+   * @return The number of rows on the board which are full.
+   */
+  public int numFullRows() {
+    return Integer.bitCount(getFullRowMask());
+  }
+
+  /**
+   * Get a bit mask of the rows on the board which are full.
+   * 
+   * @return A mask in which bit i is set iff row i is full.
+   */
+  public int getFullRowMask() {
+    int mask = 0;
+    for (int i = 0; i < BoardModel.ROW_NUM; i++) {
+      if (rowMasks[i] == BoardModel.FULL_ROW) {
+        mask |= 1 << i;
+      }
+    }
+
+    return mask;
+  }
+
+  /**
+   * Visit every non-empty square on the board, including the squares of the active block.
+   * 
+   * @param visitor
+   *          The visitor to call for each square.
+   */
+  public void visitAllSquares(SquareVisitor visitor) {
+    for (int i = 0; i < BoardModel.ROW_NUM; i++) {
+      visitRow(i, visitor);
+    }
+
+    BlockShape shape = BlockShape.of(activeCode);
+    RotationTable table = shape.getRotations();
+    for (int i = 0; i < table.getSize(); i++) {
+      int row = activeRow + table.getRowOffset(activeOrientation, i);
+      int col = activeCol + table.getColOffset(activeOrientation, i);
+      if (row >= 0 && row < BoardModel.ROW_NUM && col >= 0 && col < BoardModel.COL_NUM) {
+        visitor.visit(row, col, activeCode);
+      }
+    }
+  }
+
+  /**
+   * Visit every non-empty square in rows which are not full, excluding the active block.
+   * 
+   * @param visitor
+   *          The visitor to call for each square.
+   */
+  public void visitNonFullRows(SquareVisitor visitor) {
+    for (int i = 0; i < BoardModel.ROW_NUM; i++) {
+      if (rowMasks[i] != BoardModel.FULL_ROW) {
+        visitRow(i, visitor);
+      }
+    }
+  }
+
+  private void visitRow(int row, SquareVisitor visitor) {
+    int mask = rowMasks[row];
+    for (int j = 0; mask != 0; j++, mask >>>= 1) {
+      if ((mask & 1) != 0) {
+        visitor.visit(row, j, rows[row][j]);
+      }
+    }
+  }
+
+  /**
+   * Get the code of the active block.
+   * 
+   * @return The code of the active block, as per {@link BlockModel#getTypeCode()}.
+   */
+  public int getActiveCode() {
+    return activeCode;
+  }
+
+  /**
+   * Get the orientation of the active block.
+   * 
+   * @return The orientation of the active block, as per {@link BlockModel#getOrientation()}.
+   */
+  public int getActiveOrientation() {
+    return activeOrientation;
+  }
+
+  /**
+   * Get the id of the active block.
+   * 
+   * @return The id of the active block, as per {@link BlockModel#getId()}.
+   */
+  public int getActiveId() {
+    return activeId;
+  }
+
+  /**
+   * Get the row position of the active block.
+   * 
+   * @return The row index of the active block.
+   */
+  public int getActiveRow() {
+    return activeRow;
+  }
+
+  /**
+   * Get the column position of the active block.
+   * 
+   * @return The column index of the active block.
+   */
+  public int getActiveCol() {
+    return activeCol;
+  }
+
+  /**
+   * Get the code of the next block.
+   * 
+   * @return The code of the next block to become active, as per {@link BlockModel#getTypeCode()}.
+   */
+  public int getNextCode() {
+    return nextCode;
+  }
+
+  /**
+   * Get the id of the next block.
+   * 
+   * @return The id of the next block to become active, as per {@link BlockModel#getId()}.
+   */
+  public int getNextId() {
+    return nextId;
+  }
+
+  /**
+   * Get the checksum of the board.
+   * 
+   * @return The {@link BoardModel#checksum() checksum} of the board when this snapshot was taken.
+   */
+  public int getChecksum() {
+    return checksum;
+  }
+
+  boolean isFast() {
+    return fast;
+  }
+
+  boolean isDropping() {
+    return drop;
+  }
+
+  int getPendingRowMove() {
+    return pendingRowMove;
+  }
+
+  int getPendingColMove() {
+    return pendingColMove;
+  }
+
+  int getRowsToAdd() {
+    return rowsToAdd;
+  }
+
+  int getPieceType() {
+    return pieceType;
+  }
+
+  int getPieceSeed() {
+    return pieceSeed;
+  }
+
+  int getPieceIndex() {
+    return pieceIndex;
+  }
+
+  int getSabotageSeed() {
+    return sabotageSeed;
+  }
+}
@@ -3,22 +3,22 @@ package demo.client.shared.game.model;
 /**
  * A long straight block.
  */
-public class LongBlockModel extends ToggledBlockModel {
+public class LongBlockModel extends BlockModel {
 
   public static final int CODE = 2;
 
+  /** The square offsets of every orientation of this type of block. */
+  static final RotationTable ROTATIONS = new RotationTable(new int[][] { new int[] { -1, 0 }, // Top square.
+        new int[] { 0, 0 }, // Anchor of block.
+        new int[] { 1, 0 }, // Second-from-bottom square.
+        new int[] { 2, 0 } // Bottom square.
+      }, 2);
+
   /**
    * Create a LongBlockModel instance.
    */
   public LongBlockModel() {
-    // Assign unique id.
-    super(generateId());
-
-    setOffsets(new int[][] { new int[] { -1, 0 }, // Top square.
-        new int[] { 0, 0 }, // Anchor of block.
-        new int[] { 1, 0 }, // Second-from-bottom square.
-        new int[] { 2, 0 } // Bottom square.
-            }, getCode());
+    setOffsets(ROTATIONS, getCode());
   }
   
   /**
@@ -29,9 +29,4 @@ public class LongBlockModel extends ToggledBlockModel {
   public static int getCode() {
     return CODE;
   }
-
-  @Override
-  public int getStartingRow() {
-    return -3;
-  }
 }
@@ -0,0 +1,147 @@
+package demo.client.shared.game.model;
+
+/**
+ * Generates the sequence of blocks dealt to a board, from a seed.
+ * 
+ * The sequence is a pure function of the type of sequencer and its seed, so a sequencer can be
+ * shared by every board in a game (each board keeping its own position in the sequence), and the
+ * server and clients agree on every block without exchanging them. Blocks are generated ahead into
+ * a buffer of {@link BlockModel#getTypeCode() type codes}, which is only ever appended to.
+ * 
+ * This class is not thread safe.
+ */
+public abstract class PieceSequencer {
+
+  /** The type of sequencer choosing every block independently at random. */
+  public static final int RANDOM = 0;
+  /** The type of sequencer dealing every block once from each shuffled bag of seven. */
+  public static final int BAG = 1;
+
+  /** The codes of the blocks that may be generated. */
+  protected static final int[] CODES = new int[] { LBlockModel.CODE, ReverseLBlockModel.CODE, TBlockModel.CODE,
+      SBlockModel.CODE, ZBlockModel.CODE, LongBlockModel.CODE, SquareBlockModel.CODE };
+
+  private final int seed;
+  /** The state of the xorshift generator. Never zero. */
+  private int state;
+  private int[] buffer = new int[CODES.length * 4];
+  /** The number of blocks generated into the buffer. */
+  private int size = 0;
+
+  /**
+   * Create a PieceSequencer.
+   * 
+   * @param seed
+   *          The seed of the sequence.
+   */
+  protected PieceSequencer(int seed) {
+    this.seed = seed;
+    // A xorshift generator with a state of zero only ever produces zero.
+    this.state = seed != 0 ? seed : 0x9E3779B9;
+  }
+
+  /**
+   * Create a sequencer of the given type.
+   * 
+   * @param type
+   *          Either {@link #RANDOM} or {@link #BAG}.
+   * @param seed
+   *          The seed of the sequence.
+   * @return A new sequencer at the start of its sequence.
+   */
+  public static PieceSequencer create(int type, int seed) {
+    switch (type) {
+    case BAG:
+      return new BagPieceSequencer(seed);
+    case RANDOM:
+    default:
+      return new RandomPieceSequencer(seed);
+    }
+  }
+
+  /**
+   * Get the type of this sequencer.
+   * 
+   * @return The type of this sequencer, as accepted by {@link #create(int, int)}.
+   */
+  public abstract int getType();
+
+  /**
+   * Get the seed of this sequencer.
+   * 
+   * @return The seed of the sequence.
+   */
+  public int getSeed() {
+    return seed;
+  }
+
+  /**
+   * Get a block in the sequence.
+   * 
+   * @param index
+   *          The position of the block in the sequence, starting at 0.
+   * @return The type code of the block, as per {@link BlockModel#getTypeCode()}.
+   */
+  public int pieceAt(int index) {
+    if (index >= size) {
+      pregenerate(index + 1);
+    }
+
+    return buffer[index];
+  }
+
+  /**
+   * Generate blocks ahead of time, so that the first blocks of the sequence can be looked up without
+   * generating any more.
+   * 
+   * @param count
+   *          The number of blocks to have generated.
+   */
+  public void pregenerate(int count) {
+    while (size < count) {
+      if (size + CODES.length > buffer.length) {
+        int[] grown = new int[buffer.length * 2];
+        System.arraycopy(buffer, 0, grown, 0, size);
+        buffer = grown;
+      }
+      size += generate(buffer, size);
+    }
+  }
+
+  /**
+   * Get the number of blocks generated so far.
+   * 
+   * @return The number of blocks that can be looked up without generating any more.
+   */
+  public int getGeneratedCount() {
+    return size;
+  }
+
+  /**
+   * Generate the next blocks in the sequence.
+   * 
+   * @param buffer
+   *          The buffer of type codes to write to. There is room for at least {@code CODES.length}
+   *          blocks.
+   * @param offset
+   *          The index in the buffer of the first block to generate.
+   * @return The number of blocks generated, between 1 and {@code CODES.length}.
+   */
+  protected abstract int generate(int[] buffer, int offset);
+
+  /**
+   * Draw a random number. Only shifts and exclusive-ors are used, so that the sequence is the same in
+   * compiled JavaScript as on the server.
+   * 
+   * @param bound
+   *          The (positive) number of possible values.
+   * @return A number between 0 (inclusive) and bound (exclusive).
+   */
+  protected int nextInt(int bound) {
+    state ^= state << 13;
+    state ^= state >>> 17;
+    state ^= state << 5;
+
+    return (state >>> 1) % bound;
+  }
+}
@@ -0,0 +1,30 @@
+package demo.client.shared.game.model;
+
+/**
+ * A {@link PieceSequencer} choosing every block independently, with equal chances for each type.
+ * Long runs without a given type of block are possible.
+ */
+public class RandomPieceSequencer extends PieceSequencer {
+
+  /**
+   * Create a RandomPieceSequencer.
+   * 
+   * @param seed
+   *          The seed of the sequence.
+   */
+  public RandomPieceSequencer(int seed) {
+    super(seed);
+  }
+
+  @Override
+  public int getType() {
+    return RANDOM;
+  }
+
+  @Override
+  protected int generate(int[] buffer, int offset) {
+    buffer[offset] = CODES[nextInt(CODES.length)];
+
+    return 1;
+  }
+}
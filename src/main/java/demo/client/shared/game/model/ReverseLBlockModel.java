@@ -7,19 +7,18 @@ public class ReverseLBlockModel extends BlockModel {
 
   public static final int CODE = 3;
 
+  /** The square offsets of every orientation of this type of block. */
+  static final RotationTable ROTATIONS = new RotationTable(new int[][] { new int[] { -1, 0 }, // The top of the L
+        new int[] { 0, 0 }, // The middle of the L
+        new int[] { 1, 0 }, // The corner of the L
+        new int[] { 1, -1 } // The tail of the L
+      }, 4);
+
   /**
    * Create a ReverseLBlockModel instance.
    */
   public ReverseLBlockModel() {
-    // Assign unique id.
-    super(generateId());
-
-    // Assign square offsets.
-    setOffsets(new int[][] { new int[] { -1, 0 }, // The top of the L
-        new int[] { 0, 0 }, // The middle of the L
-        new int[] { 1, 0 }, // The corner of the L
-        new int[] { 1, -1 } // The tail of the L
-            }, getCode());
+    setOffsets(ROTATIONS, getCode());
   }
 
   /**
@@ -0,0 +1,109 @@
+package demo.client.shared.game.model;
+
+/**
+ * An immutable table of the square offsets of a type of {@link BlockModel block} in each of its
+ * orientations. Orientation i is the initial orientation rotated i times by 90 degrees clockwise.
+ * Tables are computed once per type of block, so that candidate orientations can be checked against
+ * a {@link BoardModel board} without modifying the block.
+ */
+public final class RotationTable {
+
+  /** Row offsets, indexed by [orientation][square]. */
+  private final int[][] rowOffsets;
+  /** Column offsets, indexed by [orientation][square]. */
+  private final int[][] colOffsets;
+
+  /**
+   * Create a RotationTable.
+   * 
+   * @param offsets
+   *          An array of integer pairs, representing the row and column offsets of each square in
+   *          the initial orientation.
+   * @param orientations
+   *          The number of distinct orientations (1, 2, or 4). Rotating from the last orientation
+   *          returns to the initial orientation.
+   */
+  public RotationTable(int[][] offsets, int orientations) {
+    rowOffsets = new int[orientations][offsets.length];
+    colOffsets = new int[orientations][offsets.length];
+
+    for (int i = 0; i < offsets.length; i++) {
+      int row = offsets[i][0];
+      int col = offsets[i][1];
+      for (int j = 0; j < orientations; j++) {
+        rowOffsets[j][i] = row;
+        colOffsets[j][i] = col;
+        // Calculate the next orientation (derived from rotation matrix by 90 degrees).
+        int newRow = -1 * col;
+        col = row;
+        row = newRow;
+      }
+    }
+  }
+
+  /**
+   * Get the number of distinct orientations in this table.
+   * 
+   * @return The number of distinct orientations.
+   */
+  public int getOrientations() {
+    return rowOffsets.length;
+  }
+
+  /**
+   * Get the number of squares in each orientation.
+   * 
+   * @return The number of squares in a block of this type.
+   */
+  public int getSize() {
+    return rowOffsets[0].length;
+  }
+
+  /**
+   * Get the orientation following a 90-degree clockwise rotation.
+   * 
+   * @param orientation
+   *          The current orientation.
+   * @return The orientation after rotating.
+   */
+  public int next(int orientation) {
+    return (orientation + 1) % getOrientations();
+  }
+
+  /**
+   * Get the orientation following a 90-degree counter-clockwise rotation.
+   * 
+   * @param orientation
+   *          The current orientation.
+   * @return The orientation after rotating.
+   */
+  public int previous(int orientation) {
+    return (orientation + getOrientations() - 1) % getOrientations();
+  }
+
+  /**
+   * Get the row offset of a square.
+   * 
+   * @param orientation
+   *          The orientation of the block.
+   * @param square
+   *          The index of the square in the block.
+   * @return The row offset of the square from the block's position.
+   */
+  public int getRowOffset(int orientation, int square) {
+    return rowOffsets[orientation][square];
+  }
+
+  /**
+   * Get the column offset of a square.
+   * 
+   * @param orientation
+   *          The orientation of the block.
+   * @param square
+   *          The index of the square in the block.
+   * @return The column offset of the square from the block's position.
+   */
+  public int getColOffset(int orientation, int square) {
+    return colOffsets[orientation][square];
+  }
+}
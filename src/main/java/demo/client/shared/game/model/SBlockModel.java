@@ -3,22 +3,22 @@ package demo.client.shared.game.model;
 /**
  * An S-Shaped block.
  */
-public class SBlockModel extends ToggledBlockModel {
+public class SBlockModel extends BlockModel {
 
   public static final int CODE = 4;
 
+  /** The square offsets of every orientation of this type of block. */
+  static final RotationTable ROTATIONS = new RotationTable(new int[][] { new int[] { 0, 0 }, // Anchor of block.
+        new int[] { 1, 0 }, // Bottom square.
+        new int[] { 0, -1 }, // Left-middle of square.
+        new int[] { -1, -1 } // Top of square.
+      }, 2);
+
   /**
    * Create an SBlockModel instance.
    */
   public SBlockModel() {
-    // Assign unique id.
-    super(generateId());
-
-    setOffsets(new int[][] { new int[] { 0, 0 }, // Anchor of block.
-        new int[] { 1, 0 }, // Bottom square.
-        new int[] { 0, -1 }, // Left-middle of square.
-        new int[] { -1, -1 } // Top of square.
-            }, getCode());
+    setOffsets(ROTATIONS, getCode());
   }
 
   /**
@@ -3,37 +3,25 @@ package demo.client.shared.game.model;
 /**
  * A square-shaped block in Block Drop.
  * 
- * Note: This class overrides BlockModel.rotate and BlockModel.unrotate with empty methods, since
- * the square block has -- effectively -- no rotation.
+ * Note: The rotation table of this class has a single orientation, since the square block has --
+ * effectively -- no rotation.
  */
 public class SquareBlockModel extends BlockModel {
 
   public static final int CODE = 5;
 
-  /**
-   * Create a SquareBlock instance.
-   */
-  public SquareBlockModel() {
-    // Assign unique id.
-    super(generateId());
-
-    setOffsets(new int[][] { new int[] { 0, 0 }, // Top-left square.
+  /** The square offsets of every orientation of this type of block. */
+  static final RotationTable ROTATIONS = new RotationTable(new int[][] { new int[] { 0, 0 }, // Top-left square.
         new int[] { 1, 0 }, // Bottom-left square.
         new int[] { 1, 1 }, // Bottom-right square.
         new int[] { 0, 1 } // Top-right square.
-            }, getCode());
-  }
+      }, 1);
 
-  @Override
-  public void rotate() {
-    // Do nothing.
-    return;
-  }
-
-  @Override
-  public void unrotate() {
-    // Do nothing.
-    return;
+  /**
+   * Create a SquareBlock instance.
+   */
+  public SquareBlockModel() {
+    setOffsets(ROTATIONS, getCode());
   }
 
   /**
@@ -79,4 +79,14 @@ public class SquareModel {
   public int getCode() {
     return code;
   }
+
+  /**
+   * Set the code for this square.
+   * 
+   * @param code
+   *          The new code for this square, as per {@link BlockModel#getTypeCode()}.
+   */
+  public void setCode(int code) {
+    this.code = code;
+  }
 }
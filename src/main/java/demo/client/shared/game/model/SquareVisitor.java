@@ -0,0 +1,21 @@
+package demo.client.shared.game.model;
+
+/**
+ * A callback for walking the occupied squares of a {@link BoardModel board model} without creating
+ * intermediate {@link SquareModel square models}. Implementations are intended to be created once
+ * and reused for every walk.
+ */
+public interface SquareVisitor {
+
+  /**
+   * Visit a single occupied square.
+   * 
+   * @param row
+   *          The row index of the square on the board.
+   * @param col
+   *          The column index of the square on the board.
+   * @param code
+   *          The code of the square, as per {@link SquareModel#getCode()}.
+   */
+  public void visit(int row, int col, int code);
+}
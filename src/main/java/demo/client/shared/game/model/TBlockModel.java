@@ -8,18 +8,19 @@ public class TBlockModel extends BlockModel {
   public static final int CODE = 6;
 
   /**
-   * Create a TBlockModel instance.
+   * The square offsets of every orientation of this type of block. Block starts as upside down T.
    */
-  public TBlockModel() {
-    // Assign unique id.
-    super(generateId());
-
-    // Block starts as upside down T.
-    setOffsets(new int[][] { new int[] { 0, 0 }, // Centre of T
+  static final RotationTable ROTATIONS = new RotationTable(new int[][] { new int[] { 0, 0 }, // Centre of T
         new int[] { -1, 0 }, // Stem of T
         new int[] { 0, -1 }, // Right-top of T
         new int[] { 0, 1 } // Left top of T
-            }, getCode());
+      }, 4);
+
+  /**
+   * Create a TBlockModel instance.
+   */
+  public TBlockModel() {
+    setOffsets(ROTATIONS, getCode());
   }
 
   /**
@@ -3,22 +3,22 @@ package demo.client.shared.game.model;
 /**
  * A Z-shaped block.
  */
-public class ZBlockModel extends ToggledBlockModel {
+public class ZBlockModel extends BlockModel {
 
   public static final int CODE = 7;
 
+  /** The square offsets of every orientation of this type of block. */
+  static final RotationTable ROTATIONS = new RotationTable(new int[][] { new int[] { 0, 0 }, // Anchor of block.
+        new int[] { 1, 0 }, // Bottom square.
+        new int[] { 0, 1 }, // Middle-right square.
+        new int[] { -1, 1 } // Top square.
+      }, 2);
+
   /**
    * Create a ZBlockModel instance.
    */
   public ZBlockModel() {
-    // Assign unique id.
-    super(generateId());
-
-    setOffsets(new int[][] { new int[] { 0, 0 }, // Anchor of block.
-        new int[] { 1, 0 }, // Bottom square.
-        new int[] { 0, 1 }, // Middle-right square.
-        new int[] { -1, 1 } // Top square.
-            }, getCode());
+    setOffsets(ROTATIONS, getCode());
   }
 
   /**
@@ -0,0 +1,172 @@
+package demo.client.shared.lobby;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+import demo.client.shared.meta.GameRoom;
+import demo.client.shared.meta.Player;
+
+/**
+ * A portable bean for transmitting the changes to the lobby between two versions.
+ * 
+ * A delta can only be applied to a lobby at its {@link #getBaseVersion() base version}. A client
+ * that has missed a delta should request a new {@link LobbyUpdate snapshot}.
+ */
+@Portable
+public class LobbyDelta {
+
+  private int baseVersion;
+  private int version;
+  /** Players who have entered the lobby or changed since the base version. */
+  private List<Player> players = new ArrayList<Player>();
+  /** Ids of players who have left the lobby since the base version. */
+  private List<Integer> removedPlayerIds = new ArrayList<Integer>();
+  /** Games which have started or changed since the base version. */
+  private List<GameRoom> games = new ArrayList<GameRoom>();
+  /** Ids of games which have ended since the base version. */
+  private List<Integer> removedGameIds = new ArrayList<Integer>();
+
+  /**
+   * A default no-arg constructor for proxying.
+   */
+  public LobbyDelta() {
+  }
+
+  /**
+   * Construct a LobbyDelta instance with no changes.
+   * 
+   * @param baseVersion
+   *          The version of the lobby to which this delta applies.
+   * @param version
+   *          The version of the lobby after this delta is applied.
+   */
+  public LobbyDelta(int baseVersion, int version) {
+    this.baseVersion = baseVersion;
+    this.version = version;
+  }
+
+  /**
+   * Check if this delta has any changes.
+   * 
+   * @return True iff this delta has no changes.
+   */
+  public boolean isEmpty() {
+    return players.isEmpty() && removedPlayerIds.isEmpty() && games.isEmpty() && removedGameIds.isEmpty();
+  }
+
+  /**
+   * Get the version of the lobby to which this delta applies.
+   * 
+   * @return The version of the lobby before this delta.
+   */
+  public int getBaseVersion() {
+    return baseVersion;
+  }
+
+  /**
+   * Set the version of the lobby to which this delta applies.
+   * 
+   * @param baseVersion
+   *          The version of the lobby before this delta.
+   */
+  public void setBaseVersion(int baseVersion) {
+    this.baseVersion = baseVersion;
+  }
+
+  /**
+   * Get the version of the lobby after this delta is applied.
+   * 
+   * @return The version of the lobby after this delta.
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Set the version of the lobby after this delta is applied.
+   * 
+   * @param version
+   *          The version of the lobby after this delta.
+   */
+  public void setVersion(int version) {
+    this.version = version;
+  }
+
+  /**
+   * Get the players who have entered the lobby or changed.
+   * 
+   * @return A list of players to add to or replace in the lobby.
+   */
+  public List<Player> getPlayers() {
+    return players;
+  }
+
+  /**
+   * Set the players who have entered the lobby or changed.
+   * 
+   * @param players
+   *          A list of players to add to or replace in the lobby.
+   */
+  public void setPlayers(List<Player> players) {
+    this.players = players;
+  }
+
+  /**
+   * Get the ids of players who have left the lobby.
+   * 
+   * @return A list of ids of players to remove from the lobby.
+   */
+  public List<Integer> getRemovedPlayerIds() {
+    return removedPlayerIds;
+  }
+
+  /**
+   * Set the ids of players who have left the lobby.
+   * 
+   * @param removedPlayerIds
+   *          A list of ids of players to remove from the lobby.
+   */
+  public void setRemovedPlayerIds(List<Integer> removedPlayerIds) {
+    this.removedPlayerIds = removedPlayerIds;
+  }
+
+  /**
+   * Get the games which have started or changed.
+   * 
+   * @return A list of games to add to or replace in the lobby.
+   */
+  public List<GameRoom> getGames() {
+    return games;
+  }
+
+  /**
+   * Set the games which have started or changed.
+   * 
+   * @param games
+   *          A list of games to add to or replace in the lobby.
+   */
+  public void setGames(List<GameRoom> games) {
+    this.games = games;
+  }
+
+  /**
+   * Get the ids of games which have ended.
+   * 
+   * @return A list of ids of games to remove from the lobby.
+   */
+  public List<Integer> getRemovedGameIds() {
+    return removedGameIds;
+  }
+
+  /**
+   * Set the ids of games which have ended.
+   * 
+   * @param removedGameIds
+   *          A list of ids of games to remove from the lobby.
+   */
+  public void setRemovedGameIds(List<Integer> removedGameIds) {
+    this.removedGameIds = removedGameIds;
+  }
+}
@@ -0,0 +1,151 @@
+package demo.client.shared.lobby;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+import demo.client.shared.meta.GameRoom;
+import demo.client.shared.meta.Player;
+
+/**
+ * A portable bean describing the page of the lobby a client is viewing.
+ * 
+ * Players are listed in order of name, and games in order of id. Both lists are filtered by name
+ * prefix (a game matches if any of its players does), and games may also be limited to those with
+ * room for another player.
+ */
+@Portable
+public class LobbyQuery {
+
+  /** The default number of players and games on a page. */
+  public static final int DEFAULT_PAGE_SIZE = 20;
+
+  private String namePrefix = "";
+  private boolean freeSlotsOnly = false;
+  private int page = 0;
+  private int pageSize = DEFAULT_PAGE_SIZE;
+
+  /**
+   * A default no-arg constructor for proxying.
+   */
+  public LobbyQuery() {
+  }
+
+  /**
+   * Check if a player in the lobby matches this query's filter.
+   * 
+   * @param player
+   *          A player in the lobby.
+   * @return True iff the player's name starts with the name prefix (ignoring case).
+   */
+  public boolean matches(Player player) {
+    return player.getName() != null && player.getName().toLowerCase().startsWith(getNormalizedPrefix());
+  }
+
+  /**
+   * Check if a game matches this query's filter.
+   * 
+   * @param game
+   *          A game in progress.
+   * @return True iff the game has a player matching the name prefix, and has a free slot if required.
+   */
+  public boolean matches(GameRoom game) {
+    if (freeSlotsOnly && !game.hasFreeSlot()) {
+      return false;
+    }
+    if (getNormalizedPrefix().length() == 0) {
+      return true;
+    }
+    for (Player player : game.getPlayers().values()) {
+      if (matches(player)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Get the name prefix, in the form used for comparisons.
+   * 
+   * @return The name prefix in lower case.
+   */
+  public String getNormalizedPrefix() {
+    return namePrefix.toLowerCase();
+  }
+
+  /**
+   * Get the name prefix.
+   * 
+   * @return Players (and games with players) whose names start with this are listed.
+   */
+  public String getNamePrefix() {
+    return namePrefix;
+  }
+
+  /**
+   * Set the name prefix.
+   * 
+   * @param namePrefix
+   *          Players (and games with players) whose names start with this are listed. Null or empty
+   *          to list all.
+   */
+  public void setNamePrefix(String namePrefix) {
+    this.namePrefix = namePrefix != null ? namePrefix : "";
+  }
+
+  /**
+   * Check if only games with a free slot are listed.
+   * 
+   * @return True iff full games are not listed.
+   */
+  public boolean isFreeSlotsOnly() {
+    return freeSlotsOnly;
+  }
+
+  /**
+   * Set whether only games with a free slot are listed.
+   * 
+   * @param freeSlotsOnly
+   *          True if full games should not be listed.
+   */
+  public void setFreeSlotsOnly(boolean freeSlotsOnly) {
+    this.freeSlotsOnly = freeSlotsOnly;
+  }
+
+  /**
+   * Get the index of the page being viewed.
+   * 
+   * @return The index of the page (starting at 0).
+   */
+  public int getPage() {
+    return page;
+  }
+
+  /**
+   * Set the index of the page being viewed.
+   * 
+   * @param page
+   *          The index of the page (starting at 0).
+   */
+  public void setPage(int page) {
+    this.page = Math.max(0, page);
+  }
+
+  /**
+   * Get the number of players and games on a page.
+   * 
+   * @return The maximum number of players, and of games, on a page.
+   */
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  /**
+   * Set the number of players and games on a page.
+   * 
+   * @param pageSize
+   *          The maximum number of players, and of games, on a page. The server caps this at 100.
+   */
+  public void setPageSize(int pageSize) {
+    this.pageSize = Math.max(1, pageSize);
+  }
+}
@@ -5,20 +5,33 @@ import java.util.List;
 import java.util.Map;
 
 import org.jboss.errai.common.client.api.annotations.Portable;
+import org.jboss.errai.enterprise.client.cdi.api.Conversational;
 
 import demo.client.shared.meta.GameRoom;
 import demo.client.shared.meta.Player;
 
 /**
  * A portable bean for transmitting lists of players in lobby and games in progress.
+ * 
+ * A LobbyUpdate is a snapshot of a page of the lobby, and is only sent to a client that requests
+ * it. Later changes are broadcast as {@link LobbyDelta deltas} from the snapshot's version.
  */
+@Conversational
 @Portable
 public class LobbyUpdate {
 
+  /** The version of the lobby in this snapshot. */
+  private int version;
   /** A map player ids to Player objects (of players in lobby). */
   private Map<Integer, Player> playerMap = null;
   /** A map of game ids to Game objects (of games in progress). */
   private Map<Integer, GameRoom> gameMap = null;
+  /** The page of the lobby in this snapshot. */
+  private LobbyQuery query = new LobbyQuery();
+  /** The number of players matching the query, on all pages. */
+  private int playerCount;
+  /** The number of games matching the query, on all pages. */
+  private int gameCount;
 
   /**
    * A default no-arg constructor for proxying.
@@ -40,6 +53,97 @@ public class LobbyUpdate {
     this.gameMap = games;
   }
 
+  /**
+   * Construct a LobbyUpdate instance.
+   * 
+   * @param playerMap
+   *          A map of player ids to players, for all the players in the lobby.
+   * @param gameMap
+   *          A map of game ids to games, for all the currently in progress games.
+   * @param version
+   *          The version of the lobby in this snapshot.
+   */
+  public LobbyUpdate(Map<Integer, Player> players, Map<Integer, GameRoom> games, int version) {
+    this(players, games);
+    this.version = version;
+  }
+
+  /**
+   * Get the version of the lobby in this snapshot.
+   * 
+   * @return The version of the lobby in this snapshot.
+   */
+  public int getVersion() {
+    return version;
+  }
+
+  /**
+   * Set the version of the lobby in this snapshot.
+   * 
+   * @param version
+   *          The version of the lobby in this snapshot.
+   */
+  public void setVersion(int version) {
+    this.version = version;
+  }
+
+  /**
+   * Get the page of the lobby in this snapshot.
+   * 
+   * @return The query used to select the players and games in this snapshot.
+   */
+  public LobbyQuery getQuery() {
+    return query;
+  }
+
+  /**
+   * Set the page of the lobby in this snapshot.
+   * 
+   * @param query
+   *          The query used to select the players and games in this snapshot.
+   */
+  public void setQuery(LobbyQuery query) {
+    this.query = query;
+  }
+
+  /**
+   * Get the number of players matching the query, on all pages.
+   * 
+   * @return The number of players matching the query.
+   */
+  public int getPlayerCount() {
+    return playerCount;
+  }
+
+  /**
+   * Set the number of players matching the query, on all pages.
+   * 
+   * @param playerCount
+   *          The number of players matching the query.
+   */
+  public void setPlayerCount(int playerCount) {
+    this.playerCount = playerCount;
+  }
+
+  /**
+   * Get the number of games matching the query, on all pages.
+   * 
+   * @return The number of games matching the query.
+   */
+  public int getGameCount() {
+    return gameCount;
+  }
+
+  /**
+   * Set the number of games matching the query, on all pages.
+   * 
+   * @param gameCount
+   *          The number of games matching the query.
+   */
+  public void setGameCount(int gameCount) {
+    this.gameCount = gameCount;
+  }
+
   /**
    * Get a map of the current players in the lobby.
    * 
@@ -7,4 +7,41 @@ import org.jboss.errai.common.client.api.annotations.Portable;
  */
 @Portable
 public class LobbyUpdateRequest {
+
+  private LobbyQuery query = new LobbyQuery();
+
+  /**
+   * A default no-arg constructor for proxying.
+   */
+  public LobbyUpdateRequest() {
+  }
+
+  /**
+   * Create a LobbyUpdateRequest for a page of the lobby.
+   * 
+   * @param query
+   *          The page of the lobby to send.
+   */
+  public LobbyUpdateRequest(LobbyQuery query) {
+    this.query = query;
+  }
+
+  /**
+   * Get the page of the lobby requested.
+   * 
+   * @return The page of the lobby to send.
+   */
+  public LobbyQuery getQuery() {
+    return query;
+  }
+
+  /**
+   * Set the page of the lobby requested.
+   * 
+   * @param query
+   *          The page of the lobby to send.
+   */
+  public void setQuery(LobbyQuery query) {
+    this.query = query;
+  }
 }
@@ -20,14 +20,15 @@ public enum Command {
    */
   LEAVE_GAME,
   /**
-   * For sending, relaying, and receiving score updates. Score updates may also contain targetted
-   * players who will be sabotaged. A sabotaged player will have a row of blocks added to the bottom
-   * of their board.
+   * For broadcasting score updates. Score updates are computed by the server's game simulation and
+   * may also contain targetted players who will be sabotaged. A sabotaged player will have a row of
+   * blocks added to the bottom of their board.
    */
   UPDATE_SCORE,
   /**
-   * For sending, relaying, and receiving move updates. Move updates are used to view opponents
-   * boards remotely.
+   * For broadcasting move updates from the server's game simulation. Move updates are used to view
+   * opponents boards remotely, and carry either a complete board or a delta against the previous
+   * update.
    */
   MOVE_UPDATE,
   /**
@@ -46,5 +47,32 @@ public enum Command {
    * otherwise not actively playing. Inactive players will be kicked from games if they do not
    * periodically send this.
    */
-  GAME_KEEP_ALIVE
+  GAME_KEEP_ALIVE,
+  /**
+   * For sending a player's inputs to the server, which replays them on its own simulation of the
+   * player's board.
+   */
+  INPUT_UPDATE,
+  /**
+   * For replacing a client's simulation of its own board with the server's, after the two have
+   * diverged.
+   */
+  BOARD_CORRECTION,
+  /**
+   * For broadcasting a {@link GameFrame batch} of the move updates, score updates, corrections,
+   * pauses and departures in a game made by the server within one tick.
+   */
+  GAME_FRAME,
+  /**
+   * In a {@link demo.client.shared.meta.GameRoom#isLockstep() lockstep} game, for requesting the
+   * server's simulation of an opponent's board, after a client's replay of it has missed inputs or
+   * diverged. The request is an {@link InputEvent} naming the opponent and the game, and the reply
+   * is sent to the whole game in a {@link GameFrame}.
+   */
+  BOARD_SYNC,
+  /**
+   * For sending a {@link PerfReport} of a client's frame times, game loop jitter and message rates
+   * to the server, which adds it to its metrics.
+   */
+  PERF_REPORT
 }
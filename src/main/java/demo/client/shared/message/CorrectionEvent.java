@@ -0,0 +1,74 @@
+package demo.client.shared.message;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+import demo.client.shared.game.model.BoardSimulation;
+import demo.client.shared.meta.Player;
+
+/**
+ * A portable bean for sending a {@link Command#BOARD_CORRECTION board correction} to a client whose
+ * simulation of its own board has diverged from the server's.
+ */
+@Portable
+public class CorrectionEvent {
+
+  private Player player;
+  private BoardSimulation simulation;
+
+  /**
+   * A default no-arg constructor for proxying.
+   */
+  public CorrectionEvent() {
+  }
+
+  /**
+   * Create a CorrectionEvent.
+   * 
+   * @param player
+   *          The player whose board is being corrected.
+   * @param simulation
+   *          The server's simulation of the player's board.
+   */
+  public CorrectionEvent(Player player, BoardSimulation simulation) {
+    this.player = player;
+    this.simulation = simulation;
+  }
+
+  /**
+   * Get the player whose board is being corrected.
+   * 
+   * @return The player whose board is being corrected.
+   */
+  public Player getPlayer() {
+    return player;
+  }
+
+  /**
+   * Set the player whose board is being corrected.
+   * 
+   * @param player
+   *          The player whose board is being corrected.
+   */
+  public void setPlayer(Player player) {
+    this.player = player;
+  }
+
+  /**
+   * Get the server's simulation of the player's board.
+   * 
+   * @return The simulation the client should continue from.
+   */
+  public BoardSimulation getSimulation() {
+    return simulation;
+  }
+
+  /**
+   * Set the server's simulation of the player's board.
+   * 
+   * @param simulation
+   *          The simulation the client should continue from.
+   */
+  public void setSimulation(BoardSimulation simulation) {
+    this.simulation = simulation;
+  }
+}
@@ -0,0 +1,191 @@
+package demo.client.shared.message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+import demo.client.shared.meta.Player;
+
+/**
+ * A portable bean for sending all the {@link Command#GAME_FRAME updates to a game} made by the
+ * server within one tick in a single message.
+ * 
+ * The updates of each kind are listed in the order they were made. Departures should be handled
+ * after all other updates, since a player's last moves may be in the same frame.
+ */
+@Portable
+public class GameFrame {
+
+  private List<MoveEvent> moves = new ArrayList<MoveEvent>();
+  /** Inputs replayed by the server, in lockstep games. */
+  private List<InputEvent> inputs = new ArrayList<InputEvent>();
+  /** The server's simulations of boards, for clients whose replays need resynchronizing. */
+  private List<CorrectionEvent> syncs = new ArrayList<CorrectionEvent>();
+  private List<ScoreEvent> scores = new ArrayList<ScoreEvent>();
+  private List<CorrectionEvent> corrections = new ArrayList<CorrectionEvent>();
+  /** Players who are still in the game while paused. */
+  private List<Player> pausedPlayers = new ArrayList<Player>();
+  /** Players who have left the game. */
+  private List<Player> leftPlayers = new ArrayList<Player>();
+
+  /**
+   * A default no-arg constructor for proxying.
+   */
+  public GameFrame() {
+  }
+
+  /**
+   * Check if this frame has any updates.
+   * 
+   * @return True iff this frame has no updates.
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Get the number of updates in this frame.
+   * 
+   * @return The total number of updates of all kinds.
+   */
+  public int size() {
+    return moves.size() + inputs.size() + syncs.size() + scores.size() + corrections.size() + pausedPlayers.size()
+            + leftPlayers.size();
+  }
+
+  /**
+   * Get the {@link Command#MOVE_UPDATE move updates} in this frame.
+   * 
+   * @return A list of move updates.
+   */
+  public List<MoveEvent> getMoves() {
+    return moves;
+  }
+
+  /**
+   * Set the {@link Command#MOVE_UPDATE move updates} in this frame.
+   * 
+   * @param moves
+   *          A list of move updates.
+   */
+  public void setMoves(List<MoveEvent> moves) {
+    this.moves = moves;
+  }
+
+  /**
+   * Get the inputs replayed by the server in this frame. Each event holds the inputs as the server
+   * applied them (with any unearned sabotage rows removed), and the checksum of the server's
+   * simulation afterwards.
+   * 
+   * @return A list of replayed inputs.
+   */
+  public List<InputEvent> getInputs() {
+    return inputs;
+  }
+
+  /**
+   * Set the inputs replayed by the server in this frame.
+   * 
+   * @param inputs
+   *          A list of replayed inputs.
+   */
+  public void setInputs(List<InputEvent> inputs) {
+    this.inputs = inputs;
+  }
+
+  /**
+   * Get the {@link Command#BOARD_SYNC synchronized boards} in this frame.
+   * 
+   * @return A list of the server's simulations of boards.
+   */
+  public List<CorrectionEvent> getSyncs() {
+    return syncs;
+  }
+
+  /**
+   * Set the {@link Command#BOARD_SYNC synchronized boards} in this frame.
+   * 
+   * @param syncs
+   *          A list of the server's simulations of boards.
+   */
+  public void setSyncs(List<CorrectionEvent> syncs) {
+    this.syncs = syncs;
+  }
+
+  /**
+   * Get the {@link Command#UPDATE_SCORE score updates} in this frame.
+   * 
+   * @return A list of score updates.
+   */
+  public List<ScoreEvent> getScores() {
+    return scores;
+  }
+
+  /**
+   * Set the {@link Command#UPDATE_SCORE score updates} in this frame.
+   * 
+   * @param scores
+   *          A list of score updates.
+   */
+  public void setScores(List<ScoreEvent> scores) {
+    this.scores = scores;
+  }
+
+  /**
+   * Get the {@link Command#BOARD_CORRECTION board corrections} in this frame.
+   * 
+   * @return A list of board corrections.
+   */
+  public List<CorrectionEvent> getCorrections() {
+    return corrections;
+  }
+
+  /**
+   * Set the {@link Command#BOARD_CORRECTION board corrections} in this frame.
+   * 
+   * @param corrections
+   *          A list of board corrections.
+   */
+  public void setCorrections(List<CorrectionEvent> corrections) {
+    this.corrections = corrections;
+  }
+
+  /**
+   * Get the players who are {@link Command#GAME_KEEP_ALIVE paused} in this frame.
+   * 
+   * @return A list of paused players.
+   */
+  public List<Player> getPausedPlayers() {
+    return pausedPlayers;
+  }
+
+  /**
+   * Set the players who are {@link Command#GAME_KEEP_ALIVE paused} in this frame.
+   * 
+   * @param pausedPlayers
+   *          A list of paused players.
+   */
+  public void setPausedPlayers(List<Player> pausedPlayers) {
+    this.pausedPlayers = pausedPlayers;
+  }
+
+  /**
+   * Get the players who have {@link Command#LEAVE_GAME left the game} in this frame.
+   * 
+   * @return A list of players who have left.
+   */
+  public List<Player> getLeftPlayers() {
+    return leftPlayers;
+  }
+
+  /**
+   * Set the players who have {@link Command#LEAVE_GAME left the game} in this frame.
+   * 
+   * @param leftPlayers
+   *          A list of players who have left.
+   */
+  public void setLeftPlayers(List<Player> leftPlayers) {
+    this.leftPlayers = leftPlayers;
+  }
+}
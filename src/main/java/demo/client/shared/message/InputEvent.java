@@ -0,0 +1,219 @@
+package demo.client.shared.message;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+import demo.client.shared.game.model.BoardSimulation;
+import demo.client.shared.meta.Player;
+
+/**
+ * A portable bean for sending a batch of a player's {@link Command#INPUT_UPDATE inputs} to the
+ * server. Each input describes one step of the player's {@link BoardSimulation simulation}, so the
+ * server can replay the batch and reach the same board as the client.
+ * 
+ * In {@link demo.client.shared.meta.GameRoom#isLockstep() lockstep} games, the server forwards the
+ * inputs it replayed to every client in the same form, so that opponents' boards can be replayed
+ * locally. Forwarded events carry the checksum of the server's simulation.
+ */
+@Portable
+public class InputEvent {
+
+  private Player player;
+  private int gameId;
+  /** The life of the simulation these inputs belong to, as per {@link BoardSimulation#getLife()}. */
+  private int life;
+  /** The correction epoch of the simulation, as per {@link BoardSimulation#getEpoch()}. */
+  private int epoch;
+  /** The step of the simulation before the first input in this batch was applied. */
+  private int firstStep;
+  /** Inputs packed by {@link BoardSimulation#packInput(int, int, int, int)}, one per step. */
+  private int[] inputs;
+  /** The checksum of the sender's simulation after the last input in this batch was applied. */
+  private int checksum;
+  /** The id of the player who will be sabotaged by any rows cleared in this batch. */
+  private int targetId;
+
+  /**
+   * A default no-arg constructor for proxying.
+   */
+  public InputEvent() {
+  }
+
+  /**
+   * Create an InputEvent.
+   * 
+   * @param player
+   *          The player sending the inputs.
+   * @param gameId
+   *          The id of the game in which the inputs occurred.
+   * @param simulation
+   *          The player's simulation, after the last input in the batch was applied.
+   * @param firstStep
+   *          The step of the simulation before the first input was applied.
+   * @param inputs
+   *          The packed inputs, one per step.
+   * @param targetId
+   *          The id of the player targeted for sabotage.
+   */
+  public InputEvent(Player player, int gameId, BoardSimulation simulation, int firstStep, int[] inputs, int targetId) {
+    this.player = player;
+    this.gameId = gameId;
+    this.life = simulation.getLife();
+    this.epoch = simulation.getEpoch();
+    this.firstStep = firstStep;
+    this.inputs = inputs;
+    this.checksum = simulation.checksum();
+    this.targetId = targetId;
+  }
+
+  /**
+   * Get the player who sent these inputs.
+   * 
+   * @return The player who sent these inputs.
+   */
+  public Player getPlayer() {
+    return player;
+  }
+
+  /**
+   * Set the player who sent these inputs.
+   * 
+   * @param player
+   *          The player who sent these inputs.
+   */
+  public void setPlayer(Player player) {
+    this.player = player;
+  }
+
+  /**
+   * Get the id of the game in which these inputs occurred.
+   * 
+   * @return The id of a game.
+   */
+  public int getGameId() {
+    return gameId;
+  }
+
+  /**
+   * Set the id of the game in which these inputs occurred.
+   * 
+   * @param gameId
+   *          The id of a game.
+   */
+  public void setGameId(int gameId) {
+    this.gameId = gameId;
+  }
+
+  /**
+   * Get the life of the simulation these inputs belong to.
+   * 
+   * @return The number of times the player had restarted when these inputs occurred.
+   */
+  public int getLife() {
+    return life;
+  }
+
+  /**
+   * Set the life of the simulation these inputs belong to.
+   * 
+   * @param life
+   *          The number of times the player had restarted when these inputs occurred.
+   */
+  public void setLife(int life) {
+    this.life = life;
+  }
+
+  /**
+   * Get the correction epoch of the simulation these inputs belong to.
+   * 
+   * @return The number of server corrections the client had applied when these inputs occurred.
+   */
+  public int getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * Set the correction epoch of the simulation these inputs belong to.
+   * 
+   * @param epoch
+   *          The number of server corrections the client had applied when these inputs occurred.
+   */
+  public void setEpoch(int epoch) {
+    this.epoch = epoch;
+  }
+
+  /**
+   * Get the step of the simulation before the first input was applied.
+   * 
+   * @return The step of the simulation before the first input was applied.
+   */
+  public int getFirstStep() {
+    return firstStep;
+  }
+
+  /**
+   * Set the step of the simulation before the first input was applied.
+   * 
+   * @param firstStep
+   *          The step of the simulation before the first input was applied.
+   */
+  public void setFirstStep(int firstStep) {
+    this.firstStep = firstStep;
+  }
+
+  /**
+   * Get the inputs in this batch.
+   * 
+   * @return Inputs packed by {@link BoardSimulation#packInput(int, int, int, int)}, one per step.
+   */
+  public int[] getInputs() {
+    return inputs;
+  }
+
+  /**
+   * Set the inputs in this batch.
+   * 
+   * @param inputs
+   *          Inputs packed by {@link BoardSimulation#packInput(int, int, int, int)}, one per step.
+   */
+  public void setInputs(int[] inputs) {
+    this.inputs = inputs;
+  }
+
+  /**
+   * Get the checksum of the client's simulation after these inputs.
+   * 
+   * @return A checksum as per {@link BoardSimulation#checksum()}.
+   */
+  public int getChecksum() {
+    return checksum;
+  }
+
+  /**
+   * Set the checksum of the client's simulation after these inputs.
+   * 
+   * @param checksum
+   *          A checksum as per {@link BoardSimulation#checksum()}.
+   */
+  public void setChecksum(int checksum) {
+    this.checksum = checksum;
+  }
+
+  /**
+   * Get the id of the player targeted for sabotage.
+   * 
+   * @return The id of the player targeted for sabotage, or 0 if there is no target.
+   */
+  public int getTargetId() {
+    return targetId;
+  }
+
+  /**
+   * Set the id of the player targeted for sabotage.
+   * 
+   * @param targetId
+   *          The id of the player targeted for sabotage, or 0 if there is no target.
+   */
+  public void setTargetId(int targetId) {
+    this.targetId = targetId;
+  }
+}
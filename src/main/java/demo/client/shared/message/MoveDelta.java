@@ -0,0 +1,239 @@
+package demo.client.shared.message;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+import demo.client.shared.game.model.BoardModel;
+
+/**
+ * A portable bean describing the change in a {@link BoardModel board model} since the previous
+ * {@link Command#MOVE_UPDATE move update} from the same player. Move deltas are produced by a
+ * {@link MoveDeltaEncoder} and applied by a {@link MoveDeltaDecoder}.
+ */
+@Portable
+public class MoveDelta {
+
+  /** The id of the active block. A change in id means a new block has become active. */
+  private int pieceId;
+  /** The code of the active block, as per {@link demo.client.shared.game.model.BlockModel#getTypeCode()}. */
+  private int pieceCode;
+  /** The orientation of the active block. */
+  private int orientation;
+  /** The row position of the active block. */
+  private int row;
+  /** The column position of the active block. */
+  private int col;
+  /** The code of the next block. */
+  private int nextCode;
+  /** A mask of rows removed from the board before any cells in this delta are applied. */
+  private int clearedRows;
+  /** Changed board cells, each packed by {@link #packCell(int, int, int)}. */
+  private int[] cells;
+
+  /**
+   * A default no-arg constructor for proxying.
+   */
+  public MoveDelta() {
+  }
+
+  /**
+   * Pack the position and code of a single board cell into an integer.
+   * 
+   * @param row
+   *          The row index of the cell.
+   * @param col
+   *          The column index of the cell.
+   * @param code
+   *          The code of the cell, or {@link BoardModel#NO_TILE} if the cell was vacated.
+   * @return The packed cell.
+   */
+  public static int packCell(int row, int col, int code) {
+    return ((row * BoardModel.COL_NUM + col) << 16) | code;
+  }
+
+  /**
+   * Get the row index of a packed cell.
+   * 
+   * @param cell
+   *          A cell packed by {@link #packCell(int, int, int)}.
+   * @return The row index of the cell.
+   */
+  public static int cellRow(int cell) {
+    return (cell >>> 16) / BoardModel.COL_NUM;
+  }
+
+  /**
+   * Get the column index of a packed cell.
+   * 
+   * @param cell
+   *          A cell packed by {@link #packCell(int, int, int)}.
+   * @return The column index of the cell.
+   */
+  public static int cellCol(int cell) {
+    return (cell >>> 16) % BoardModel.COL_NUM;
+  }
+
+  /**
+   * Get the code of a packed cell.
+   * 
+   * @param cell
+   *          A cell packed by {@link #packCell(int, int, int)}.
+   * @return The code of the cell.
+   */
+  public static int cellCode(int cell) {
+    return cell & 0xFFFF;
+  }
+
+  /**
+   * Get the id of the active block.
+   * 
+   * @return The id of the active block.
+   */
+  public int getPieceId() {
+    return pieceId;
+  }
+
+  /**
+   * Set the id of the active block.
+   * 
+   * @param pieceId
+   *          The id of the active block.
+   */
+  public void setPieceId(int pieceId) {
+    this.pieceId = pieceId;
+  }
+
+  /**
+   * Get the code of the active block.
+   * 
+   * @return The code of the active block.
+   */
+  public int getPieceCode() {
+    return pieceCode;
+  }
+
+  /**
+   * Set the code of the active block.
+   * 
+   * @param pieceCode
+   *          The code of the active block.
+   */
+  public void setPieceCode(int pieceCode) {
+    this.pieceCode = pieceCode;
+  }
+
+  /**
+   * Get the orientation of the active block.
+   * 
+   * @return The orientation of the active block, as per
+   *         {@link demo.client.shared.game.model.BlockModel#getOrientation()}.
+   */
+  public int getOrientation() {
+    return orientation;
+  }
+
+  /**
+   * Set the orientation of the active block.
+   * 
+   * @param orientation
+   *          The orientation of the active block.
+   */
+  public void setOrientation(int orientation) {
+    this.orientation = orientation;
+  }
+
+  /**
+   * Get the row position of the active block.
+   * 
+   * @return The row index of the active block.
+   */
+  public int getRow() {
+    return row;
+  }
+
+  /**
+   * Set the row position of the active block.
+   * 
+   * @param row
+   *          The row index of the active block.
+   */
+  public void setRow(int row) {
+    this.row = row;
+  }
+
+  /**
+   * Get the column position of the active block.
+   * 
+   * @return The column index of the active block.
+   */
+  public int getCol() {
+    return col;
+  }
+
+  /**
+   * Set the column position of the active block.
+   * 
+   * @param col
+   *          The column index of the active block.
+   */
+  public void setCol(int col) {
+    this.col = col;
+  }
+
+  /**
+   * Get the code of the next block.
+   * 
+   * @return The code of the next block.
+   */
+  public int getNextCode() {
+    return nextCode;
+  }
+
+  /**
+   * Set the code of the next block.
+   * 
+   * @param nextCode
+   *          The code of the next block.
+   */
+  public void setNextCode(int nextCode) {
+    this.nextCode = nextCode;
+  }
+
+  /**
+   * Get the mask of rows removed since the previous update.
+   * 
+   * @return A mask in which bit i is set iff row i was removed. Rows are removed (as by
+   *         {@link BoardModel#removeRows(int)}) before any {@link #getCells() cells} are applied.
+   */
+  public int getClearedRows() {
+    return clearedRows;
+  }
+
+  /**
+   * Set the mask of rows removed since the previous update.
+   * 
+   * @param clearedRows
+   *          A mask in which bit i is set iff row i was removed.
+   */
+  public void setClearedRows(int clearedRows) {
+    this.clearedRows = clearedRows;
+  }
+
+  /**
+   * Get the settled cells that changed since the previous update.
+   * 
+   * @return An array of cells packed by {@link #packCell(int, int, int)}.
+   */
+  public int[] getCells() {
+    return cells;
+  }
+
+  /**
+   * Set the settled cells that changed since the previous update.
+   * 
+   * @param cells
+   *          An array of cells packed by {@link #packCell(int, int, int)}.
+   */
+  public void setCells(int[] cells) {
+    this.cells = cells;
+  }
+}
@@ -0,0 +1,59 @@
+package demo.client.shared.message;
+
+import demo.client.shared.game.model.BoardModel;
+import demo.client.shared.game.model.BoardSnapshot;
+
+/**
+ * Rebuilds a remote player's {@link BoardModel board model} from the {@link MoveEvent move events}
+ * produced by that player's {@link MoveDeltaEncoder}.
+ */
+public class MoveDeltaDecoder {
+
+  /** The most recently decoded state, or {@code null} if no keyframe has been received. */
+  private BoardModel replica;
+  private int lastSequence;
+  /** A snapshot of the most recently decoded state, sharing its unchanged rows with the next. */
+  private BoardSnapshot lastDecoded;
+
+  /**
+   * Apply a move event to the decoded state.
+   * 
+   * @param event
+   *          The next move event from a remote player.
+   * @return A snapshot of the decoded state after applying the event, or {@code null} if the event
+   *         could not be applied because an earlier delta or keyframe was missed.
+   */
+  public BoardSnapshot decode(MoveEvent event) {
+    if (event.isKeyframe()) {
+      replica = event.getState();
+    }
+    else if (replica == null || event.getSequence() != lastSequence + 1) {
+      // Wait for the next keyframe.
+      replica = null;
+      return null;
+    }
+    else {
+      apply(event.getDelta());
+    }
+    lastSequence = event.getSequence();
+
+    lastDecoded = replica.snapshot(lastDecoded);
+
+    return lastDecoded;
+  }
+
+  private void apply(MoveDelta delta) {
+    if (delta.getClearedRows() != 0) {
+      replica.removeRows(delta.getClearedRows());
+    }
+    for (int cell : delta.getCells()) {
+      replica.setTile(MoveDelta.cellRow(cell), MoveDelta.cellCol(cell), MoveDelta.cellCode(cell));
+    }
+
+    // The replica's blocks are reshaped in place, so that spinning and dealing pieces allocate nothing.
+    replica.placeActiveBlock(delta.getPieceCode(), delta.getPieceId(), delta.getOrientation(), delta.getRow(),
+            delta.getCol());
+    // Pieces are numbered in the order they are dealt, so the next piece follows the active one.
+    replica.placeNextBlock(delta.getNextCode(), delta.getPieceId() + 1);
+  }
+}
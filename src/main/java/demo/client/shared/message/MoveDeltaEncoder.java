@@ -0,0 +1,174 @@
+package demo.client.shared.message;
+
+import demo.client.shared.game.model.BoardModel;
+import demo.client.shared.game.model.BoardSnapshot;
+import demo.client.shared.meta.Player;
+
+/**
+ * Produces {@link MoveEvent move events} for a single player's board. Most events carry a
+ * {@link MoveDelta delta} against the last state this encoder sent. A keyframe carrying the full
+ * {@link BoardModel board model} is sent first, periodically after that, and whenever too many
+ * cells have changed for a delta to be worthwhile.
+ * 
+ * Events are encoded from immutable {@link BoardSnapshot snapshots}, so encoding need not happen on
+ * the thread simulating the board.
+ */
+public class MoveDeltaEncoder {
+
+  /** The maximum number of deltas sent between keyframes. */
+  public static final int KEYFRAME_INTERVAL = 32;
+  /** Deltas changing more cells than this are sent as keyframes instead. */
+  public static final int MAX_DELTA_CELLS = BoardModel.COL_NUM * 4;
+
+  /** The settled cells of the last state sent, indexed by row * COL_NUM + col. */
+  private final int[] sent = new int[BoardModel.ROW_NUM * BoardModel.COL_NUM];
+  /** Scratch space for changed cells, reused between calls. */
+  private final int[] changed = new int[BoardModel.ROW_NUM * BoardModel.COL_NUM];
+  private int sequence = 0;
+  /** The last state sent, whose rows are shared by later snapshots in which they are unchanged. */
+  private BoardSnapshot lastSent;
+  /** The number of deltas sent since the last keyframe, or -1 if no keyframe has been sent. */
+  private int sinceKeyframe = -1;
+
+  /**
+   * Create a move event describing the given state.
+   * 
+   * @param state
+   *          A snapshot of the current state of the player's board.
+   * @param player
+   *          The local player.
+   * @param gameId
+   *          The id of the game the player is in.
+   * @return A keyframe or delta move event.
+   */
+  public MoveEvent encode(BoardSnapshot state, Player player, int gameId) {
+    MoveEvent event = null;
+
+    if (sinceKeyframe >= 0 && sinceKeyframe < KEYFRAME_INTERVAL) {
+      MoveDelta delta = diff(state);
+      if (delta != null) {
+        event = new MoveEvent(delta, player, gameId);
+        sinceKeyframe += 1;
+      }
+    }
+    if (event == null) {
+      capture(state);
+      event = new MoveEvent(new BoardModel(state), player, gameId);
+      sinceKeyframe = 0;
+    }
+    lastSent = state;
+    event.setSequence(sequence++);
+
+    return event;
+  }
+
+  /**
+   * Force the next encoded event to be a keyframe.
+   */
+  public void reset() {
+    sinceKeyframe = -1;
+    lastSent = null;
+  }
+
+  private void capture(BoardSnapshot state) {
+    for (int i = 0; i < BoardModel.ROW_NUM; i++) {
+      for (int j = 0; j < BoardModel.COL_NUM; j++) {
+        sent[i * BoardModel.COL_NUM + j] = state.getTile(i, j);
+      }
+    }
+  }
+
+  /**
+   * Compute the delta between the last state sent and the given state, and record the given state
+   * as sent.
+   * 
+   * @return The delta, or {@code null} if a keyframe should be sent instead.
+   */
+  private MoveDelta diff(BoardSnapshot state) {
+    int clearedRows = 0;
+    // Full rows sent previously are only ever removed by clearing, which happens all at once.
+    if (state.numFullRows() == 0) {
+      clearedRows = sentFullRowMask();
+      removeSentRows(clearedRows);
+    }
+
+    int numChanged = 0;
+    for (int i = 0; i < BoardModel.ROW_NUM; i++) {
+      // Rows shared with the last state sent are unchanged, unless sent rows have just been moved.
+      if (clearedRows == 0 && lastSent != null && state.sharesRow(lastSent, i)) {
+        continue;
+      }
+      for (int j = 0; j < BoardModel.COL_NUM; j++) {
+        int index = i * BoardModel.COL_NUM + j;
+        int code = state.getTile(i, j);
+        if (sent[index] != code) {
+          if (numChanged == MAX_DELTA_CELLS) {
+            return null;
+          }
+          changed[numChanged++] = MoveDelta.packCell(i, j, code);
+          sent[index] = code;
+        }
+      }
+    }
+
+    int[] cells = new int[numChanged];
+    for (int i = 0; i < numChanged; i++) {
+      cells[i] = changed[i];
+    }
+
+    MoveDelta delta = new MoveDelta();
+    delta.setPieceId(state.getActiveId());
+    delta.setPieceCode(state.getActiveCode());
+    delta.setOrientation(state.getActiveOrientation());
+    delta.setRow(state.getActiveRow());
+    delta.setCol(state.getActiveCol());
+    delta.setNextCode(state.getNextCode());
+    delta.setClearedRows(clearedRows);
+    delta.setCells(cells);
+
+    return delta;
+  }
+
+  private int sentFullRowMask() {
+    int mask = 0;
+    for (int i = 0; i < BoardModel.ROW_NUM; i++) {
+      boolean full = true;
+      for (int j = 0; j < BoardModel.COL_NUM && full; j++) {
+        full = sent[i * BoardModel.COL_NUM + j] != BoardModel.NO_TILE;
+      }
+      if (full) {
+        mask |= 1 << i;
+      }
+    }
+
+    return mask;
+  }
+
+  private void removeSentRows(int mask) {
+    if (mask == 0) {
+      return;
+    }
+
+    int i = BoardModel.ROW_NUM - 1, j = BoardModel.ROW_NUM - 1;
+    while (i >= 0) {
+      if ((mask & (1 << i)) == 0) {
+        copySentRow(i, j--);
+      }
+      i -= 1;
+    }
+    while (j >= 0) {
+      for (int k = 0; k < BoardModel.COL_NUM; k++) {
+        sent[j * BoardModel.COL_NUM + k] = BoardModel.NO_TILE;
+      }
+      j -= 1;
+    }
+  }
+
+  private void copySentRow(int from, int to) {
+    if (from != to) {
+      for (int k = 0; k < BoardModel.COL_NUM; k++) {
+        sent[to * BoardModel.COL_NUM + k] = sent[from * BoardModel.COL_NUM + k];
+      }
+    }
+  }
+}
@@ -8,6 +8,11 @@ import demo.client.shared.meta.Player;
 /**
  * A portable bean for sending {@link Command#MOVE_UPDATE move updates} between server and clients.
  * 
+ * A move update is either a keyframe, carrying the complete {@link #getState() state} of a board, or
+ * a {@link #getDelta() delta} describing only what changed since the previous update from the same
+ * player. Each update is tagged with the {@link #getStep() step} of the player's board it shows, so
+ * that receivers can play updates back at the cadence they were made.
+ * 
  * @author mbarkley <mbarkley@redhat.com>
  * 
  */
@@ -15,8 +20,15 @@ import demo.client.shared.meta.Player;
 public class MoveEvent {
 
   private BoardModel state;
+  private MoveDelta delta;
   private Player player;
   private int gameId;
+  /** Incremented by the sender for every move update, so that receivers can detect missed deltas. */
+  private int sequence;
+  /** The life of the player's board, as per {@link demo.client.shared.game.model.BoardSimulation#getLife()}. */
+  private int life;
+  /** The step of the player's board, as per {@link demo.client.shared.game.model.BoardSimulation#getStep()}. */
+  private int step;
 
   /**
    * A default no-arg constructor for proxying.
@@ -40,6 +52,31 @@ public class MoveEvent {
     this.setGameId(gameId);
   }
 
+  /**
+   * Create a MoveEvent carrying a delta instead of a complete state.
+   * 
+   * @param delta
+   *          The changes to the game state since the previous move update.
+   * @param player
+   *          The player initially sending this event.
+   * @param gameId
+   *          The id of the game in which this move occurred.
+   */
+  public MoveEvent(MoveDelta delta, Player player, int gameId) {
+    this.setDelta(delta);
+    this.setPlayer(player);
+    this.setGameId(gameId);
+  }
+
+  /**
+   * Check if this event carries a complete game state.
+   * 
+   * @return True iff this event carries a complete game state rather than a delta.
+   */
+  public boolean isKeyframe() {
+    return state != null;
+  }
+
   /**
    * Get the state of the game in this MoveEvent.
    * 
@@ -59,6 +96,84 @@ public class MoveEvent {
     this.state = state;
   }
 
+  /**
+   * Get the delta in this MoveEvent.
+   * 
+   * @return The changes to the game state since the previous move update, or {@code null} if this
+   *         event is a keyframe.
+   */
+  public MoveDelta getDelta() {
+    return delta;
+  }
+
+  /**
+   * Set the delta in this MoveEvent.
+   * 
+   * @param delta
+   *          The changes to the game state since the previous move update.
+   */
+  public void setDelta(MoveDelta delta) {
+    this.delta = delta;
+  }
+
+  /**
+   * Get the sequence number of this MoveEvent.
+   * 
+   * @return The number of move updates sent by this player before this one.
+   */
+  public int getSequence() {
+    return sequence;
+  }
+
+  /**
+   * Set the sequence number of this MoveEvent.
+   * 
+   * @param sequence
+   *          The number of move updates sent by this player before this one.
+   */
+  public void setSequence(int sequence) {
+    this.sequence = sequence;
+  }
+
+  /**
+   * Get the life of the board shown by this MoveEvent.
+   * 
+   * @return The number of times the player had restarted when this move occurred.
+   */
+  public int getLife() {
+    return life;
+  }
+
+  /**
+   * Set the life of the board shown by this MoveEvent.
+   * 
+   * @param life
+   *          The number of times the player had restarted when this move occurred.
+   */
+  public void setLife(int life) {
+    this.life = life;
+  }
+
+  /**
+   * Get the step of the board shown by this MoveEvent. The player's game loop makes one step every
+   * tick while playing, so steps are the player's clock.
+   * 
+   * @return The number of simulation steps the player had made in this life when this move occurred.
+   */
+  public int getStep() {
+    return step;
+  }
+
+  /**
+   * Set the step of the board shown by this MoveEvent.
+   * 
+   * @param step
+   *          The number of simulation steps the player had made in this life when this move occurred.
+   */
+  public void setStep(int step) {
+    this.step = step;
+  }
+
   /**
    * Get the player who initially sent this MoveEvent.
    * 
@@ -0,0 +1,398 @@
+package demo.client.shared.message;
+
+import org.jboss.errai.common.client.api.annotations.Portable;
+
+import demo.client.shared.meta.Player;
+
+/**
+ * A portable bean for sending a client's {@link Command#PERF_REPORT performance samples} to the
+ * server. A report aggregates the samples taken over an interval into totals and maxima, so that it
+ * is the same small size however long the interval.
+ * 
+ * Times are in milliseconds. Frame times are the intervals between animation frames, draw times the
+ * time spent drawing the local board in each frame, and loop jitter the difference between each
+ * interval of the game loop timer and the interval it was scheduled for. Playback delay is how far
+ * the opponent board shown lags behind the newest state received for it.
+ */
+@Portable
+public class PerfReport {
+
+  private Player player;
+  private int gameId;
+  /** The length (in milliseconds) of the interval over which samples were taken. */
+  private int interval;
+
+  private int frames;
+  private double frameTimeTotal;
+  private double frameTimeMax;
+  private double drawTimeTotal;
+  private double drawTimeMax;
+  private int drawCalls;
+
+  private int loopFirings;
+  private double loopJitterTotal;
+  private double loopJitterMax;
+
+  private int inputUpdatesSent;
+  private int gameMessagesReceived;
+  private int opponentUpdatesReceived;
+
+  private int queueSamples;
+  private int queueDepthTotal;
+  private int queueDepthMax;
+  private int playbackDelayTotal;
+  private int playbackDelayMax;
+  private int playbackTargetTotal;
+  private int playbackSkips;
+  private int lateStates;
+  private int droppedStates;
+
+  /**
+   * A default no-arg constructor for proxying.
+   */
+  public PerfReport() {
+  }
+
+  /**
+   * Record an animation frame.
+   * 
+   * @param frameTime
+   *          The time (in milliseconds) since the previous animation frame.
+   * @param drawTime
+   *          The time (in milliseconds) spent drawing in this frame.
+   */
+  public void addFrame(double frameTime, double drawTime) {
+    frames += 1;
+    frameTimeTotal += frameTime;
+    frameTimeMax = Math.max(frameTimeMax, frameTime);
+    drawTimeTotal += drawTime;
+    drawTimeMax = Math.max(drawTimeMax, drawTime);
+  }
+
+  /**
+   * Record calls drawing to a canvas.
+   * 
+   * @param calls
+   *          The number of calls.
+   */
+  public void addDrawCalls(int calls) {
+    drawCalls += calls;
+  }
+
+  /**
+   * Record a firing of the game loop timer.
+   * 
+   * @param jitter
+   *          The difference (in milliseconds) between the time since the timer last fired and its
+   *          scheduled interval.
+   */
+  public void addLoopFiring(double jitter) {
+    loopFirings += 1;
+    loopJitterTotal += jitter;
+    loopJitterMax = Math.max(loopJitterMax, jitter);
+  }
+
+  /**
+   * Record an {@link Command#INPUT_UPDATE input update} sent to the server.
+   */
+  public void addInputUpdateSent() {
+    inputUpdatesSent += 1;
+  }
+
+  /**
+   * Record a message from the server carrying opponents' boards.
+   * 
+   * @param opponentUpdates
+   *          The number of input or move updates of opponents in the message.
+   */
+  public void addGameMessageReceived(int opponentUpdates) {
+    gameMessagesReceived += 1;
+    opponentUpdatesReceived += opponentUpdates;
+  }
+
+  /**
+   * Record a tick of the playback of an opponent's board.
+   * 
+   * @param depth
+   *          The number of opponent states waiting to be drawn.
+   * @param delay
+   *          The delay (in milliseconds) of playback behind the newest state received.
+   * @param target
+   *          The delay (in milliseconds) that playback is adjusted towards.
+   * @param skips
+   *          The number of times playback skipped ahead in this tick.
+   * @param late
+   *          The number of states received in this tick after they were due to be drawn.
+   * @param dropped
+   *          The number of states never drawn, as a later state was due in this tick.
+   */
+  public void addPlayback(int depth, int delay, int target, int skips, int late, int dropped) {
+    queueSamples += 1;
+    queueDepthTotal += depth;
+    queueDepthMax = Math.max(queueDepthMax, depth);
+    playbackDelayTotal += delay;
+    playbackDelayMax = Math.max(playbackDelayMax, delay);
+    playbackTargetTotal += target;
+    playbackSkips += skips;
+    lateStates += late;
+    droppedStates += dropped;
+  }
+
+  /**
+   * Check if any samples have been recorded.
+   * 
+   * @return True iff no frames or game loop firings have been recorded.
+   */
+  public boolean isEmpty() {
+    return frames == 0 && loopFirings == 0;
+  }
+
+  /**
+   * Get the number of occurrences per second over the interval of this report.
+   * 
+   * @param count
+   *          A number of occurrences, such as {@link #getInputUpdatesSent()}.
+   * @return The rate per second, or 0 if the interval has not been set.
+   */
+  public double perSecond(int count) {
+    return interval > 0 ? count * 1000.0 / interval : 0;
+  }
+
+  /**
+   * Get the player who sent this report.
+   * 
+   * @return The player who sent this report.
+   */
+  public Player getPlayer() {
+    return player;
+  }
+
+  /**
+   * Set the player who sent this report.
+   * 
+   * @param player
+   *          The player who sent this report.
+   */
+  public void setPlayer(Player player) {
+    this.player = player;
+  }
+
+  /**
+   * Get the id of the game the player was in.
+   * 
+   * @return The id of a game.
+   */
+  public int getGameId() {
+    return gameId;
+  }
+
+  /**
+   * Set the id of the game the player was in.
+   * 
+   * @param gameId
+   *          The id of a game.
+   */
+  public void setGameId(int gameId) {
+    this.gameId = gameId;
+  }
+
+  /**
+   * Get the length of the interval over which samples were taken.
+   * 
+   * @return The length of the interval in milliseconds.
+   */
+  public int getInterval() {
+    return interval;
+  }
+
+  /**
+   * Set the length of the interval over which samples were taken.
+   * 
+   * @param interval
+   *          The length of the interval in milliseconds.
+   */
+  public void setInterval(int interval) {
+    this.interval = interval;
+  }
+
+  /**
+   * Get the number of animation frames recorded.
+   * 
+   * @return The number of animation frames recorded.
+   */
+  public int getFrames() {
+    return frames;
+  }
+
+  /**
+   * Get the mean time between animation frames.
+   * 
+   * @return The mean time in milliseconds, or 0 if no frames were recorded.
+   */
+  public double getMeanFrameTime() {
+    return frames > 0 ? frameTimeTotal / frames : 0;
+  }
+
+  /**
+   * Get the longest time between animation frames.
+   * 
+   * @return The longest time in milliseconds.
+   */
+  public double getMaxFrameTime() {
+    return frameTimeMax;
+  }
+
+  /**
+   * Get the mean time spent drawing in each animation frame.
+   * 
+   * @return The mean time in milliseconds, or 0 if no frames were recorded.
+   */
+  public double getMeanDrawTime() {
+    return frames > 0 ? drawTimeTotal / frames : 0;
+  }
+
+  /**
+   * Get the longest time spent drawing in an animation frame.
+   * 
+   * @return The longest time in milliseconds.
+   */
+  public double getMaxDrawTime() {
+    return drawTimeMax;
+  }
+
+  /**
+   * Get the mean number of calls drawing to a canvas in each animation frame.
+   * 
+   * @return The mean number of calls, or 0 if no frames were recorded.
+   */
+  public double getDrawCallsPerFrame() {
+    return frames > 0 ? (double) drawCalls / frames : 0;
+  }
+
+  /**
+   * Get the number of game loop timer firings recorded.
+   * 
+   * @return The number of game loop timer firings recorded.
+   */
+  public int getLoopFirings() {
+    return loopFirings;
+  }
+
+  /**
+   * Get the mean jitter of the game loop timer.
+   * 
+   * @return The mean jitter in milliseconds, or 0 if no firings were recorded.
+   */
+  public double getMeanLoopJitter() {
+    return loopFirings > 0 ? loopJitterTotal / loopFirings : 0;
+  }
+
+  /**
+   * Get the largest jitter of the game loop timer.
+   * 
+   * @return The largest jitter in milliseconds.
+   */
+  public double getMaxLoopJitter() {
+    return loopJitterMax;
+  }
+
+  /**
+   * Get the number of {@link Command#INPUT_UPDATE input updates} sent to the server.
+   * 
+   * @return The number of input updates sent.
+   */
+  public int getInputUpdatesSent() {
+    return inputUpdatesSent;
+  }
+
+  /**
+   * Get the number of messages from the server carrying opponents' boards.
+   * 
+   * @return The number of messages received.
+   */
+  public int getGameMessagesReceived() {
+    return gameMessagesReceived;
+  }
+
+  /**
+   * Get the number of input or move updates of opponents received from the server.
+   * 
+   * @return The number of updates received.
+   */
+  public int getOpponentUpdatesReceived() {
+    return opponentUpdatesReceived;
+  }
+
+  /**
+   * Get the mean number of opponent states waiting to be drawn.
+   * 
+   * @return The mean number of states queued, or 0 if none were sampled.
+   */
+  public double getMeanQueueDepth() {
+    return queueSamples > 0 ? (double) queueDepthTotal / queueSamples : 0;
+  }
+
+  /**
+   * Get the largest number of opponent states waiting to be drawn.
+   * 
+   * @return The largest number of states queued.
+   */
+  public int getMaxQueueDepth() {
+    return queueDepthMax;
+  }
+
+  /**
+   * Get the mean delay of playback of opponent boards behind the newest states received.
+   * 
+   * @return The mean delay in milliseconds, or 0 if no playback was sampled.
+   */
+  public double getMeanPlaybackDelay() {
+    return queueSamples > 0 ? (double) playbackDelayTotal / queueSamples : 0;
+  }
+
+  /**
+   * Get the largest delay of playback of opponent boards behind the newest states received.
+   * 
+   * @return The largest delay in milliseconds.
+   */
+  public int getMaxPlaybackDelay() {
+    return playbackDelayMax;
+  }
+
+  /**
+   * Get the mean delay that playback of opponent boards was adjusted towards.
+   * 
+   * @return The mean target delay in milliseconds, or 0 if no playback was sampled.
+   */
+  public double getMeanPlaybackTarget() {
+    return queueSamples > 0 ? (double) playbackTargetTotal / queueSamples : 0;
+  }
+
+  /**
+   * Get the number of times playback of opponent boards skipped ahead, as the delay had grown too
+   * long.
+   * 
+   * @return The number of skips.
+   */
+  public int getPlaybackSkips() {
+    return playbackSkips;
+  }
+
+  /**
+   * Get the number of opponent states received after they were due to be drawn.
+   * 
+   * @return The number of late states.
+   */
+  public int getLateStates() {
+    return lateStates;
+  }
+
+  /**
+   * Get the number of opponent states never drawn, as a later state was due in the same tick.
+   * 
+   * @return The number of dropped states.
+   */
+  public int getDroppedStates() {
+    return droppedStates;
+  }
+}
@@ -17,7 +17,14 @@ import org.jboss.errai.databinding.client.api.Bindable;
 @Portable
 public class GameRoom {
 
+  /** The maximum number of players in a room. */
+  public static final int MAX_PLAYERS = 8;
+
   private int id;
+  /** The seed from which every board in this game is generated. */
+  private int seed;
+  /** True iff opponents' boards are replayed from their inputs, rather than sent as moves. */
+  private boolean lockstep;
   private Map<Integer, Player> players;
   private Map<Integer, ScoreTracker> scoreTrackers;
 
@@ -103,6 +110,46 @@ public class GameRoom {
     this.id = id;
   }
 
+  /**
+   * Get the seed of this game.
+   * 
+   * @return The seed from which the board of every player in this game is generated.
+   */
+  public int getSeed() {
+    return seed;
+  }
+
+  /**
+   * Set the seed of this game.
+   * 
+   * @param seed
+   *          The seed from which the board of every player in this game is generated.
+   */
+  public void setSeed(int seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Check if this game is played in lockstep.
+   * 
+   * @return True iff clients receive the inputs of their opponents and replay them on their own
+   *         simulations, rather than receiving {@link demo.client.shared.message.MoveEvent moves}.
+   */
+  public boolean isLockstep() {
+    return lockstep;
+  }
+
+  /**
+   * Set whether this game is played in lockstep.
+   * 
+   * @param lockstep
+   *          True if clients should replay the inputs of their opponents, rather than receive
+   *          {@link demo.client.shared.message.MoveEvent moves}.
+   */
+  public void setLockstep(boolean lockstep) {
+    this.lockstep = lockstep;
+  }
+
   @Override
   public boolean equals(Object other) {
     return other != null && other instanceof GameRoom && ((GameRoom) other).getId() == this.getId();
@@ -117,6 +164,15 @@ public class GameRoom {
     return players.size() == 0;
   }
 
+  /**
+   * Check if another player can join this room.
+   * 
+   * @return True iff this room has fewer than {@link #MAX_PLAYERS} players.
+   */
+  public boolean hasFreeSlot() {
+    return players.size() < MAX_PLAYERS;
+  }
+
   /**
    * Get the score trackers of all the players in this room.
    * 
@@ -18,6 +18,11 @@ public class Player implements Comparable<Player> {
    * server.
    */
   private int id;
+  /**
+   * The number of times the server had reused this player's id when giving it to this player, to
+   * tell this player apart from a later owner of the same id.
+   */
+  private int idGeneration;
   /** The nickname of this player to be displayed to other users. */
   private String name;
   /** The id of the game this player is in, or 0 if the player is in the lobby. */
@@ -152,6 +157,27 @@ public class Player implements Comparable<Player> {
     this.id = id;
   }
 
+  /**
+   * Get the generation of this player's id.
+   * 
+   * @return The number of times the server had reused this player's id when giving it to this
+   *         player.
+   */
+  public int getIdGeneration() {
+    return idGeneration;
+  }
+
+  /**
+   * Set the generation of this player's id.
+   * 
+   * @param idGeneration
+   *          The number of times the server had reused this player's id when giving it to this
+   *          player.
+   */
+  public void setIdGeneration(int idGeneration) {
+    this.idGeneration = idGeneration;
+  }
+
   /**
    * Check if this is the same player as other. This method is safe if other == null.
    * 
@@ -0,0 +1,220 @@
+package demo.server;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.errai.bus.client.api.base.MessageBuilder;
+import org.jboss.errai.bus.client.api.messaging.MessageBus;
+
+import demo.client.shared.message.Command;
+import demo.client.shared.message.CorrectionEvent;
+import demo.client.shared.message.GameFrame;
+import demo.client.shared.message.InputEvent;
+import demo.client.shared.message.MoveEvent;
+import demo.client.shared.message.ScoreEvent;
+import demo.client.shared.meta.Player;
+
+/**
+ * Queues updates to the games owned by one shard, and sends the updates to each game as a single
+ * {@link GameFrame frame} when flushed.
+ * 
+ * This class is not thread safe. It must only be used from its shard's thread.
+ */
+public class GameOutbox {
+
+  /**
+   * Notified of every frame sent.
+   */
+  public interface FrameListener {
+
+    /**
+     * Called after a frame is sent, on the outbox's shard thread.
+     * 
+     * @param gameId
+     *          The id of the game to which the frame was sent.
+     * @param frame
+     *          The frame.
+     */
+    public void frameSent(int gameId, GameFrame frame);
+  }
+
+  private final MessageBus messageBus;
+  private final FrameListener listener;
+  /** A map of game ids to the updates queued since the last flush. */
+  private final Map<Integer, GameFrame> frames = new HashMap<Integer, GameFrame>();
+  /** A map of game ids to the subjects of those games. */
+  private final Map<Integer, String> subjects = new HashMap<Integer, String>();
+
+  private long frameCount = 0;
+  private long updateCount = 0;
+
+  /**
+   * Create a GameOutbox.
+   * 
+   * @param messageBus
+   *          The bus on which frames are sent.
+   * @param listener
+   *          Notified of every frame sent.
+   */
+  public GameOutbox(MessageBus messageBus, FrameListener listener) {
+    this.messageBus = messageBus;
+    this.listener = listener;
+  }
+
+  /**
+   * Queue a move update.
+   * 
+   * @param gameId
+   *          The id of the game to which the update is sent.
+   * @param event
+   *          The move update.
+   */
+  public void addMove(int gameId, MoveEvent event) {
+    frameOf(gameId).getMoves().add(event);
+  }
+
+  /**
+   * Queue inputs replayed in a lockstep game.
+   * 
+   * @param gameId
+   *          The id of the game to which the inputs are sent.
+   * @param event
+   *          The replayed inputs.
+   */
+  public void addInputs(int gameId, InputEvent event) {
+    frameOf(gameId).getInputs().add(event);
+  }
+
+  /**
+   * Queue the server's simulation of a board, for clients to resynchronize their replays. At most
+   * one copy of each board is sent per frame.
+   * 
+   * @param gameId
+   *          The id of the game to which the simulation is sent.
+   * @param event
+   *          The player whose board it is and the server's simulation of it.
+   */
+  public void addSync(int gameId, CorrectionEvent event) {
+    List<CorrectionEvent> syncs = frameOf(gameId).getSyncs();
+    for (int i = 0; i < syncs.size(); i++) {
+      if (syncs.get(i).getPlayer().equals(event.getPlayer())) {
+        syncs.set(i, event);
+        return;
+      }
+    }
+    syncs.add(event);
+  }
+
+  /**
+   * Queue a score update.
+   * 
+   * @param gameId
+   *          The id of the game to which the update is sent.
+   * @param event
+   *          The score update.
+   */
+  public void addScore(int gameId, ScoreEvent event) {
+    frameOf(gameId).getScores().add(event);
+  }
+
+  /**
+   * Queue a board correction.
+   * 
+   * @param gameId
+   *          The id of the game to which the correction is sent.
+   * @param event
+   *          The board correction.
+   */
+  public void addCorrection(int gameId, CorrectionEvent event) {
+    frameOf(gameId).getCorrections().add(event);
+  }
+
+  /**
+   * Queue notice that a player is paused.
+   * 
+   * @param gameId
+   *          The id of the game to which the notice is sent.
+   * @param player
+   *          The paused player.
+   */
+  public void addPause(int gameId, Player player) {
+    frameOf(gameId).getPausedPlayers().add(player);
+  }
+
+  /**
+   * Queue notice that a player has left a game.
+   * 
+   * @param gameId
+   *          The id of the game to which the notice is sent.
+   * @param player
+   *          The player who has left.
+   */
+  public void addLeftPlayer(int gameId, Player player) {
+    frameOf(gameId).getLeftPlayers().add(player);
+  }
+
+  /**
+   * Forget the cached subject of a game that has ended. Updates already queued for it are still
+   * sent by the next flush.
+   * 
+   * @param gameId
+   *          The id of the game.
+   */
+  public void removeGame(int gameId) {
+    subjects.remove(gameId);
+  }
+
+  /**
+   * Send the queued updates of each game as a single message to the game's subject.
+   */
+  public void flush() {
+    Iterator<Map.Entry<Integer, GameFrame>> iter = frames.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<Integer, GameFrame> entry = iter.next();
+      iter.remove();
+
+      String subject = subjects.get(entry.getKey());
+      if (subject == null) {
+        subject = "Game" + entry.getKey();
+      }
+      frameCount += 1;
+      updateCount += entry.getValue().size();
+      MessageBuilder.createMessage(subject).command(Command.GAME_FRAME).withValue(entry.getValue())
+              .noErrorHandling().sendNowWith(messageBus);
+      listener.frameSent(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * Get the number of frames sent.
+   * 
+   * @return The number of frames sent by this outbox.
+   */
+  public long getFrameCount() {
+    return frameCount;
+  }
+
+  /**
+   * Get the number of updates sent.
+   * 
+   * @return The number of updates sent by this outbox, in all frames.
+   */
+  public long getUpdateCount() {
+    return updateCount;
+  }
+
+  private GameFrame frameOf(int gameId) {
+    GameFrame frame = frames.get(gameId);
+    if (frame == null) {
+      frame = new GameFrame();
+      frames.put(gameId, frame);
+      if (!subjects.containsKey(gameId)) {
+        subjects.put(gameId, "Game" + gameId);
+      }
+    }
+
+    return frame;
+  }
+}
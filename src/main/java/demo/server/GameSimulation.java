@@ -0,0 +1,320 @@
+package demo.server;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import demo.client.shared.game.model.BoardSimulation;
+import demo.client.shared.game.model.BoardSnapshot;
+import demo.client.shared.game.model.PieceSequencer;
+import demo.client.shared.message.CorrectionEvent;
+import demo.client.shared.message.InputEvent;
+import demo.client.shared.message.MoveDeltaEncoder;
+import demo.client.shared.message.MoveEvent;
+import demo.client.shared.message.ScoreEvent;
+import demo.client.shared.meta.GameRoom;
+import demo.client.shared.meta.Player;
+import demo.client.shared.meta.ScoreTracker;
+
+/**
+ * The server's authoritative simulation of every board in a game room.
+ * 
+ * Clients send only their {@link InputEvent inputs}, which are replayed here on a
+ * {@link BoardSimulation} seeded exactly like the client's. Line clears, scores and sabotage rows
+ * are decided by this replay, and opponents are shown the resulting boards. A client whose own
+ * simulation disagrees with the replay is sent a {@link CorrectionEvent correction}.
+ * 
+ * In {@link GameRoom#isLockstep() lockstep} games, opponents are sent the replayed inputs instead of
+ * the resulting boards, and replay them on their own simulations. A client whose replay of an
+ * opponent has missed inputs or diverged can {@link #requestSync(int) request} the server's copy.
+ * 
+ * This class is not thread safe. It must only be used from the {@link RoomExecutor} shard owning
+ * its game room, except for {@link #getSnapshot(int)}, which any thread may call.
+ */
+public class GameSimulation {
+
+  /**
+   * Receives the results of a game simulation, to be sent to clients.
+   */
+  public interface Listener {
+
+    /**
+     * Called when a board in the game has changed.
+     * 
+     * @param event
+     *          A keyframe or delta of the changed board.
+     */
+    public void moveUpdated(MoveEvent event);
+
+    /**
+     * Called when a player's score has changed.
+     * 
+     * @param event
+     *          The player's new score, and the player sabotaged by any rows cleared.
+     */
+    public void scoreUpdated(ScoreEvent event);
+
+    /**
+     * Called when a client's simulation must be replaced by the server's.
+     * 
+     * @param event
+     *          The player to correct and the server's simulation of their board.
+     */
+    public void boardCorrected(CorrectionEvent event);
+
+    /**
+     * Called in lockstep games when inputs have been replayed on a board.
+     * 
+     * @param event
+     *          The inputs as replayed, and the checksum of the board afterwards.
+     */
+    public void inputsReplayed(InputEvent event);
+
+    /**
+     * Called in lockstep games when clients must replace their replay of a board with the server's.
+     * 
+     * @param event
+     *          The player whose board it is and the server's simulation of it.
+     */
+    public void boardSynced(CorrectionEvent event);
+  }
+
+  /**
+   * The server's state for a single player in the game.
+   */
+  private static class PlayerBoard {
+
+    private final Player player;
+    private BoardSimulation simulation;
+    private final MoveDeltaEncoder encoder = new MoveDeltaEncoder();
+    /** Sabotage rows sent to this player which they have not yet added to their board. */
+    private int pendingSabotage;
+
+    private PlayerBoard(Player player, BoardSimulation simulation) {
+      this.player = player;
+      this.simulation = simulation;
+    }
+  }
+
+  private final GameRoom room;
+  private final Listener listener;
+  /** Deals blocks to every board in the game. */
+  private final PieceSequencer pieces;
+  /** A map of player ids to boards. */
+  private final Map<Integer, PlayerBoard> boards = new HashMap<Integer, PlayerBoard>();
+  /** A map of player ids to the latest snapshots of their boards, for reading from other threads. */
+  private final ConcurrentMap<Integer, BoardSnapshot> snapshots = new ConcurrentHashMap<Integer, BoardSnapshot>();
+
+  /**
+   * Create a GameSimulation.
+   * 
+   * @param room
+   *          The game room to simulate. The room's seed must already be set.
+   * @param listener
+   *          The listener to notify of simulation results.
+   */
+  public GameSimulation(GameRoom room, Listener listener) {
+    this.room = room;
+    this.listener = listener;
+    this.pieces = PieceSequencer.create(PieceSequencer.BAG, room.getSeed());
+  }
+
+  /**
+   * Start simulating a player's board.
+   * 
+   * @param player
+   *          A player who has joined the game.
+   */
+  public void addPlayer(Player player) {
+    if (!boards.containsKey(player.getId())) {
+      PlayerBoard board = new PlayerBoard(player, newSimulation(player, 0));
+      boards.put(player.getId(), board);
+      publish(board);
+    }
+  }
+
+  /**
+   * Stop simulating a player's board.
+   * 
+   * @param playerId
+   *          The id of a player who has left the game.
+   */
+  public void removePlayer(int playerId) {
+    boards.remove(playerId);
+    snapshots.remove(playerId);
+  }
+
+  /**
+   * Get the latest snapshot of a player's board. Unlike the rest of this class, this may be called
+   * from any thread.
+   * 
+   * @param playerId
+   *          The id of a player in the game.
+   * @return A snapshot of the player's board taken after the last batch of inputs was replayed, or
+   *         {@code null} if the player is not in the game.
+   */
+  public BoardSnapshot getSnapshot(int playerId) {
+    return snapshots.get(playerId);
+  }
+
+  /**
+   * Replay a batch of inputs on the sending player's board.
+   * 
+   * @param event
+   *          The inputs sent by a client.
+   */
+  public void handleInput(InputEvent event) {
+    PlayerBoard board = boards.get(event.getPlayer().getId());
+    if (board == null) {
+      return;
+    }
+
+    BoardSimulation simulation = board.simulation;
+    if (event.getLife() > simulation.getLife()) {
+      // The client lost before the server saw it happen.
+      loseGame(board, event.getLife());
+      simulation = board.simulation;
+    }
+    if (event.getLife() != simulation.getLife() || event.getEpoch() != simulation.getEpoch()) {
+      // Sent before a restart or correction that the client has not yet seen.
+      return;
+    }
+    if (event.getFirstStep() != simulation.getStep()) {
+      correct(board);
+      return;
+    }
+
+    int[] replayed = new int[event.getInputs().length];
+    for (int i = 0; i < replayed.length; i++) {
+      replayed[i] = grantSabotage(board, event.getInputs()[i]);
+      simulation.step(replayed[i]);
+      if (simulation.isLost()) {
+        sendInputs(board, event, replayed, i + 1);
+        loseGame(board, simulation.getLife() + 1);
+        return;
+      }
+      if (simulation.getModel().numFullRows() > 0) {
+        if (!room.isLockstep()) {
+          // Show opponents the full rows before they are cleared.
+          sendMove(board);
+        }
+        updateScore(board, simulation.clearFullRows(), event.getTargetId());
+      }
+    }
+    if (room.isLockstep()) {
+      sendInputs(board, event, replayed, replayed.length);
+      publish(board);
+    }
+    else {
+      sendMove(board);
+    }
+
+    if (event.getChecksum() != simulation.checksum()) {
+      correct(board);
+    }
+  }
+
+  /**
+   * Send the server's copy of a player's board to clients in a lockstep game.
+   * 
+   * @param playerId
+   *          The id of the player whose board is needed.
+   */
+  public void requestSync(int playerId) {
+    PlayerBoard board = boards.get(playerId);
+    if (board != null && room.isLockstep()) {
+      listener.boardSynced(new CorrectionEvent(board.player, new BoardSimulation(board.simulation)));
+    }
+  }
+
+  /**
+   * Send opponents the inputs replayed from an event, in a lockstep game.
+   */
+  private void sendInputs(PlayerBoard board, InputEvent event, int[] replayed, int count) {
+    if (room.isLockstep()) {
+      int[] inputs = new int[count];
+      System.arraycopy(replayed, 0, inputs, 0, count);
+      listener.inputsReplayed(new InputEvent(board.player, room.getId(), board.simulation, event.getFirstStep(),
+              inputs, event.getTargetId()));
+    }
+  }
+
+  /**
+   * Limit the sabotage rows added by an input to those actually sent to the player.
+   */
+  private int grantSabotage(PlayerBoard board, int input) {
+    int claimed = BoardSimulation.inputRowsToAdd(input);
+    if (claimed == 0) {
+      return input;
+    }
+
+    int granted = Math.min(claimed, board.pendingSabotage);
+    board.pendingSabotage -= granted;
+
+    return BoardSimulation.withRowsToAdd(input, granted);
+  }
+
+  private void updateScore(PlayerBoard board, int numClearedRows, int targetId) {
+    ScoreTracker scoreTracker = room.getScoreTracker(board.player);
+    scoreTracker.updateScore(numClearedRows);
+
+    Player target = null;
+    PlayerBoard targetBoard = targetId != board.player.getId() ? boards.get(targetId) : null;
+    if (targetBoard != null) {
+      target = targetBoard.player;
+      targetBoard.pendingSabotage += numClearedRows;
+    }
+    listener.scoreUpdated(new ScoreEvent(copyScoreTracker(scoreTracker), target));
+  }
+
+  private void loseGame(PlayerBoard board, int nextLife) {
+    ScoreTracker scoreTracker = room.getScoreTracker(board.player);
+    scoreTracker.setScore(scoreTracker.getScore() - ScoreTracker.LOSS_PENALTY);
+    listener.scoreUpdated(new ScoreEvent(copyScoreTracker(scoreTracker)));
+
+    board.simulation = newSimulation(board.player, nextLife);
+    board.pendingSabotage = 0;
+    board.encoder.reset();
+    publish(board);
+  }
+
+  private void correct(PlayerBoard board) {
+    board.simulation.setEpoch(board.simulation.getEpoch() + 1);
+    listener.boardCorrected(new CorrectionEvent(board.player, new BoardSimulation(board.simulation)));
+  }
+
+  private void sendMove(PlayerBoard board) {
+    MoveEvent event = board.encoder.encode(publish(board), board.player, room.getId());
+    event.setLife(board.simulation.getLife());
+    event.setStep(board.simulation.getStep());
+    listener.moveUpdated(event);
+  }
+
+  /**
+   * Take a snapshot of a player's board, and make it the latest snapshot seen by other threads.
+   */
+  private BoardSnapshot publish(PlayerBoard board) {
+    BoardSnapshot snapshot = board.simulation.snapshot();
+    snapshots.put(board.player.getId(), snapshot);
+
+    return snapshot;
+  }
+
+  private BoardSimulation newSimulation(Player player, int life) {
+    return new BoardSimulation(pieces, room.getSeed(), player.getId(), life);
+  }
+
+  /**
+   * Copy a score tracker, so that the copy being sent is not changed by later updates.
+   */
+  private static ScoreTracker copyScoreTracker(ScoreTracker scoreTracker) {
+    ScoreTracker retVal = new ScoreTracker();
+    retVal.setPlayer(scoreTracker.getPlayer());
+    retVal.setGameId(scoreTracker.getGameId());
+    retVal.setScore(scoreTracker.getScore());
+    retVal.setRowsClearedLast(scoreTracker.getRowsClearedLast());
+
+    return retVal;
+  }
+}
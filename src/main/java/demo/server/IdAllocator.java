@@ -0,0 +1,204 @@
+package demo.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Allocates unique positive integer ids without locking.
+ * 
+ * An id is made of a node prefix in its high bits and a local part in its low bits, so that servers
+ * with different node numbers never allocate the same id. With node 0 (the default), ids are simply
+ * 1, 2, 3, and so on.
+ * 
+ * Released ids are recycled, so that the local parts of the ids in use stay dense enough to index
+ * arrays. A released id is not reused until it has been quarantined for a while, so that late
+ * messages addressed to its previous owner are not delivered to a new one.
+ * 
+ * Each reuse of an id starts a new {@link #getGeneration(int) generation} of it. An owner that was
+ * idle while its id was released and reused still holds the old generation, and so can be told
+ * apart from the id's new owner when it comes back.
+ */
+public class IdAllocator {
+
+  /** The number of bits in the local part of an id. */
+  public static final int LOCAL_BITS = 23;
+  /** The largest node number. */
+  public static final int MAX_NODE = (1 << (31 - LOCAL_BITS)) - 1;
+
+  private static final int LOCAL_MASK = (1 << LOCAL_BITS) - 1;
+
+  /* The state of an id that has been released at least once. States are replaced, never changed. */
+  private static class IdState {
+    final int id;
+    final int generation;
+    /** The time (in milliseconds) at which the id was released, or -1 if it is held. */
+    final long released;
+
+    IdState(int id, int generation, long released) {
+      this.id = id;
+      this.generation = generation;
+      this.released = released;
+    }
+
+    boolean isReleased() {
+      return released >= 0;
+    }
+  }
+
+  private final int prefix;
+  private final long quarantine;
+  private final AtomicInteger next = new AtomicInteger(1);
+
+  /** The states of released ids, oldest first. States no longer current (reclaimed) are skipped. */
+  private final Queue<IdState> pool = new ConcurrentLinkedQueue<IdState>();
+  /** The current state of every id that has ever been released. Ids absent are held in generation 0. */
+  private final ConcurrentMap<Integer, IdState> states = new ConcurrentHashMap<Integer, IdState>();
+  /** The number of released ids that have not yet been reused or reclaimed. */
+  private final AtomicInteger poolSize = new AtomicInteger();
+
+  /**
+   * Create an IdAllocator.
+   * 
+   * @param node
+   *          The number of this server, between 0 and {@link #MAX_NODE}.
+   * @param quarantine
+   *          The minimum time (in milliseconds) between the release of an id and its reuse.
+   */
+  public IdAllocator(int node, long quarantine) {
+    if (node < 0 || node > MAX_NODE) {
+      throw new IllegalArgumentException("Node number must be between 0 and " + MAX_NODE + ": " + node);
+    }
+    this.prefix = node << LOCAL_BITS;
+    this.quarantine = quarantine;
+  }
+
+  /**
+   * Allocate an id, reusing a released id if one has been quarantined long enough.
+   * 
+   * @return A positive integer that is not in use.
+   */
+  public int allocate() {
+    long now = System.currentTimeMillis();
+    IdState oldest;
+    while ((oldest = pool.peek()) != null && oldest.released + quarantine <= now) {
+      // Only the thread that removes an id from the pool may reuse it, and only if it has not been
+      // reclaimed since. The states of reclaimed ids are dropped from the pool here.
+      if (pool.remove(oldest) && states.replace(oldest.id, oldest, new IdState(oldest.id, oldest.generation + 1, -1))) {
+        poolSize.decrementAndGet();
+        return oldest.id;
+      }
+    }
+
+    int local = next.getAndIncrement();
+    if (local > LOCAL_MASK) {
+      next.set(LOCAL_MASK + 1);
+      throw new IllegalStateException("No more ids can be allocated.");
+    }
+
+    return prefix | local;
+  }
+
+  /**
+   * Release an id so that it may be reused.
+   * 
+   * @param id
+   *          An id allocated by this allocator, that is no longer in use.
+   */
+  public void release(int id) {
+    if (!isIssued(id)) {
+      return;
+    }
+    while (true) {
+      IdState held = states.get(id);
+      if (held != null && held.isReleased()) {
+        return;
+      }
+      IdState entry = new IdState(id, held != null ? held.generation : 0, System.currentTimeMillis());
+      if (held == null ? states.putIfAbsent(id, entry) == null : states.replace(id, held, entry)) {
+        poolSize.incrementAndGet();
+        pool.offer(entry);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Check that an owner still holds its id, taking the id back for it if it was released and has
+   * not yet been reused.
+   * 
+   * @param id
+   *          An id that may have been released.
+   * @param generation
+   *          The {@link #getGeneration(int) generation} of the id when the owner was given it.
+   * @return True iff the id is now held in the owner's generation. False if the id was not issued
+   *         by this allocator, or has been reused since the owner was given it.
+   */
+  public boolean reclaim(int id, int generation) {
+    if (!isIssued(id)) {
+      return false;
+    }
+    while (true) {
+      IdState current = states.get(id);
+      if (current == null || !current.isReleased()) {
+        return getGeneration(current) == generation;
+      }
+      if (current.generation != generation) {
+        return false;
+      }
+      if (states.replace(id, current, new IdState(id, generation, -1))) {
+        // The released state is left in the pool, to be skipped when it reaches the front.
+        poolSize.decrementAndGet();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Get the generation of an id: the number of times it has been reused.
+   * 
+   * @param id
+   *          An id allocated by this allocator.
+   * @return The generation of the id, which is 0 until it is first reused.
+   */
+  public int getGeneration(int id) {
+    return getGeneration(states.get(id));
+  }
+
+  private static int getGeneration(IdState state) {
+    return state != null ? state.generation : 0;
+  }
+
+  /**
+   * Check if an id could have been allocated by this allocator.
+   * 
+   * @param id
+   *          An id.
+   * @return True iff the id has this allocator's node prefix and has been allocated at least once.
+   */
+  public boolean isIssued(int id) {
+    return id > 0 && (id & ~LOCAL_MASK) == prefix && (id & LOCAL_MASK) < next.get();
+  }
+
+  /**
+   * Get the local part of an id, for indexing arrays.
+   * 
+   * @param id
+   *          An id allocated by this allocator.
+   * @return The id without its node prefix.
+   */
+  public static int localIndex(int id) {
+    return id & LOCAL_MASK;
+  }
+
+  /**
+   * Get the number of released ids waiting to be reused.
+   * 
+   * @return The number of ids in the recycle pool.
+   */
+  public int getPoolSize() {
+    return poolSize.get();
+  }
+}
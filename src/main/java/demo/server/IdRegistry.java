@@ -0,0 +1,177 @@
+package demo.server;
+
+import java.util.Arrays;
+
+/**
+ * A registry of values keyed by id, each with a timestamp (such as the time of a player's last heart
+ * beat).
+ * 
+ * Ids are looked up in an array indexed by their {@link IdAllocator#localIndex(int) local part}, so
+ * this is only suitable for the dense ids assigned by a single {@link IdAllocator}. Values and
+ * timestamps are held in parallel arrays with no gaps, so looking up, touching and removing an id
+ * take constant time, and touching an id does not allocate.
+ * 
+ * This class is not thread safe. It must only be used from a single thread.
+ * 
+ * @param <V>
+ *          The type of value registered.
+ */
+public class IdRegistry<V> {
+
+  private static final int ABSENT = -1;
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** The slot of each id, or {@link #ABSENT}. Indexed by the local part of the id. */
+  private int[] slotOf = newIndex(INITIAL_CAPACITY);
+  private int[] ids = new int[INITIAL_CAPACITY];
+  private long[] stamps = new long[INITIAL_CAPACITY];
+  private Object[] values = new Object[INITIAL_CAPACITY];
+  private int size = 0;
+
+  /**
+   * Add an id, or replace its value and timestamp if it is already registered.
+   * 
+   * @param id
+   *          An id assigned by an {@link IdAllocator}.
+   * @param value
+   *          The value for the id.
+   * @param stamp
+   *          The timestamp for the id.
+   */
+  public void put(int id, V value, long stamp) {
+    int slot = slotOf(id);
+    if (slot == ABSENT) {
+      int index = IdAllocator.localIndex(id);
+      if (index >= slotOf.length) {
+        int[] grown = newIndex(Math.max(slotOf.length * 2, Integer.highestOneBit(index) * 2));
+        System.arraycopy(slotOf, 0, grown, 0, slotOf.length);
+        slotOf = grown;
+      }
+      else if (slotOf[index] != ABSENT) {
+        throw new IllegalArgumentException("Id " + id + " is from a different allocator than id "
+                + ids[slotOf[index]]);
+      }
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+        stamps = Arrays.copyOf(stamps, size * 2);
+        values = Arrays.copyOf(values, size * 2);
+      }
+      slot = size++;
+      slotOf[index] = slot;
+      ids[slot] = id;
+    }
+    stamps[slot] = stamp;
+    values[slot] = value;
+  }
+
+  /**
+   * Update the timestamp of an id, if it is registered.
+   * 
+   * @param id
+   *          An id.
+   * @param stamp
+   *          The new timestamp for the id.
+   * @return True iff the id is registered (and so has been updated).
+   */
+  public boolean touch(int id, long stamp) {
+    int slot = slotOf(id);
+    if (slot == ABSENT) {
+      return false;
+    }
+    stamps[slot] = stamp;
+
+    return true;
+  }
+
+  /**
+   * Get the value of an id.
+   * 
+   * @param id
+   *          An id.
+   * @return The value of the id, or null if it is not registered.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(int id) {
+    int slot = slotOf(id);
+
+    return slot != ABSENT ? (V) values[slot] : null;
+  }
+
+  /**
+   * Get the timestamp of an id.
+   * 
+   * @param id
+   *          An id.
+   * @return The timestamp of the id, or -1 if it is not registered.
+   */
+  public long getStamp(int id) {
+    int slot = slotOf(id);
+
+    return slot != ABSENT ? stamps[slot] : -1;
+  }
+
+  /**
+   * Remove an id.
+   * 
+   * @param id
+   *          An id.
+   * @return The value of the removed id, or null if it was not registered.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(int id) {
+    int slot = slotOf(id);
+    if (slot == ABSENT) {
+      return null;
+    }
+    V value = (V) values[slot];
+
+    // Move the last entry into the gap.
+    int last = --size;
+    ids[slot] = ids[last];
+    stamps[slot] = stamps[last];
+    values[slot] = values[last];
+    values[last] = null;
+    slotOf[IdAllocator.localIndex(ids[slot])] = slot;
+    slotOf[IdAllocator.localIndex(id)] = ABSENT;
+
+    return value;
+  }
+
+  /**
+   * Check if an id is registered.
+   * 
+   * @param id
+   *          An id.
+   * @return True iff the id is registered.
+   */
+  public boolean contains(int id) {
+    return slotOf(id) != ABSENT;
+  }
+
+  /**
+   * Get the number of registered ids.
+   * 
+   * @return The number of registered ids.
+   */
+  public int size() {
+    return size;
+  }
+
+  private int slotOf(int id) {
+    int index = IdAllocator.localIndex(id);
+    if (index >= slotOf.length) {
+      return ABSENT;
+    }
+    int slot = slotOf[index];
+
+    // Ids from other allocators may share a local part.
+    return slot != ABSENT && ids[slot] == id ? slot : ABSENT;
+  }
+
+  private static int[] newIndex(int capacity) {
+    int[] index = new int[capacity];
+    Arrays.fill(index, ABSENT);
+
+    return index;
+  }
+}
@@ -0,0 +1,97 @@
+package demo.server;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces requests to broadcast the lobby, so that it is broadcast at most once per window.
+ * 
+ * The first request after a quiet window is broadcast immediately. Requests made while a broadcast
+ * is pending are merged into it. Memory use does not grow with the request rate: a burst of any
+ * size becomes a single pending flag and a single broadcast.
+ * 
+ * Clients that fall behind are not queued for separately: lobby deltas carry versions, so a client
+ * that misses one requests a fresh snapshot instead of replaying the backlog.
+ */
+public class LobbyBroadcaster {
+
+  private final ScheduledExecutorService executor;
+  private final Runnable broadcast;
+  private final long window;
+
+  /** True while a broadcast is scheduled but has not yet started. */
+  private final AtomicBoolean pending = new AtomicBoolean(false);
+  /** The time (in milliseconds) at which the last broadcast started. */
+  private volatile long lastBroadcast = 0;
+
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong broadcastCount = new AtomicLong();
+
+  private final Runnable flush = new Runnable() {
+    @Override
+    public void run() {
+      // Cleared first, so that changes made during the broadcast schedule another.
+      pending.set(false);
+      lastBroadcast = System.currentTimeMillis();
+      broadcastCount.incrementAndGet();
+      broadcast.run();
+    }
+  };
+
+  /**
+   * Create a LobbyBroadcaster.
+   * 
+   * @param executor
+   *          The executor on which broadcasts are run.
+   * @param broadcast
+   *          Sends the lobby to clients.
+   * @param window
+   *          The minimum time (in milliseconds) between the start of two broadcasts.
+   */
+  public LobbyBroadcaster(ScheduledExecutorService executor, Runnable broadcast, long window) {
+    this.executor = executor;
+    this.broadcast = broadcast;
+    this.window = window;
+  }
+
+  /**
+   * Request that the lobby be broadcast. The broadcast is run on the executor, either immediately or
+   * at the end of the current window.
+   */
+  public void requestBroadcast() {
+    requestCount.incrementAndGet();
+    if (pending.compareAndSet(false, true)) {
+      long delay = Math.max(0, lastBroadcast + window - System.currentTimeMillis());
+      executor.schedule(flush, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Get the number of broadcasts requested.
+   * 
+   * @return The number of calls to {@link #requestBroadcast()}.
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * Get the number of broadcasts run.
+   * 
+   * @return The number of broadcasts run.
+   */
+  public long getBroadcastCount() {
+    return broadcastCount.get();
+  }
+
+  /**
+   * Get the number of requests merged into another broadcast.
+   * 
+   * @return The number of requests that did not result in a broadcast of their own.
+   */
+  public long getMergedCount() {
+    return requestCount.get() - broadcastCount.get();
+  }
+}
@@ -0,0 +1,101 @@
+package demo.server;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import demo.client.shared.lobby.LobbyDelta;
+import demo.client.shared.lobby.LobbyQuery;
+import demo.client.shared.lobby.LobbyUpdate;
+import demo.client.shared.meta.GameRoom;
+import demo.client.shared.meta.Player;
+
+/**
+ * Tracks the version of the lobby, and which players and games have changed since the last
+ * {@link LobbyDelta delta} was taken.
+ * 
+ * A delta holds the current state of every changed player and game (or its removal), so applying a
+ * delta more than once, or after a snapshot that already includes some of its changes, is harmless.
+ * 
+ * Snapshots are answered from a {@link LobbyIndex}, which is updated from each delta, so that a
+ * snapshot holds exactly the lobby at its version.
+ */
+public class LobbyChanges {
+
+  private int version = 0;
+  private Set<Integer> changedPlayers = new HashSet<Integer>();
+  private Set<Integer> changedGames = new HashSet<Integer>();
+  private LobbyIndex index = new LobbyIndex();
+
+  /**
+   * Mark a player as having entered, left or changed in the lobby.
+   * 
+   * @param playerId
+   *          The id of the player.
+   */
+  public synchronized void playerChanged(int playerId) {
+    changedPlayers.add(playerId);
+  }
+
+  /**
+   * Mark a game as having started, ended or changed.
+   * 
+   * @param gameId
+   *          The id of the game.
+   */
+  public synchronized void gameChanged(int gameId) {
+    changedGames.add(gameId);
+  }
+
+  /**
+   * Take a delta of all changes since the last delta was taken, and advance the version.
+   * 
+   * @param players
+   *          A map of player ids to the players currently in the lobby.
+   * @param games
+   *          A map of game ids to the games currently in progress.
+   * @return A delta from the previous version, or null if nothing has changed.
+   */
+  public synchronized LobbyDelta takeDelta(Map<Integer, Player> players, Map<Integer, GameRoom> games) {
+    if (changedPlayers.isEmpty() && changedGames.isEmpty()) {
+      return null;
+    }
+
+    LobbyDelta delta = new LobbyDelta(version, version + 1);
+    for (Integer id : changedPlayers) {
+      Player player = players.get(id);
+      if (player != null) {
+        delta.getPlayers().add(player);
+      }
+      else {
+        delta.getRemovedPlayerIds().add(id);
+      }
+    }
+    for (Integer id : changedGames) {
+      GameRoom game = games.get(id);
+      if (game != null) {
+        delta.getGames().add(game);
+      }
+      else {
+        delta.getRemovedGameIds().add(id);
+      }
+    }
+    changedPlayers.clear();
+    changedGames.clear();
+    version += 1;
+    index.apply(delta);
+
+    return delta;
+  }
+
+  /**
+   * Take a snapshot of a page of the lobby at the current version.
+   * 
+   * @param query
+   *          The page of the lobby to take.
+   * @return A copy of the page of the lobby.
+   */
+  public synchronized LobbyUpdate snapshot(LobbyQuery query) {
+    return index.query(query, version);
+  }
+}
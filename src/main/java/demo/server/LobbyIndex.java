@@ -0,0 +1,185 @@
+package demo.server;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import demo.client.shared.lobby.LobbyDelta;
+import demo.client.shared.lobby.LobbyQuery;
+import demo.client.shared.lobby.LobbyUpdate;
+import demo.client.shared.meta.GameRoom;
+import demo.client.shared.meta.Player;
+
+/**
+ * Indexes of the players in the lobby and the games in progress, for answering
+ * {@link LobbyQuery lobby queries} without scanning the whole lobby.
+ * 
+ * Players are indexed by lower case name, so that a name prefix selects a contiguous range. Games
+ * are indexed by id, games with a free slot are also indexed separately, and the games of players
+ * are indexed by the players' lower case names, so that a name prefix selects the games to list
+ * without looking at any others.
+ * 
+ * The index holds its own copies of the players and games in each delta, so that it stays at the
+ * version of the last delta applied while the live objects change. A query walks the entries
+ * before its page, and counts the entries matching its filter, so its cost grows with the page
+ * number and the number of matches, though not with the size of the rest of the lobby.
+ * 
+ * This class is not thread safe.
+ */
+public class LobbyIndex {
+
+  /** The largest number of players, and of games, sent on a page, whatever size the client asks for. */
+  public static final int MAX_PAGE_SIZE = 100;
+
+  /** Players keyed by lower case name, then id. */
+  private final TreeMap<String, Player> playersByName = new TreeMap<String, Player>();
+  /** A map of player ids to keys in {@link #playersByName}. */
+  private final Map<Integer, String> playerKeys = new HashMap<Integer, String>();
+  private final TreeMap<Integer, GameRoom> games = new TreeMap<Integer, GameRoom>();
+  /** Games with room for another player. */
+  private final TreeMap<Integer, GameRoom> openGames = new TreeMap<Integer, GameRoom>();
+  /** The ids of games keyed by the lower case names, then ids, of their players. */
+  private final TreeMap<String, Integer> gamesByPlayerName = new TreeMap<String, Integer>();
+
+  /**
+   * Update the indexes with the changes in a delta.
+   * 
+   * @param delta
+   *          Changes to the lobby.
+   */
+  public void apply(LobbyDelta delta) {
+    for (Integer id : delta.getRemovedPlayerIds()) {
+      removePlayer(id);
+    }
+    for (Player player : delta.getPlayers()) {
+      removePlayer(player.getId());
+      String key = playerKey(player);
+      playersByName.put(key, copyOf(player));
+      playerKeys.put(player.getId(), key);
+    }
+    for (Integer id : delta.getRemovedGameIds()) {
+      removeGame(id);
+    }
+    for (GameRoom live : delta.getGames()) {
+      removeGame(live.getId());
+      GameRoom game = copyOf(live);
+      games.put(game.getId(), game);
+      if (game.hasFreeSlot()) {
+        openGames.put(game.getId(), game);
+      }
+      for (Player player : game.getPlayers().values()) {
+        gamesByPlayerName.put(playerKey(player), game.getId());
+      }
+    }
+  }
+
+  private void removeGame(int id) {
+    GameRoom game = games.remove(id);
+    if (game != null) {
+      openGames.remove(id);
+      for (Player player : game.getPlayers().values()) {
+        gamesByPlayerName.remove(playerKey(player));
+      }
+    }
+  }
+
+  private void removePlayer(int id) {
+    String key = playerKeys.remove(id);
+    if (key != null) {
+      playersByName.remove(key);
+    }
+  }
+
+  /**
+   * Get a page of the lobby.
+   * 
+   * @param query
+   *          The page to get. Its page size is clamped to at most {@link #MAX_PAGE_SIZE}.
+   * @param version
+   *          The version of the lobby in the indexes.
+   * @return A snapshot of the page.
+   */
+  public LobbyUpdate query(LobbyQuery query, int version) {
+    String prefix = nameKey(query.getNamePrefix());
+    SortedMap<String, Player> matchingPlayers = prefix.length() == 0 ? playersByName : playersByName.subMap(prefix,
+            prefix + Character.MAX_VALUE);
+
+    // Queries come from clients, and may not have been built through their setters.
+    int pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, query.getPageSize()));
+    query.setPageSize(pageSize);
+    long offset = (long) Math.max(0, query.getPage()) * pageSize;
+
+    Map<Integer, Player> playerPage = new LinkedHashMap<Integer, Player>();
+    Iterator<Player> players = matchingPlayers.values().iterator();
+    for (long i = 0; players.hasNext() && i < offset + pageSize; i++) {
+      Player player = players.next();
+      if (i >= offset) {
+        playerPage.put(player.getId(), player);
+      }
+    }
+
+    Map<Integer, GameRoom> candidates = query.isFreeSlotsOnly() ? openGames : games;
+    Collection<Integer> matchingGames = candidates.keySet();
+    if (prefix.length() > 0) {
+      // Games with any matching player, in order of id.
+      TreeSet<Integer> ids = new TreeSet<Integer>();
+      for (Integer id : gamesByPlayerName.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+        if (candidates.containsKey(id)) {
+          ids.add(id);
+        }
+      }
+      matchingGames = ids;
+    }
+
+    Map<Integer, GameRoom> gamePage = new LinkedHashMap<Integer, GameRoom>();
+    Iterator<Integer> gameIds = matchingGames.iterator();
+    for (long i = 0; gameIds.hasNext() && i < offset + pageSize; i++) {
+      Integer id = gameIds.next();
+      if (i >= offset) {
+        gamePage.put(id, candidates.get(id));
+      }
+    }
+
+    LobbyUpdate update = new LobbyUpdate(playerPage, gamePage, version);
+    update.setQuery(query);
+    update.setPlayerCount(matchingPlayers.size());
+    update.setGameCount(matchingGames.size());
+
+    return update;
+  }
+
+  private static String playerKey(Player player) {
+    return nameKey(player.getName()) + '\u0000' + player.getId();
+  }
+
+  /**
+   * Copy the fields of a player shown in the lobby.
+   */
+  private static Player copyOf(Player player) {
+    return new Player(player.getId(), player.getName(), player.getGameId());
+  }
+
+  /**
+   * Copy the fields of a game shown in the lobby. Scores are not shown, and so are not copied.
+   */
+  private static GameRoom copyOf(GameRoom game) {
+    GameRoom copy = new GameRoom();
+    copy.setId(game.getId());
+    copy.setSeed(game.getSeed());
+    copy.setLockstep(game.isLockstep());
+    for (Player player : game.getPlayers().values()) {
+      copy.getPlayers().put(player.getId(), copyOf(player));
+    }
+
+    return copy;
+  }
+
+  private static String nameKey(String name) {
+    return name != null ? name.toLowerCase() : "";
+  }
+}
@@ -1,16 +1,18 @@
 package demo.server;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Event;
 import javax.enterprise.event.Observes;
@@ -23,22 +25,44 @@ import org.jboss.errai.bus.client.api.messaging.MessageCallback;
 import org.jboss.errai.bus.server.annotations.Service;
 
 import demo.client.shared.lobby.Invitation;
+import demo.client.shared.lobby.LobbyDelta;
+import demo.client.shared.lobby.LobbyQuery;
 import demo.client.shared.lobby.LobbyUpdate;
 import demo.client.shared.lobby.LobbyUpdateRequest;
 import demo.client.shared.lobby.RegisterRequest;
 import demo.client.shared.message.Command;
+import demo.client.shared.message.CorrectionEvent;
 import demo.client.shared.message.ExitMessage;
+import demo.client.shared.message.GameFrame;
+import demo.client.shared.message.InputEvent;
 import demo.client.shared.message.MoveEvent;
+import demo.client.shared.message.PerfReport;
 import demo.client.shared.message.ScoreEvent;
 import demo.client.shared.meta.GameRoom;
 import demo.client.shared.meta.Player;
 import demo.client.shared.meta.ScoreTracker;
+import demo.server.metrics.Gauge;
+import demo.server.metrics.MetricsRegistry;
 
 /**
  * A class for facilitating games between clients over a network.
  * 
  * This class responds to, fires events to, and catches events from clients; maintains the list of
  * games and players in the lobby; and also uses a message bus to act as a relay between clients.
+ * Clients are sent a snapshot of the lobby when they ask for one, and versioned deltas after every
+ * change.
+ * Moves and scores are not relayed as sent: each game is replayed from client inputs by a
+ * {@link GameSimulation}, which decides the moves and scores broadcast to clients.
+ * 
+ * Game rooms are partitioned across the shards of a {@link RoomExecutor}. Every change to a room
+ * (players joining and leaving, inputs, heart beats and timeouts) runs on the shard owning it, so
+ * rooms are never modified by two threads at once.
+ * 
+ * Idle players are found with {@link TimingWheel timing wheels}: one for the lobby, and one for the
+ * players of each shard. Each heart beat reschedules a player's expiry, so only players who have
+ * actually timed out are visited.
+ * 
+ * Every message handled, frame sent and heart beat sweep is recorded in the {@link RelayMetrics}.
  */
 @ApplicationScoped
 @Service("Relay")
@@ -46,24 +70,42 @@ public class LobbyServer implements MessageCallback {
 
   private static final long LOBBY_TIMEOUT = 20000;
   private static final long GAME_TIMEOUT = 10000;
+  /** The resolution (in milliseconds) of timeouts. */
+  private static final long EXPIRY_TICK = 1000;
+  /** The time (in milliseconds) over which updates to a game are batched into a single frame. */
+  private static final long FRAME_TICK = Long.getLong("blockdrop.frameTick", 50);
+  /** True iff new games are played in lockstep, with opponents' boards replayed from their inputs. */
+  private static final boolean LOCKSTEP = !Boolean.getBoolean("blockdrop.noLockstep");
+  /** The minimum time (in milliseconds) between lobby broadcasts. */
+  private static final long LOBBY_BROADCAST_WINDOW = Long.getLong("blockdrop.lobby.broadcastWindow", 100);
 
   /** A map of game ids to games that are currently in progress. */
   private Map<Integer, GameRoom> games = new ConcurrentHashMap<Integer, GameRoom>();
 
+  /** A map of game ids to the simulations of games that are currently in progress. */
+  private Map<Integer, GameSimulation> simulations = new ConcurrentHashMap<Integer, GameSimulation>();
+
+  /** Used to generate the seed of each game. */
+  private Random seeds = new Random();
+
   /** A map of player ids to lobbyPlayers that are currently in the lobby. */
   private Map<Integer, Player> lobbyPlayers = new ConcurrentHashMap<Integer, Player>();
+  /** A map of the ids of players seated in game rooms to the ids of their games. */
+  private ConcurrentMap<Integer, Integer> seatedPlayers = new ConcurrentHashMap<Integer, Integer>();
 
-  /** Heart beat timestamps of players in lobby. */
-  private Map<Integer, Long> lobbyHeartBeats = new ConcurrentHashMap<Integer, Long>();
+  /** Expires the ids of idle players in the lobby. Only accessed from the lobby executor's thread. */
+  private TimingWheel<Integer> lobbyHeartBeats;
 
-  /** Heart beat timestamps of players in games. */
-  private Map<Player, Long> gameHeartBeats = new ConcurrentSkipListMap<Player, Long>();
+  /** The number of this server, used as the prefix of the ids it assigns. */
+  private static final int NODE = Integer.getInteger("blockdrop.node", 0);
+  /** The minimum time (in milliseconds) before the id of a removed player or game is reused. */
+  private static final long ID_QUARANTINE = Long.getLong("blockdrop.idQuarantine", 10 * 60 * 1000);
 
-  /** This value is incremented to assign unique player ids. */
-  private int curPlayerId = 1;
+  /** Assigns unique player ids. */
+  private IdAllocator playerIds = new IdAllocator(NODE, ID_QUARANTINE);
 
-  /** This value is incremented to assign unique game ids. */
-  private int curGameId = 1;
+  /** Assigns unique game ids. */
+  private IdAllocator gameIds = new IdAllocator(NODE, ID_QUARANTINE);
 
   /** Used for receiving messages from clients. */
   @Inject
@@ -73,110 +115,266 @@ public class LobbyServer implements MessageCallback {
   @Inject
   private Event<Player> playerRegistration;
 
-  /** Used for sending lobby updates to clients. */
+  /** Used for sending lobby snapshots to clients. */
   @Inject
   private Event<LobbyUpdate> lobbyUpdate;
 
-  private Timer lobbyTimer;
-  private Timer gameTimer;
+  /** Used for sending changes to the lobby to clients. */
+  @Inject
+  private Event<LobbyDelta> lobbyDelta;
+
+  /** Used for exposing metrics of the relay. */
+  @Inject
+  private MetricsRegistry metrics;
+
+  /** Records the traffic and heart beats handled by this server. */
+  private RelayMetrics relayMetrics;
+
+  /** Tracks changes to the lobby since the last lobby delta was sent. */
+  private LobbyChanges lobbyChanges = new LobbyChanges();
+
+  /** Coalesces bursts of lobby changes into a single delta. */
+  private LobbyBroadcaster lobbyBroadcaster;
+
+  /** Runs all tasks that modify game rooms, on the shard owning each room. */
+  private RoomExecutor roomExecutor;
+
+  /** The game rooms owned by each shard. Each map is only accessed from its shard's thread. */
+  private List<Map<Integer, GameRoom>> shardRooms;
+
+  /**
+   * The players in the game rooms of each shard, with the time of each player's last heart beat. Each is
+   * only accessed from its shard's thread.
+   */
+  private List<IdRegistry<Player>> shardPlayers;
+
+  /**
+   * Expires the ids of players in the game rooms of each shard, once they may have become idle. Each is
+   * only accessed from its shard's thread.
+   */
+  private List<TimingWheel<Integer>> shardHeartBeats;
+
+  /** Batches updates to the games of each shard. Each is only accessed from its shard's thread. */
+  private List<GameOutbox> shardOutboxes;
+
+  /** Runs all tasks that modify lobby heart beats, and lobby broadcasts. */
+  private ScheduledExecutorService lobbyExecutor;
+
+  /** Sends the results of game simulations to clients. */
+  private GameSimulation.Listener simulationListener = new GameSimulation.Listener() {
+
+    @Override
+    public void moveUpdated(MoveEvent event) {
+      broadcastMove(event);
+    }
+
+    @Override
+    public void scoreUpdated(ScoreEvent event) {
+      updateScoreRemote(event);
+    }
+
+    @Override
+    public void boardCorrected(CorrectionEvent event) {
+      sendCorrection(event);
+    }
+
+    @Override
+    public void inputsReplayed(InputEvent event) {
+      outboxOf(event.getGameId()).addInputs(event.getGameId(), event);
+    }
+
+    @Override
+    public void boardSynced(CorrectionEvent event) {
+      outboxOf(event.getPlayer().getGameId()).addSync(event.getPlayer().getGameId(), event);
+    }
+  };
+
+  /** Records the fan-out of each frame sent. Called from the thread of the shard owning the game room. */
+  private GameOutbox.FrameListener frameListener = new GameOutbox.FrameListener() {
+
+    @Override
+    public void frameSent(int gameId, GameFrame frame) {
+      GameRoom room = games.get(gameId);
+      relayMetrics.frameSent(gameId, frame.size(), room != null ? room.getPlayers().size() : -1);
+    }
+  };
 
   @PostConstruct
-  private void startTimers() {
-    lobbyTimer = new Timer();
-    lobbyTimer.schedule(new TimerTask() {
+  private void startExecutors() {
+    relayMetrics = new RelayMetrics(metrics);
+    roomExecutor = new RoomExecutor(Runtime.getRuntime().availableProcessors(), "room-shard");
+    shardRooms = new ArrayList<Map<Integer, GameRoom>>(roomExecutor.getShardCount());
+    shardPlayers = new ArrayList<IdRegistry<Player>>(roomExecutor.getShardCount());
+    shardHeartBeats = new ArrayList<TimingWheel<Integer>>(roomExecutor.getShardCount());
+    shardOutboxes = new ArrayList<GameOutbox>(roomExecutor.getShardCount());
+    for (int i = 0; i < roomExecutor.getShardCount(); i++) {
+      shardRooms.add(new HashMap<Integer, GameRoom>());
+      shardPlayers.add(new IdRegistry<Player>());
+      shardHeartBeats.add(new TimingWheel<Integer>(EXPIRY_TICK, System.currentTimeMillis()));
+      shardOutboxes.add(new GameOutbox(messageBus, frameListener));
+    }
+    roomExecutor.scheduleOnEachShard(new RoomExecutor.ShardTask() {
+      @Override
+      public void run(int shard) {
+        LobbyServer.this.cleanGameRooms(shard);
+      }
+    }, EXPIRY_TICK);
+    roomExecutor.scheduleOnEachShard(new RoomExecutor.ShardTask() {
+      @Override
+      public void run(int shard) {
+        shardOutboxes.get(shard).flush();
+      }
+    }, FRAME_TICK);
+
+    lobbyHeartBeats = new TimingWheel<Integer>(EXPIRY_TICK, System.currentTimeMillis());
+    lobbyExecutor = Executors.newSingleThreadScheduledExecutor();
+    lobbyExecutor.scheduleWithFixedDelay(new Runnable() {
       @Override
       public void run() {
         LobbyServer.this.cleanLobby();
       }
-    }, 0, LOBBY_TIMEOUT);
+    }, 0, EXPIRY_TICK, TimeUnit.MILLISECONDS);
 
-    gameTimer = new Timer();
-    gameTimer.schedule(new TimerTask() {
+    lobbyBroadcaster = new LobbyBroadcaster(lobbyExecutor, new Runnable() {
       @Override
       public void run() {
-        LobbyServer.this.cleanGameRooms();
+        LobbyServer.this.broadcastLobbyDelta();
+      }
+    }, LOBBY_BROADCAST_WINDOW);
+
+    registerGauges();
+  }
+
+  private void registerGauges() {
+    relayMetrics.gauge("lobby.players", new Gauge() {
+      @Override
+      public long getValue() {
+        return lobbyPlayers.size();
       }
-    }, 0, GAME_TIMEOUT);
+    });
+    relayMetrics.gauge("rooms.count", new Gauge() {
+      @Override
+      public long getValue() {
+        return games.size();
+      }
+    });
+    relayMetrics.gauge("lobby.broadcasts.requested", new Gauge() {
+      @Override
+      public long getValue() {
+        return lobbyBroadcaster.getRequestCount();
+      }
+    });
+    relayMetrics.gauge("lobby.broadcasts.sent", new Gauge() {
+      @Override
+      public long getValue() {
+        return lobbyBroadcaster.getBroadcastCount();
+      }
+    });
+  }
+
+  @PreDestroy
+  private void stopExecutors() {
+    lobbyExecutor.shutdownNow();
+    roomExecutor.shutdown();
   }
 
   /**
-   * Find and remove idle players from game rooms.
+   * Find and remove idle players from the game rooms owned by a shard. Must be called from that
+   * shard's thread.
+   * 
+   * @param shard
+   *          The index of the shard.
    */
-  private void cleanGameRooms() {
-    long curTime = System.currentTimeMillis();
-    final Iterator<GameRoom> iterator = games.values().iterator();
-    boolean modified = false;
+  private void cleanGameRooms(int shard) {
+    long started = System.nanoTime();
+    final long now = System.currentTimeMillis();
+    final List<Integer> expired = new ArrayList<Integer>();
+    shardHeartBeats.get(shard).advance(now, new TimingWheel.ExpiryListener<Integer>() {
+      @Override
+      public void expired(Integer id) {
+        expired.add(id);
+      }
+    });
 
-    while (iterator.hasNext()) {
-      final GameRoom game = iterator.next();
-      modified = cleanGameRoom(curTime, game) || modified;
-      if (game.isEmpty()) {
-        iterator.remove();
-        modified = true;
+    boolean modified = false;
+    int removed = 0;
+    int rescheduled = 0;
+    IdRegistry<Player> players = shardPlayers.get(shard);
+    for (Integer id : expired) {
+      if (!players.contains(id)) {
+        continue;
+      }
+      long deadline = players.getStamp(id) + GAME_TIMEOUT;
+      if (deadline > now) {
+        // Heart beats only update the registry, so the wheel catches up here.
+        shardHeartBeats.get(shard).schedule(id, deadline);
+        rescheduled += 1;
+      }
+      else {
+        relayMetrics.playerLeftRoom();
+        removed += 1;
+        modified = removeIdlePlayer(shard, players.remove(id)) || modified;
       }
     }
-    
+
     if (modified) {
       sendLobbyList();
     }
+    relayMetrics.roomsSwept(started, removed, rescheduled);
   }
 
-  private boolean cleanGameRoom(long curTime, GameRoom game) {
-    final Iterator<Player> iterator = game.getPlayers().values().iterator();
-    boolean modified = false;
-    while (iterator.hasNext()) {
-      final Player player = iterator.next();
-      long heartBeat = gameHeartBeats.containsKey(player) ? gameHeartBeats.get(player) : System.currentTimeMillis();
-      if (curTime - heartBeat > GAME_TIMEOUT) {
-        iterator.remove();
-        gameHeartBeats.remove(player);
-        clearGameId(player);
-        broadcastPlayerLeftGame(player, game.getId());
-        modified = true;
-      }
+  private boolean removeIdlePlayer(int shard, Player player) {
+    final GameRoom game = shardRooms.get(shard).get(player.getGameId());
+    if (game == null) {
+      return false;
+    }
+
+    game.removePlayer(player.getId());
+    lobbyChanges.gameChanged(game.getId());
+    removePlayerFromSimulation(player, game.getId());
+    clearGameId(player);
+    broadcastPlayerLeftGame(player, game.getId());
+    // The player's id is released if they do not return to the lobby.
+    seatedPlayers.remove(player.getId(), game.getId());
+    updateLobbyHeartBeat(player);
+    if (game.isEmpty()) {
+      shardRooms.get(shard).remove(game.getId());
+      games.remove(game.getId());
+      simulations.remove(game.getId());
+      shardOutboxes.get(shard).removeGame(game.getId());
+      relayMetrics.roomRemoved(game.getId());
+      gameIds.release(game.getId());
     }
-    
-    return modified;
+
+    return true;
   }
 
   /**
-   * Find and remove idle players from the lobby.
+   * Find and remove idle players from the lobby. Must be called from the lobby executor's thread.
    */
   private void cleanLobby() {
-    long curTime = System.currentTimeMillis();
-    List<Integer> removed = new ArrayList<Integer>();
-
-    for (Entry<Integer, Long> heartBeat : lobbyHeartBeats.entrySet()) {
-      if (curTime - heartBeat.getValue() > LOBBY_TIMEOUT) {
-        removed.add(heartBeat.getKey());
+    long started = System.nanoTime();
+    final List<Integer> removed = new ArrayList<Integer>();
+    lobbyHeartBeats.advance(System.currentTimeMillis(), new TimingWheel.ExpiryListener<Integer>() {
+      @Override
+      public void expired(Integer id) {
+        removed.add(id);
       }
-    }
+    });
 
     if (!removed.isEmpty()) {
       for (final Integer id : removed) {
         lobbyPlayers.remove(id);
-        lobbyHeartBeats.remove(id);
+        lobbyChanges.playerChanged(id);
+        // The id of a player who has joined a game is still in use, even if a late keep-alive
+        // scheduled another lobby timeout.
+        if (!seatedPlayers.containsKey(id)) {
+          playerIds.release(id);
+        }
       }
       sendLobbyList();
     }
-  }
-
-  /**
-   * Get a unique id for a player.
-   * 
-   * @return A positive integer that is unique to a player.
-   */
-  private synchronized int nextPlayerId() {
-    return curPlayerId++;
-  }
-
-  /**
-   * Get a unique id for a game.
-   * 
-   * @return A positive integer that is unique to a game.
-   */
-  private synchronized int nextGameId() {
-    return curGameId++;
+    relayMetrics.lobbySwept(started, removed.size());
   }
 
   /**
@@ -186,8 +384,11 @@ public class LobbyServer implements MessageCallback {
    *          The request containing the Player object to be registered.
    */
   public void addPlayerToLobby(@Observes RegisterRequest request) {
+    long received = relayMetrics.eventReceived(request);
     Player player = request.getPlayer();
-    if (!request.hasRegistered()) {
+    // An idle player's id is taken back if it has not yet been reused. Ids from another server, from
+    // before a restart, or reused while the player was idle, may belong to someone else.
+    if (!request.hasRegistered() || !playerIds.reclaim(player.getId(), player.getIdGeneration())) {
       registerPlayer(player);
     }
     else {
@@ -199,11 +400,14 @@ public class LobbyServer implements MessageCallback {
     }
 
     playerRegistration.fire(player);
+    relayMetrics.eventHandled(request, received);
   }
 
   private void addPlayerToLobby(Player player) {
     lobbyPlayers.put(player.getId(), player);
-    lobbyHeartBeats.put(player.getId(), System.currentTimeMillis());
+    lobbyChanges.playerChanged(player.getId());
+    updateLobbyHeartBeat(player);
+    sendLobbyList();
   }
 
   private void clearGameId(Player player) {
@@ -211,7 +415,9 @@ public class LobbyServer implements MessageCallback {
   }
 
   private void registerPlayer(Player player) {
-    player.setId(nextPlayerId());
+    player.setId(playerIds.allocate());
+    player.setIdGeneration(playerIds.getGeneration(player.getId()));
+    clearGameId(player);
   }
 
   private boolean isPlayerInLobby(Player player) {
@@ -219,43 +425,72 @@ public class LobbyServer implements MessageCallback {
   }
 
   /**
-   * Respond to a lobbyUpdateRequest by sending a copy of the lobby to the client. This method
+   * Respond to a lobbyUpdateRequest by sending a copy of the requested page of the lobby to the client. This method
    * should only be invoked by the Errai Framework in response to a
    * {@code Event<LobbyUpdateRequest>} fired from a client.
    */
   public void handleLobbyUpdateRequest(@Observes LobbyUpdateRequest lobbyUpdateRequest) {
-    sendLobbyList();
+    long received = relayMetrics.eventReceived(lobbyUpdateRequest);
+    lobbyUpdate.fire(lobbyChanges.snapshot(lobbyUpdateRequest.getQuery() != null ? lobbyUpdateRequest.getQuery()
+            : new LobbyQuery()));
+    relayMetrics.eventHandled(lobbyUpdateRequest, received);
   }
 
   /**
    * Respond to an invitation by relaying it to the appropriate client. This method should only be
    * invoked by the Errai Framework in response to an {@code Event<Invitation>} fired from a client.
    */
-  public void handleInvitation(@Observes Invitation invitation) {
+  public void handleInvitation(@Observes final Invitation invitation) {
+    final long received = relayMetrics.eventReceived(invitation);
     // Make game room
-    GameRoom room = new GameRoom();
-    room.setId(nextGameId());
-    games.put(room.getId(), room);
+    final GameRoom room = new GameRoom();
+    room.setId(gameIds.allocate());
+    room.setSeed(seeds.nextInt());
+    room.setLockstep(LOCKSTEP);
     invitation.setGameId(room.getId());
-    addPlayerToGame(invitation.getHost(), room.getId());
-
-    for (Player guest : invitation.getGuests()) {
-      // Relay invitation to appropriate client.
-      Invitation targetedInvite = new Invitation(invitation, guest);
-      MessageBuilder.createMessage().toSubject("Client" + guest.getId()).command(Command.INVITATION)
-              .withValue(targetedInvite).noErrorHandling().sendNowWith(messageBus);
-    }
 
-    sendLobbyList();
+    roomExecutor.execute(room.getId(), new Runnable() {
+      @Override
+      public void run() {
+        simulations.put(room.getId(), new GameSimulation(room, simulationListener));
+        shardRooms.get(roomExecutor.shardOf(room.getId())).put(room.getId(), room);
+        games.put(room.getId(), room);
+        lobbyChanges.gameChanged(room.getId());
+        addPlayerToGame(invitation.getHost(), room.getId());
+
+        for (Player guest : invitation.getGuests()) {
+          // Relay invitation to appropriate client.
+          Invitation targetedInvite = new Invitation(invitation, guest);
+          MessageBuilder.createMessage().toSubject("Client" + guest.getId()).command(Command.INVITATION)
+                  .withValue(targetedInvite).noErrorHandling().sendNowWith(messageBus);
+        }
+
+        sendLobbyList();
+        relayMetrics.eventHandled(invitation, received);
+      }
+    });
   }
 
   private void addPlayerToGame(Player player, int gameId) {
-    if (games.get(gameId) != null) {
+    if (games.get(gameId) != null && games.get(gameId).hasFreeSlot() && playerIds.isIssued(player.getId())) {
       lobbyPlayers.remove(player.getId());
-      lobbyHeartBeats.remove(player.getId());
+      lobbyChanges.playerChanged(player.getId());
+      // Seat the player before cancelling the lobby timeout, so that keep-alives can not re-arm it.
+      seatedPlayers.put(player.getId(), gameId);
+      removeLobbyHeartBeat(player);
       games.get(gameId).addPlayer(player);
-      gameHeartBeats.put(player, System.currentTimeMillis());
+      lobbyChanges.gameChanged(gameId);
+      GameSimulation simulation = simulations.get(gameId);
+      if (simulation != null) {
+        simulation.addPlayer(player);
+      }
       player.setGameId(gameId);
+      long now = System.currentTimeMillis();
+      if (!shardPlayers.get(roomExecutor.shardOf(gameId)).contains(player.getId())) {
+        relayMetrics.playerJoinedRoom();
+      }
+      shardPlayers.get(roomExecutor.shardOf(gameId)).put(player.getId(), player, now);
+      shardHeartBeats.get(roomExecutor.shardOf(gameId)).schedule(player.getId(), now + GAME_TIMEOUT);
       MessageBuilder.createMessage().toSubject("Client" + player.getId()).command(Command.JOIN_GAME)
       .withValue(games.get(gameId)).noErrorHandling().sendNowWith(messageBus);
       ScoreTracker scoreTracker = games.get(gameId).getScoreTracker(player);
@@ -265,76 +500,200 @@ public class LobbyServer implements MessageCallback {
   }
 
   /**
-   * Fire an {@code Event<LobbyUpdate>} to connected clients. This should result in clients
-   * refreshing their lobby lists.
+   * Request that changes to the lobby be sent to connected clients. Changes made in quick succession
+   * are sent together.
    */
   private void sendLobbyList() {
-    lobbyUpdate.fire(new LobbyUpdate(lobbyPlayers, games));
+    lobbyBroadcaster.requestBroadcast();
+  }
+
+  /**
+   * Fire an {@code Event<LobbyDelta>} to connected clients, if the lobby has changed. This should
+   * result in clients updating their lobby lists.
+   */
+  private void broadcastLobbyDelta() {
+    // Deltas must be fired in the order of their versions.
+    synchronized (lobbyChanges) {
+      LobbyDelta delta = lobbyChanges.takeDelta(lobbyPlayers, games);
+      if (delta != null) {
+        lobbyDelta.fire(delta);
+      }
+    }
   }
 
   @Override
   public void callback(Message message) {
-    switch (Command.valueOf(message.getCommandType())) {
+    final Command command = Command.valueOf(message.getCommandType());
+    final long received = relayMetrics.commandReceived(command);
+    switch (command) {
     case JOIN_GAME:
-      Invitation invitation = message.getValue(Invitation.class);
-      addPlayerToGame(invitation.getTarget(), invitation.getGameId());
-      sendLobbyList();
+      final Invitation invitation = message.getValue(Invitation.class);
+      roomExecutor.execute(invitation.getGameId(), new Runnable() {
+        @Override
+        public void run() {
+          addPlayerToGame(invitation.getTarget(), invitation.getGameId());
+          sendLobbyList();
+          relayMetrics.commandHandled(command, received);
+        }
+      });
       break;
 
     case LEAVE_GAME:
-      ExitMessage exitMessage = message.getValue(ExitMessage.class);
-      removePlayerFromGameAndSendUpdates(exitMessage.getPlayer(), exitMessage.getGame().getId());
-      sendLobbyList();
+      final ExitMessage exitMessage = message.getValue(ExitMessage.class);
+      roomExecutor.execute(exitMessage.getGame().getId(), new Runnable() {
+        @Override
+        public void run() {
+          removePlayerFromGameAndSendUpdates(exitMessage.getPlayer(), exitMessage.getGame().getId());
+          sendLobbyList();
+          relayMetrics.commandHandled(command, received);
+        }
+      });
       break;
 
-    case UPDATE_SCORE:
-      ScoreEvent scoreEvent = message.getValue(ScoreEvent.class);
-      updateScoreLocal(scoreEvent.getScoreTracker());
-      updateScoreRemote(scoreEvent);
+    case INPUT_UPDATE:
+      final InputEvent inputEvent = message.getValue(InputEvent.class);
+      roomExecutor.execute(inputEvent.getGameId(), new Runnable() {
+        @Override
+        public void run() {
+          updateGameRoomHeartBeat(inputEvent.getPlayer(), inputEvent.getGameId());
+          simulateInput(inputEvent);
+          relayMetrics.commandHandled(command, received);
+        }
+      });
       break;
 
-    case MOVE_UPDATE:
-      MoveEvent moveEvent = message.getValue(MoveEvent.class);
-      updateGameRoomHeartBeat(moveEvent.getPlayer());
-      broadcastMove(moveEvent);
+    case GAME_KEEP_ALIVE:
+      final Player pausedPlayer = message.getValue(Player.class);
+      roomExecutor.execute(pausedPlayer.getGameId(), new Runnable() {
+        @Override
+        public void run() {
+          updateGameRoomHeartBeat(pausedPlayer, pausedPlayer.getGameId());
+          broadcastPause(pausedPlayer);
+          relayMetrics.commandHandled(command, received);
+        }
+      });
       break;
 
-    case GAME_KEEP_ALIVE:
-      updateGameRoomHeartBeat(message.getValue(Player.class));
-      broadcastPause(message.getValue(Player.class));
+    case BOARD_SYNC:
+      final InputEvent syncRequest = message.getValue(InputEvent.class);
+      roomExecutor.execute(syncRequest.getGameId(), new Runnable() {
+        @Override
+        public void run() {
+          GameSimulation simulation = simulations.get(syncRequest.getGameId());
+          if (simulation != null) {
+            simulation.requestSync(syncRequest.getPlayer().getId());
+          }
+          relayMetrics.commandHandled(command, received);
+        }
+      });
+      break;
+
+    case PERF_REPORT:
+      relayMetrics.clientReported(message.getValue(PerfReport.class));
+      relayMetrics.commandHandled(command, received);
       break;
 
     case LOBBY_KEEP_ALIVE:
-      updateLobbyHeartBeat(message.getValue(Player.class));
+      Player lobbyPlayer = message.getValue(Player.class);
+      // A client idle for long enough to have its id given to someone else must not keep the new
+      // owner alive. It is given a new id when it next registers.
+      if (playerIds.reclaim(lobbyPlayer.getId(), lobbyPlayer.getIdGeneration())) {
+        keepLobbyPlayerAlive(lobbyPlayer);
+      }
+      relayMetrics.commandHandled(command, received);
       break;
 
+    case UPDATE_SCORE:
+    case MOVE_UPDATE:
+      // Scores and moves are decided by the game simulation, not by clients.
     case INVITATION:
     default:
+      relayMetrics.commandHandled(command, received);
       break;
     }
   }
 
+  /**
+   * Get the outbox for updates to a game. Must be called from the thread of the shard owning the
+   * game room.
+   */
+  private GameOutbox outboxOf(int gameId) {
+    return shardOutboxes.get(roomExecutor.shardOf(gameId));
+  }
+
   private void broadcastPause(Player player) {
-    MessageBuilder.createMessage("Game" + player.getGameId()).command(Command.GAME_KEEP_ALIVE).withValue(player)
-            .noErrorHandling().sendNowWith(messageBus);
+    outboxOf(player.getGameId()).addPause(player.getGameId(), player);
   }
 
-  private void updateGameRoomHeartBeat(Player player) {
-    gameHeartBeats.put(player, System.currentTimeMillis());
+  /**
+   * Postpone the timeout of a player in a game room. Must be called from the thread of the shard
+   * owning the game room.
+   */
+  private void updateGameRoomHeartBeat(Player player, int gameId) {
+    // Players who have already left the room are not registered, and so are not updated.
+    shardPlayers.get(roomExecutor.shardOf(gameId)).touch(player.getId(), System.currentTimeMillis());
   }
 
-  private void updateLobbyHeartBeat(Player player) {
-    lobbyHeartBeats.put(player.getId(), System.currentTimeMillis());
+  private void updateLobbyHeartBeat(final Player player) {
+    final long deadline = System.currentTimeMillis() + LOBBY_TIMEOUT;
+    lobbyExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        lobbyHeartBeats.schedule(player.getId(), deadline);
+      }
+    });
+  }
+
+  /**
+   * Postpone the lobby timeout of a player sending keep-alives, unless the player has since joined a
+   * game. The check is made on the lobby executor's thread, so that it is ordered with the
+   * cancellation of the timeout when the player joins.
+   */
+  private void keepLobbyPlayerAlive(final Player player) {
+    final long deadline = System.currentTimeMillis() + LOBBY_TIMEOUT;
+    lobbyExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (!seatedPlayers.containsKey(player.getId())) {
+          lobbyHeartBeats.schedule(player.getId(), deadline);
+        }
+      }
+    });
+  }
+
+  private void removeLobbyHeartBeat(final Player player) {
+    lobbyExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        lobbyHeartBeats.cancel(player.getId());
+      }
+    });
+  }
+
+  private void simulateInput(InputEvent inputEvent) {
+    GameSimulation simulation = simulations.get(inputEvent.getGameId());
+    if (simulation != null) {
+      simulation.handleInput(inputEvent);
+    }
+  }
+
+  private void sendCorrection(CorrectionEvent event) {
+    outboxOf(event.getPlayer().getGameId()).addCorrection(event.getPlayer().getGameId(), event);
+  }
+
+  private void removePlayerFromSimulation(Player player, int gameId) {
+    GameSimulation simulation = simulations.get(gameId);
+    if (simulation != null) {
+      simulation.removePlayer(player.getId());
+    }
   }
 
   private void broadcastMove(MoveEvent moveEvent) {
-    MessageBuilder.createMessage("Game" + moveEvent.getGameId()).command(Command.MOVE_UPDATE).withValue(moveEvent)
-            .noErrorHandling().sendNowWith(messageBus);
+    outboxOf(moveEvent.getGameId()).addMove(moveEvent.getGameId(), moveEvent);
   }
 
   private void updateScoreRemote(ScoreEvent event) {
-    MessageBuilder.createMessage("Game" + event.getScoreTracker().getGameId()).command(Command.UPDATE_SCORE)
-            .withValue(event).noErrorHandling().sendNowWith(messageBus);
+    outboxOf(event.getScoreTracker().getGameId()).addScore(event.getScoreTracker().getGameId(), event);
   }
 
   private void updateScoreLocal(ScoreTracker value) {
@@ -345,7 +704,7 @@ public class LobbyServer implements MessageCallback {
   private void removePlayerFromGameAndSendUpdates(Player player, int gameId) {
     final GameRoom gameRoom = games.get(gameId);
 
-    removePlayerFromGameMaps(player, gameRoom);
+    removePlayerFromGameMaps(player, gameId, gameRoom);
     clearGameId(player);
 
     if (gameRoom != null) {
@@ -359,19 +718,30 @@ public class LobbyServer implements MessageCallback {
   }
 
   private void broadcastPlayerLeftGame(Player player, int gameId) {
-    MessageBuilder.createMessage("Game" + gameId).command(Command.LEAVE_GAME).withValue(player).noErrorHandling()
-            .sendNowWith(messageBus);
+    outboxOf(gameId).addLeftPlayer(gameId, player);
   }
 
   private void removeGameAndSendUpdate(int gameId) {
+    shardRooms.get(roomExecutor.shardOf(gameId)).remove(gameId);
     games.remove(gameId);
+    lobbyChanges.gameChanged(gameId);
+    simulations.remove(gameId);
+    outboxOf(gameId).removeGame(gameId);
+    relayMetrics.roomRemoved(gameId);
+    gameIds.release(gameId);
     sendLobbyList();
   }
 
-  private void removePlayerFromGameMaps(Player player, GameRoom gameRoom) {
+  private void removePlayerFromGameMaps(Player player, int gameId, GameRoom gameRoom) {
     if (gameRoom != null) {
       gameRoom.removePlayer(player.getId());
+      lobbyChanges.gameChanged(gameRoom.getId());
+      removePlayerFromSimulation(player, gameRoom.getId());
+    }
+    if (shardPlayers.get(roomExecutor.shardOf(gameId)).remove(player.getId()) != null) {
+      relayMetrics.playerLeftRoom();
     }
-    gameHeartBeats.remove(player);
+    seatedPlayers.remove(player.getId(), gameId);
+    shardHeartBeats.get(roomExecutor.shardOf(gameId)).cancel(player.getId());
   }
 }
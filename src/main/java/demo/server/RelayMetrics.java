@@ -0,0 +1,307 @@
+package demo.server;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import demo.client.shared.message.Command;
+import demo.client.shared.message.PerfReport;
+import demo.server.metrics.Gauge;
+import demo.server.metrics.Histogram;
+import demo.server.metrics.MetricsRegistry;
+import demo.server.metrics.StripedCounter;
+
+/**
+ * The metrics recorded by the {@link LobbyServer}: how many of each command and event it receives and
+ * how long each takes to handle, how widely game frames fan out, and how long heart beat sweeps take
+ * and what they expire.
+ * 
+ * Latencies are recorded in microseconds, from the moment a message is received to the end of its
+ * handling, including any time spent queued for a room's shard.
+ * 
+ * The {@link PerfReport performance reports} of clients are recorded under {@code client.}, one
+ * sample per report, with times in microseconds and rates per minute.
+ */
+public class RelayMetrics {
+
+  private static final long NANOS_PER_MICRO = TimeUnit.MICROSECONDS.toNanos(1);
+
+  private final MetricsRegistry registry;
+  private final Map<Command, StripedCounter> commandsReceived = new EnumMap<Command, StripedCounter>(Command.class);
+  private final Map<Command, Histogram> commandLatencies = new EnumMap<Command, Histogram>(Command.class);
+
+  private final StripedCounter frames;
+  private final StripedCounter updates;
+  private final StripedCounter deliveries;
+  private final Histogram fanOut;
+  /** A map of game ids to the number of frame deliveries to each game in progress. */
+  private final ConcurrentMap<Integer, AtomicLong> roomDeliveries = new ConcurrentHashMap<Integer, AtomicLong>();
+
+  private final StripedCounter playersInRooms;
+  private final StripedCounter lobbyExpired;
+  private final StripedCounter roomExpired;
+  private final StripedCounter roomRescheduled;
+  private final Histogram lobbySweeps;
+  private final Histogram roomSweeps;
+
+  private final StripedCounter clientReports;
+  private final Histogram clientFrameTimes;
+  private final Histogram clientMaxFrameTimes;
+  private final Histogram clientDrawTimes;
+  private final Histogram clientDrawCalls;
+  private final Histogram clientLoopJitter;
+  private final Histogram clientMaxLoopJitter;
+  private final Histogram clientInputRates;
+  private final Histogram clientMessageRates;
+  private final Histogram clientQueueDepths;
+  private final Histogram clientPlaybackDelays;
+  private final Histogram clientMaxPlaybackDelays;
+  private final Histogram clientPlaybackTargets;
+  private final Histogram clientPlaybackSkips;
+  private final Histogram clientLateStates;
+  private final Histogram clientDroppedStates;
+
+  /**
+   * Create a RelayMetrics.
+   * 
+   * @param registry
+   *          The registry in which metrics are recorded.
+   */
+  public RelayMetrics(MetricsRegistry registry) {
+    this.registry = registry;
+    for (Command command : Command.values()) {
+      commandsReceived.put(command, registry.counter("relay.command." + command + ".received"));
+      commandLatencies.put(command, registry.histogram("relay.command." + command + ".latencyMicros"));
+    }
+
+    frames = registry.counter("relay.frames");
+    updates = registry.counter("relay.updates");
+    deliveries = registry.counter("relay.deliveries");
+    fanOut = registry.histogram("relay.fanOut");
+
+    playersInRooms = registry.counter("rooms.players");
+    lobbyExpired = registry.counter("heartbeat.lobby.expired");
+    roomExpired = registry.counter("heartbeat.rooms.expired");
+    roomRescheduled = registry.counter("heartbeat.rooms.rescheduled");
+    lobbySweeps = registry.histogram("sweep.lobby.durationMicros");
+    roomSweeps = registry.histogram("sweep.rooms.durationMicros");
+
+    clientReports = registry.counter("client.reports");
+    clientFrameTimes = registry.histogram("client.frameTimeMicros");
+    clientMaxFrameTimes = registry.histogram("client.maxFrameTimeMicros");
+    clientDrawTimes = registry.histogram("client.drawTimeMicros");
+    clientDrawCalls = registry.histogram("client.drawCallsPerFrame");
+    clientLoopJitter = registry.histogram("client.loopJitterMicros");
+    clientMaxLoopJitter = registry.histogram("client.maxLoopJitterMicros");
+    clientInputRates = registry.histogram("client.inputUpdatesPerMinute");
+    clientMessageRates = registry.histogram("client.gameMessagesPerMinute");
+    clientQueueDepths = registry.histogram("client.maxStateQueueDepth");
+    clientPlaybackDelays = registry.histogram("client.playbackDelayMicros");
+    clientMaxPlaybackDelays = registry.histogram("client.maxPlaybackDelayMicros");
+    clientPlaybackTargets = registry.histogram("client.playbackTargetMicros");
+    clientPlaybackSkips = registry.histogram("client.playbackSkipsPerMinute");
+    clientLateStates = registry.histogram("client.lateStatesPerMinute");
+    clientDroppedStates = registry.histogram("client.droppedStatesPerMinute");
+  }
+
+  /**
+   * Register a gauge.
+   * 
+   * @param name
+   *          The name of the gauge.
+   * @param gauge
+   *          The gauge.
+   */
+  public void gauge(String name, Gauge gauge) {
+    registry.gauge(name, gauge);
+  }
+
+  /**
+   * Note that a command has been received.
+   * 
+   * @param command
+   *          The command.
+   * @return The time (in nanoseconds) at which the command was received, to pass to
+   *         {@link #commandHandled(Command, long)}.
+   */
+  public long commandReceived(Command command) {
+    commandsReceived.get(command).increment();
+
+    return System.nanoTime();
+  }
+
+  /**
+   * Note that a command has been handled.
+   * 
+   * @param command
+   *          The command.
+   * @param received
+   *          The time (in nanoseconds) at which the command was received.
+   */
+  public void commandHandled(Command command, long received) {
+    commandLatencies.get(command).record((System.nanoTime() - received) / NANOS_PER_MICRO);
+  }
+
+  /**
+   * Note that an event from a client has been received.
+   * 
+   * @param event
+   *          The event.
+   * @return The time (in nanoseconds) at which the event was received, to pass to
+   *         {@link #eventHandled(Object, long)}.
+   */
+  public long eventReceived(Object event) {
+    registry.counter("relay.event." + event.getClass().getSimpleName() + ".received").increment();
+
+    return System.nanoTime();
+  }
+
+  /**
+   * Note that an event from a client has been handled.
+   * 
+   * @param event
+   *          The event.
+   * @param received
+   *          The time (in nanoseconds) at which the event was received.
+   */
+  public void eventHandled(Object event, long received) {
+    registry.histogram("relay.event." + event.getClass().getSimpleName() + ".latencyMicros").record(
+            (System.nanoTime() - received) / NANOS_PER_MICRO);
+  }
+
+  /**
+   * Note that a frame has been sent to a game. Must be called from the thread of the shard owning the
+   * game room.
+   * 
+   * @param gameId
+   *          The id of the game.
+   * @param numUpdates
+   *          The number of updates in the frame.
+   * @param recipients
+   *          The number of players to whom the frame is delivered, or -1 if the game has ended.
+   */
+  public void frameSent(int gameId, int numUpdates, int recipients) {
+    frames.increment();
+    updates.add(numUpdates);
+    if (recipients < 0) {
+      return;
+    }
+
+    deliveries.add(recipients);
+    fanOut.record(recipients);
+    AtomicLong forRoom = roomDeliveries.get(gameId);
+    if (forRoom == null) {
+      final AtomicLong created = new AtomicLong();
+      forRoom = created;
+      roomDeliveries.put(gameId, created);
+      registry.gauge(roomDeliveriesName(gameId), new Gauge() {
+        @Override
+        public long getValue() {
+          return created.get();
+        }
+      });
+    }
+    forRoom.addAndGet(recipients);
+  }
+
+  /**
+   * Forget the metrics of a game that has ended. Must be called from the thread of the shard owning
+   * the game room.
+   * 
+   * @param gameId
+   *          The id of the game.
+   */
+  public void roomRemoved(int gameId) {
+    if (roomDeliveries.remove(gameId) != null) {
+      registry.remove(roomDeliveriesName(gameId));
+    }
+  }
+
+  private static String roomDeliveriesName(int gameId) {
+    return "relay.room." + gameId + ".deliveries";
+  }
+
+  /**
+   * Note that a player has joined a game room.
+   */
+  public void playerJoinedRoom() {
+    playersInRooms.increment();
+  }
+
+  /**
+   * Note that a player has left a game room.
+   */
+  public void playerLeftRoom() {
+    playersInRooms.add(-1);
+  }
+
+  /**
+   * Record a sweep of the lobby's heart beats.
+   * 
+   * @param started
+   *          The time (in nanoseconds) at which the sweep started.
+   * @param expired
+   *          The number of players removed from the lobby.
+   */
+  public void lobbySwept(long started, int expired) {
+    lobbySweeps.record((System.nanoTime() - started) / NANOS_PER_MICRO);
+    lobbyExpired.add(expired);
+  }
+
+  /**
+   * Record a sweep of the heart beats of a shard's game rooms.
+   * 
+   * @param started
+   *          The time (in nanoseconds) at which the sweep started.
+   * @param expired
+   *          The number of idle players removed from game rooms.
+   * @param rescheduled
+   *          The number of players whose expiry was postponed, as they had sent a heart beat since it
+   *          was scheduled.
+   */
+  public void roomsSwept(long started, int expired, int rescheduled) {
+    roomSweeps.record((System.nanoTime() - started) / NANOS_PER_MICRO);
+    roomExpired.add(expired);
+    roomRescheduled.add(rescheduled);
+  }
+
+  /**
+   * Record a client's performance report. Reports not covering a positive interval are ignored.
+   * 
+   * @param report
+   *          The samples taken by a client over an interval.
+   */
+  public void clientReported(PerfReport report) {
+    if (report.getInterval() <= 0) {
+      return;
+    }
+
+    clientReports.increment();
+    if (report.getFrames() > 0) {
+      clientFrameTimes.record(toMicros(report.getMeanFrameTime()));
+      clientMaxFrameTimes.record(toMicros(report.getMaxFrameTime()));
+      clientDrawTimes.record(toMicros(report.getMeanDrawTime()));
+      clientDrawCalls.record(Math.round(report.getDrawCallsPerFrame()));
+    }
+    if (report.getLoopFirings() > 0) {
+      clientLoopJitter.record(toMicros(report.getMeanLoopJitter()));
+      clientMaxLoopJitter.record(toMicros(report.getMaxLoopJitter()));
+    }
+    clientInputRates.record(Math.round(60 * report.perSecond(report.getInputUpdatesSent())));
+    clientMessageRates.record(Math.round(60 * report.perSecond(report.getGameMessagesReceived())));
+    clientQueueDepths.record(report.getMaxQueueDepth());
+    clientPlaybackDelays.record(toMicros(report.getMeanPlaybackDelay()));
+    clientMaxPlaybackDelays.record(toMicros(report.getMaxPlaybackDelay()));
+    clientPlaybackTargets.record(toMicros(report.getMeanPlaybackTarget()));
+    clientPlaybackSkips.record(Math.round(60 * report.perSecond(report.getPlaybackSkips())));
+    clientLateStates.record(Math.round(60 * report.perSecond(report.getLateStates())));
+    clientDroppedStates.record(Math.round(60 * report.perSecond(report.getDroppedStates())));
+  }
+
+  private static long toMicros(double millis) {
+    return Math.round(millis * 1000);
+  }
+}
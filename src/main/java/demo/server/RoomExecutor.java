@@ -0,0 +1,138 @@
+package demo.server;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A fixed pool of single-threaded executors, each of which owns a shard of the game rooms on the
+ * server.
+ * 
+ * Every task for a game room is run on the shard owning that room's id, in the order submitted. Room
+ * state therefore only needs to be confined to its shard's thread, and never needs locking.
+ */
+public class RoomExecutor {
+
+  /**
+   * A task run periodically on every shard.
+   */
+  public interface ShardTask {
+
+    /**
+     * Run this task on a shard's thread.
+     * 
+     * @param shard
+     *          The index of the shard running this task, as per {@link RoomExecutor#shardOf(int)}.
+     */
+    public void run(int shard);
+  }
+
+  private static final Logger logger = Logger.getLogger(RoomExecutor.class.getName());
+
+  private final ScheduledExecutorService[] shards;
+
+  /**
+   * Create a RoomExecutor.
+   * 
+   * @param numShards
+   *          The number of shards (and threads) to partition game rooms across.
+   * @param name
+   *          A prefix for the names of the shard threads.
+   */
+  public RoomExecutor(int numShards, final String name) {
+    shards = new ScheduledExecutorService[numShards];
+    for (int i = 0; i < numShards; i++) {
+      final String threadName = name + "-" + i;
+      shards[i] = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, threadName);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+  }
+
+  /**
+   * Get the number of shards.
+   * 
+   * @return The number of shards game rooms are partitioned across.
+   */
+  public int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * Get the shard that owns a game room.
+   * 
+   * @param gameId
+   *          The id of a game room.
+   * @return The index of the shard owning the game room.
+   */
+  public int shardOf(int gameId) {
+    return (gameId & Integer.MAX_VALUE) % shards.length;
+  }
+
+  /**
+   * Run a task on the shard owning a game room. Tasks for the same game room are run in the order
+   * they are submitted.
+   * 
+   * @param gameId
+   *          The id of the game room the task modifies.
+   * @param task
+   *          The task to run.
+   */
+  public void execute(int gameId, Runnable task) {
+    shards[shardOf(gameId)].execute(guard(task));
+  }
+
+  /**
+   * Periodically run a task on every shard. Shards are started at staggered delays, so that they do
+   * not all run the task at once.
+   * 
+   * @param task
+   *          The task to run.
+   * @param period
+   *          The time (in milliseconds) between runs of the task on each shard.
+   */
+  public void scheduleOnEachShard(final ShardTask task, long period) {
+    for (int i = 0; i < shards.length; i++) {
+      final int shard = i;
+      shards[i].scheduleWithFixedDelay(guard(new Runnable() {
+        @Override
+        public void run() {
+          task.run(shard);
+        }
+      }), period * i / shards.length, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stop all shards. Tasks that have not yet started are discarded.
+   */
+  public void shutdown() {
+    for (ScheduledExecutorService shard : shards) {
+      shard.shutdownNow();
+    }
+  }
+
+  /**
+   * Wrap a task so that an exception does not kill the shard thread or cancel a periodic task.
+   */
+  private static Runnable guard(final Runnable task) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          logger.log(Level.SEVERE, "Room task failed", e);
+        }
+      }
+    };
+  }
+}
@@ -0,0 +1,270 @@
+package demo.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hierarchical timing wheel for expiring keys (such as players whose heart beats have stopped).
+ * 
+ * Scheduling, rescheduling and cancelling a key take constant time, and advancing the wheel only
+ * touches keys that have expired (plus keys cascading down from a coarser level, each of which
+ * cascades at most once per level). Deadlines are rounded up to a whole number of ticks.
+ * 
+ * This class is not thread safe. It must only be used from a single thread.
+ * 
+ * @param <K>
+ *          The type of key being expired.
+ */
+public class TimingWheel<K> {
+
+  /**
+   * Receives keys that have expired.
+   * 
+   * @param <K>
+   *          The type of key being expired.
+   */
+  public interface ExpiryListener<K> {
+
+    /**
+     * Called when a key has expired. The key has already been removed from the wheel.
+     * 
+     * @param key
+     *          The expired key.
+     */
+    public void expired(K key);
+  }
+
+  /**
+   * A scheduled key, linked into the list of a single slot.
+   */
+  private static class Entry<K> {
+
+    private final K key;
+    private long deadlineTick;
+    private int level;
+    private int slot;
+    private Entry<K> prev;
+    private Entry<K> next;
+
+    private Entry(K key) {
+      this.key = key;
+    }
+  }
+
+  /** The number of bits of a tick count covered by each level. */
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int SLOT_MASK = SLOTS - 1;
+  private static final int LEVELS = 4;
+
+  private final long tickMillis;
+  /** The last tick processed by {@link #advance(long, ExpiryListener)}. */
+  private long currentTick;
+  /** The first entry of each slot, or null for an empty slot. Indexed by level, then slot. */
+  private final Entry<K>[][] slots;
+  private final Map<K, Entry<K>> entries = new HashMap<K, Entry<K>>();
+
+  /**
+   * Create a TimingWheel.
+   * 
+   * @param tickMillis
+   *          The resolution (in milliseconds) of deadlines.
+   * @param now
+   *          The current time (in milliseconds).
+   */
+  @SuppressWarnings("unchecked")
+  public TimingWheel(long tickMillis, long now) {
+    this.tickMillis = tickMillis;
+    this.currentTick = now / tickMillis;
+    this.slots = new Entry[LEVELS][SLOTS];
+  }
+
+  /**
+   * Schedule a key to expire, replacing any deadline it already has.
+   * 
+   * @param key
+   *          The key to schedule.
+   * @param deadline
+   *          The time (in milliseconds) at which the key expires.
+   */
+  public void schedule(K key, long deadline) {
+    Entry<K> entry = entries.get(key);
+    if (entry == null) {
+      entry = new Entry<K>(key);
+      entries.put(key, entry);
+    }
+    else {
+      unlink(entry);
+    }
+    // Overdue keys expire on the next tick.
+    entry.deadlineTick = Math.max((deadline + tickMillis - 1) / tickMillis, currentTick + 1);
+    link(entry);
+  }
+
+  /**
+   * Replace the deadline of a key, if it is scheduled.
+   * 
+   * @param key
+   *          The key to reschedule.
+   * @param deadline
+   *          The time (in milliseconds) at which the key expires.
+   * @return True iff the key was scheduled (and so has been rescheduled).
+   */
+  public boolean reschedule(K key, long deadline) {
+    if (!entries.containsKey(key)) {
+      return false;
+    }
+    schedule(key, deadline);
+
+    return true;
+  }
+
+  /**
+   * Remove a key from the wheel without it expiring.
+   * 
+   * @param key
+   *          The key to remove.
+   * @return True iff the key was scheduled.
+   */
+  public boolean cancel(K key) {
+    Entry<K> entry = entries.remove(key);
+    if (entry == null) {
+      return false;
+    }
+    unlink(entry);
+
+    return true;
+  }
+
+  /**
+   * Check if a key is scheduled.
+   * 
+   * @param key
+   *          A key.
+   * @return True iff the key is scheduled and has not yet expired.
+   */
+  public boolean contains(K key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * Get the number of scheduled keys.
+   * 
+   * @return The number of keys that are scheduled and have not yet expired.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Expire every key whose deadline is no later than the given time.
+   * 
+   * @param now
+   *          The current time (in milliseconds).
+   * @param listener
+   *          Notified of each expired key, after the wheel has been advanced. The listener may
+   *          schedule and cancel keys.
+   */
+  public void advance(long now, ExpiryListener<K> listener) {
+    List<K> expired = new ArrayList<K>();
+    long targetTick = now / tickMillis;
+    while (currentTick < targetTick) {
+      currentTick += 1;
+      cascade();
+
+      Entry<K> entry = detach(0, (int) (currentTick & SLOT_MASK));
+      while (entry != null) {
+        Entry<K> next = entry.next;
+        if (entry.deadlineTick <= currentTick) {
+          entries.remove(entry.key);
+          expired.add(entry.key);
+        }
+        else {
+          link(entry);
+        }
+        entry = next;
+      }
+    }
+
+    for (K key : expired) {
+      listener.expired(key);
+    }
+  }
+
+  /**
+   * Move entries down from coarser levels whose slot has come due at the current tick.
+   */
+  private void cascade() {
+    for (int level = 1; level < LEVELS; level++) {
+      // A level only turns over when every finer level has wrapped around.
+      if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+        return;
+      }
+
+      Entry<K> entry = detach(level, (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK));
+      while (entry != null) {
+        Entry<K> next = entry.next;
+        link(entry);
+        entry = next;
+      }
+    }
+  }
+
+  /**
+   * Add an entry to the slot matching its deadline.
+   */
+  private void link(Entry<K> entry) {
+    // Entries cascading down at their deadline go in the current slot, which is processed next.
+    long deadlineTick = entry.deadlineTick;
+    long delta = deadlineTick - currentTick;
+
+    int level = 0;
+    while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+      level += 1;
+    }
+    // Deadlines past the end of the last level wait in its furthest slot, and are relinked from there.
+    if (delta >= 1L << (SLOT_BITS * LEVELS)) {
+      deadlineTick = currentTick + (1L << (SLOT_BITS * LEVELS)) - 1;
+    }
+
+    entry.level = level;
+    entry.slot = (int) ((deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    entry.prev = null;
+    entry.next = slots[level][entry.slot];
+    if (entry.next != null) {
+      entry.next.prev = entry;
+    }
+    slots[level][entry.slot] = entry;
+  }
+
+  /**
+   * Remove an entry from its slot.
+   */
+  private void unlink(Entry<K> entry) {
+    if (entry.prev != null) {
+      entry.prev.next = entry.next;
+    }
+    else {
+      slots[entry.level][entry.slot] = entry.next;
+    }
+    if (entry.next != null) {
+      entry.next.prev = entry.prev;
+    }
+    entry.prev = null;
+    entry.next = null;
+  }
+
+  /**
+   * Empty a slot.
+   * 
+   * @return The first entry that was in the slot, or null. The entries remain linked to each other.
+   */
+  private Entry<K> detach(int level, int slot) {
+    Entry<K> first = slots[level][slot];
+    slots[level][slot] = null;
+
+    return first;
+  }
+}
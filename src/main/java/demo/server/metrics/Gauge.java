@@ -0,0 +1,14 @@
+package demo.server.metrics;
+
+/**
+ * A metric whose value is read on demand, such as the size of a collection.
+ */
+public interface Gauge {
+
+  /**
+   * Get the current value of this gauge. May be called from any thread.
+   * 
+   * @return The current value.
+   */
+  public long getValue();
+}
@@ -0,0 +1,143 @@
+package demo.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values, such as latencies.
+ * 
+ * Values are counted in log-linear buckets, as in an HDR histogram: each power of two is split into
+ * {@value #SUB_BUCKETS} equal buckets, so that any value is reported to within about 6%, whatever
+ * its magnitude, in a fixed amount of memory. Values below {@value #SUB_BUCKETS} are exact.
+ */
+public final class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  /** Enough buckets for {@link Long#MAX_VALUE}. */
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final StripedCounter sum = new StripedCounter();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * An immutable summary of a histogram.
+   */
+  public static final class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    private Snapshot(long[] counts, long count, long sum, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    /**
+     * Get the number of values recorded.
+     * 
+     * @return The number of values recorded.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Get the mean of the values recorded.
+     * 
+     * @return The mean of the values recorded, or 0 if there are none.
+     */
+    public double getMean() {
+      return count > 0 ? (double) sum / count : 0;
+    }
+
+    /**
+     * Get the largest value recorded.
+     * 
+     * @return The largest value recorded, or 0 if there are none.
+     */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Get a percentile of the values recorded.
+     * 
+     * @param percent
+     *          The percentile, between 0 and 100.
+     * @return The upper bound of the bucket holding the given percentile, or 0 if there are no
+     *         values.
+     */
+    public long getPercentile(double percent) {
+      long rank = Math.max(1, (long) Math.ceil(percent / 100 * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(upperBound(i), max);
+        }
+      }
+
+      return max;
+    }
+  }
+
+  /**
+   * Record a value.
+   * 
+   * @param value
+   *          The value. Negative values are recorded as 0.
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(indexOf(value));
+    sum.add(value);
+
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Take a snapshot of this histogram. Values recorded while the snapshot is taken may be missed.
+   * 
+   * @return A summary of the values recorded so far.
+   */
+  public Snapshot snapshot() {
+    long[] copy = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = counts.get(i);
+      count += copy[i];
+    }
+
+    return new Snapshot(copy, count, sum.sum(), max.get());
+  }
+
+  static int indexOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    // The top SUB_BUCKET_BITS + 1 bits of the value, shifted down into [SUB_BUCKETS, 2 * SUB_BUCKETS).
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  static long upperBound(int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long top = index - shift * SUB_BUCKETS;
+
+    return ((top + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,76 @@
+package demo.server.metrics;
+
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Exposes every metric of a {@link MetricsRegistry} as a read-only JMX attribute. The attributes
+ * change as metrics are created and removed, so the MBean's info is rebuilt whenever it is asked
+ * for.
+ */
+class MetricsMBean implements DynamicMBean {
+
+  private final MetricsRegistry registry;
+
+  MetricsMBean(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    Number value = registry.snapshot().get(attribute);
+    if (value == null) {
+      throw new AttributeNotFoundException(attribute);
+    }
+
+    return value;
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes) {
+    Map<String, Number> values = registry.snapshot();
+    AttributeList list = new AttributeList();
+    for (String attribute : attributes) {
+      if (values.containsKey(attribute)) {
+        list.add(new Attribute(attribute, values.get(attribute)));
+      }
+    }
+
+    return list;
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException("Metrics are read only: " + attribute.getName());
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+    throw new ReflectionException(new NoSuchMethodException(actionName));
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    Map<String, Number> values = registry.snapshot();
+    MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+    int i = 0;
+    for (Map.Entry<String, Number> entry : values.entrySet()) {
+      attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+              entry.getKey(), true, false, false);
+    }
+
+    return new MBeanInfo(getClass().getName(), "Metrics of the game server", attributes, null, null, null);
+  }
+}
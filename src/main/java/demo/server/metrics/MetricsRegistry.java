@@ -0,0 +1,153 @@
+package demo.server.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The named metrics of the server, exposed over JMX as {@value #OBJECT_NAME} and over HTTP by the
+ * {@link MetricsServlet}.
+ * 
+ * Metrics are created on first use and kept until removed. Looking one up is cheap but not free, so
+ * metrics updated on every message should be looked up once and kept. Updating a metric never
+ * blocks.
+ */
+@ApplicationScoped
+public class MetricsRegistry {
+
+  /** The name under which the registry is registered with the platform MBean server. */
+  public static final String OBJECT_NAME = "demo.server:type=Metrics";
+
+  private static final Logger logger = Logger.getLogger(MetricsRegistry.class.getName());
+
+  private final ConcurrentMap<String, StripedCounter> counters = new ConcurrentHashMap<String, StripedCounter>();
+  private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+  private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<String, Gauge>();
+
+  @PostConstruct
+  private void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        // Left behind by an earlier deployment.
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(new MetricsMBean(this), name);
+    } catch (JMException e) {
+      logger.log(Level.WARNING, "Metrics are not available over JMX", e);
+    }
+  }
+
+  @PreDestroy
+  private void unregisterMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        server.unregisterMBean(name);
+      }
+    } catch (JMException e) {
+      logger.log(Level.WARNING, "Could not unregister metrics from JMX", e);
+    }
+  }
+
+  /**
+   * Get a counter, creating it if needed.
+   * 
+   * @param name
+   *          The name of the counter.
+   * @return The counter with the given name.
+   */
+  public StripedCounter counter(String name) {
+    StripedCounter counter = counters.get(name);
+    if (counter == null) {
+      counters.putIfAbsent(name, new StripedCounter());
+      counter = counters.get(name);
+    }
+
+    return counter;
+  }
+
+  /**
+   * Get a histogram, creating it if needed.
+   * 
+   * @param name
+   *          The name of the histogram.
+   * @return The histogram with the given name.
+   */
+  public Histogram histogram(String name) {
+    Histogram histogram = histograms.get(name);
+    if (histogram == null) {
+      histograms.putIfAbsent(name, new Histogram());
+      histogram = histograms.get(name);
+    }
+
+    return histogram;
+  }
+
+  /**
+   * Register a gauge, replacing any gauge of the same name.
+   * 
+   * @param name
+   *          The name of the gauge.
+   * @param gauge
+   *          The gauge.
+   */
+  public void gauge(String name, Gauge gauge) {
+    gauges.put(name, gauge);
+  }
+
+  /**
+   * Remove a metric of any kind.
+   * 
+   * @param name
+   *          The name of the metric.
+   */
+  public void remove(String name) {
+    counters.remove(name);
+    histograms.remove(name);
+    gauges.remove(name);
+  }
+
+  /**
+   * Read every metric. Each histogram is summarized by its count, mean, 50th, 90th and 99th
+   * percentiles and maximum, under its name followed by {@code .count}, {@code .mean}, {@code .p50}
+   * and so on.
+   * 
+   * @return A map of names to the current values of metrics, sorted by name.
+   */
+  public SortedMap<String, Number> snapshot() {
+    SortedMap<String, Number> values = new TreeMap<String, Number>();
+    for (Map.Entry<String, StripedCounter> entry : counters.entrySet()) {
+      values.put(entry.getKey(), entry.getValue().sum());
+    }
+    for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+      values.put(entry.getKey(), entry.getValue().getValue());
+    }
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+      String name = entry.getKey();
+      Histogram.Snapshot snapshot = entry.getValue().snapshot();
+      values.put(name + ".count", snapshot.getCount());
+      values.put(name + ".mean", snapshot.getMean());
+      values.put(name + ".p50", snapshot.getPercentile(50));
+      values.put(name + ".p90", snapshot.getPercentile(90));
+      values.put(name + ".p99", snapshot.getPercentile(99));
+      values.put(name + ".max", snapshot.getMax());
+    }
+
+    return values;
+  }
+}
@@ -0,0 +1,47 @@
+package demo.server.metrics;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the server's {@link MetricsRegistry metrics} as plain text, one {@code name value} pair per
+ * line, sorted by name. A {@code prefix} parameter limits the response to the metrics whose names
+ * start with it.
+ */
+public class MetricsServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+
+  @Inject
+  private MetricsRegistry registry;
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+          IOException {
+    if (registry == null) {
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Metrics registry not injected");
+      return;
+    }
+
+    String prefix = request.getParameter("prefix");
+    response.setContentType("text/plain");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    PrintWriter writer = response.getWriter();
+    for (Map.Entry<String, Number> entry : registry.snapshot().entrySet()) {
+      if (prefix == null || entry.getKey().startsWith(prefix)) {
+        writer.print(entry.getKey());
+        writer.print(' ');
+        writer.println(entry.getValue());
+      }
+    }
+    writer.flush();
+  }
+}
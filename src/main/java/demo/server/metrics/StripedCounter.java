@@ -0,0 +1,59 @@
+package demo.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter which many threads can update at once without contending with each other.
+ * 
+ * The count is split into stripes, each on its own cache line, and each thread adds to the stripe
+ * chosen by its id. Reading the count sums the stripes, so it is slower than updating it, and may
+ * miss updates made while it is read.
+ */
+public final class StripedCounter {
+
+  private static final int STRIPES = stripeCount();
+  /** The number of longs per stripe, so that no two stripes share a 64 byte cache line. */
+  private static final int PADDING = 8;
+
+  private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+  private static int stripeCount() {
+    int stripes = 1;
+    while (stripes < 2 * Runtime.getRuntime().availableProcessors()) {
+      stripes <<= 1;
+    }
+
+    return stripes;
+  }
+
+  /**
+   * Add to this counter.
+   * 
+   * @param delta
+   *          The amount to add, which may be negative.
+   */
+  public void add(long delta) {
+    cells.addAndGet(((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING, delta);
+  }
+
+  /**
+   * Add one to this counter.
+   */
+  public void increment() {
+    add(1);
+  }
+
+  /**
+   * Get the value of this counter.
+   * 
+   * @return The sum of every amount added so far.
+   */
+  public long sum() {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += cells.get(i * PADDING);
+    }
+
+    return sum;
+  }
+}